@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+# Runs the benchmark suite with the GC and allocation profiler and writes JMH JSON results.
+#
+#   ./run.sh                 # full suite into results/<date>-<commit>.json
+#   ./run.sh Base64Decode    # only benchmarks matching the regex
+#   ./run.sh --baseline      # full suite, written to baselines/ to be committed
+#   ./run.sh --compare baselines/<file>.json [thresholdPercent]
+#                            # full suite, then compared against that baseline
+#
+# NonceServiceBenchmark runs once per thread count in THREADS (default "1 4 16 64"); the
+# others run single-threaded. Build first: (cd ../verifier && mvn install -DskipTests) && mvn package
+set -euo pipefail
+cd "$(dirname "$0")"
+
+JAR=target/benchmarks.jar
+THREADS=${THREADS:-"1 4 16 64"}
+OUT_DIR=results
+COMPARE=""
+THRESHOLD=10
+FILTER=""
+
+while [[ $# -gt 0 ]]; do
+  case "$1" in
+    --baseline) OUT_DIR=baselines; shift ;;
+    --compare) COMPARE="$2"; shift 2
+               if [[ $# -gt 0 && "$1" =~ ^[0-9.]+$ ]]; then THRESHOLD="$1"; shift; fi ;;
+    *) FILTER="$1"; shift ;;
+  esac
+done
+
+[[ -f "$JAR" ]] || { echo "missing $JAR: run mvn package first" >&2; exit 2; }
+mkdir -p "$OUT_DIR"
+STAMP="$(date +%Y%m%d)-$(git rev-parse --short HEAD 2>/dev/null || echo nogit)"
+NAME="$STAMP-$(uname -m)-$(nproc 2>/dev/null || sysctl -n hw.ncpu)cpu"
+TMP="$(mktemp -d)"
+trap 'rm -rf "$TMP"' EXIT
+
+run() { # <regex> <thread count> <part name>
+  java -jar "$JAR" "$1" -t "$2" -prof gc -rf json -rff "$TMP/$3.json"
+}
+
+has() { # <regex>: does any benchmark match
+  java -jar "$JAR" -l "$1" | tail -n +2 | grep -q .
+}
+
+NONCE="NonceServiceBenchmark.*${FILTER}"
+OTHERS="^(?!.*NonceServiceBenchmark).*${FILTER}"
+i=0
+if has "$NONCE"; then
+  for t in $THREADS; do run "$NONCE" "$t" "part$((i++))"; done
+fi
+if has "$OTHERS"; then
+  run "$OTHERS" 1 "part$((i++))"
+fi
+
+# merge the per-run arrays into one result file
+OUT="$OUT_DIR/$NAME.json"
+{
+  echo "["
+  first=1
+  for f in "$TMP"/part*.json; do
+    body="$(sed -e '1{/^\[/d}' -e '${/^\]/d}' "$f")"
+    [[ -z "$body" ]] && continue
+    [[ $first -eq 1 ]] || echo ","
+    printf '%s\n' "$body"
+    first=0
+  done
+  echo "]"
+} > "$OUT"
+echo "results: $OUT"
+
+if [[ -n "$COMPARE" ]]; then
+  java -cp "$JAR" com.assessment.spruceid.verifier.bench.BaselineCompare "$COMPARE" "$OUT" "$THRESHOLD"
+fi
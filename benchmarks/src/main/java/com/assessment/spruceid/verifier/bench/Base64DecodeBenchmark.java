@@ -0,0 +1,63 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.utils.Base64Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a 71-byte DER signature as holders send it: {@link Base64Util#decodeFlexible}
+ * versus the JDK decoders tried url-first, then standard. {@code invalid} is a string
+ * neither alphabet accepts. Run with {@code -prof gc} to compare allocated bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64DecodeBenchmark {
+    @Param({"url", "urlPadded", "std", "invalid"})
+    public String encoding;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        byte[] sig = new byte[71];
+        String std;
+        // make sure the standard spelling really needs the second alphabet
+        do {
+            rnd.nextBytes(sig);
+            std = Base64.getEncoder().encodeToString(sig);
+        } while (!std.matches(".*[+/].*"));
+        input = switch (encoding) {
+            case "url" -> Base64.getUrlEncoder().withoutPadding().encodeToString(sig);
+            case "urlPadded" -> Base64.getUrlEncoder().encodeToString(sig);
+            case "std" -> std;
+            case "invalid" -> std.substring(0, 40) + "*" + std.substring(41);
+            default -> throw new IllegalArgumentException("Unknown encoding: " + encoding);
+        };
+    }
+
+    @Benchmark
+    public byte[] decodeFlexible() {
+        return Base64Util.decodeFlexible(input);
+    }
+
+    @Benchmark
+    public byte[] jdkUrlThenStandard() {
+        try {
+            return Base64.getUrlDecoder().decode(input);
+        } catch (IllegalArgumentException e) {
+            try {
+                return Base64.getDecoder().decode(input);
+            } catch (IllegalArgumentException again) {
+                return null;
+            }
+        }
+    }
+}
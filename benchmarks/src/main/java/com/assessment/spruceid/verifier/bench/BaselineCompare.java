@@ -0,0 +1,118 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}, typically a baseline from
+ * {@code baselines/} and a fresh run.
+ * <p>
+ * Rows are matched on benchmark, mode, thread count and parameters. For each it prints the
+ * primary score and, when present, {@code gc.alloc.rate.norm} (bytes per operation), with
+ * the relative change. A row is flagged when it got worse by more than the threshold
+ * (throughput down, or time or allocation up) and by more than the combined error of both
+ * runs; the exit status is 1 if any row was flagged.
+ * <pre>
+ * java -cp target/benchmarks.jar com.assessment.spruceid.verifier.bench.BaselineCompare \
+ *      baselines/base.json results/new.json [thresholdPercent]
+ * </pre>
+ */
+public final class BaselineCompare {
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    private BaselineCompare() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineCompare <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> base = rows(mapper.readTree(new File(args[0])));
+        Map<String, JsonNode> current = rows(mapper.readTree(new File(args[1])));
+
+        int flagged = 0;
+        System.out.printf("%-90s %14s %14s %8s %12s %12s %8s%n",
+                "benchmark", "baseline", "current", "change", "B/op base", "B/op now", "change");
+        for (Map.Entry<String, JsonNode> e : current.entrySet()) {
+            JsonNode before = base.get(e.getKey());
+            JsonNode after = e.getValue();
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f%n", e.getKey(), "-", score(after.path("primaryMetric")));
+                continue;
+            }
+            boolean higherIsBetter = after.path("mode").asText().equals("thrpt");
+            JsonNode p0 = before.path("primaryMetric");
+            JsonNode p1 = after.path("primaryMetric");
+            boolean worse = worse(p0, p1, higherIsBetter, threshold);
+            JsonNode a0 = alloc(before);
+            JsonNode a1 = alloc(after);
+            boolean allocWorse = a0 != null && a1 != null && worse(a0, a1, false, threshold);
+            if (worse || allocWorse) flagged++;
+            System.out.printf("%-90s %14.3f %14.3f %7.1f%% %12s %12s %8s%s%n", e.getKey(),
+                    score(p0), score(p1), change(p0, p1),
+                    a0 == null ? "-" : String.format("%.1f", score(a0)),
+                    a1 == null ? "-" : String.format("%.1f", score(a1)),
+                    a0 == null || a1 == null ? "" : String.format("%.1f%%", change(a0, a1)),
+                    worse || allocWorse ? "  <-- regression" : "");
+        }
+        for (String gone : base.keySet())
+            if (!current.containsKey(gone)) System.out.printf("%-90s (not in current run)%n", gone);
+        System.exit(flagged > 0 ? 1 : 0);
+    }
+
+    private static Map<String, JsonNode> rows(JsonNode results) {
+        Map<String, JsonNode> rows = new LinkedHashMap<>();
+        for (JsonNode r : results) rows.put(key(r), r);
+        return rows;
+    }
+
+    private static String key(JsonNode r) {
+        StringBuilder sb = new StringBuilder(r.path("benchmark").asText()
+                .replace("com.assessment.spruceid.verifier.bench.", ""));
+        sb.append(" ").append(r.path("mode").asText()).append(" t=").append(r.path("threads").asInt());
+        Map<String, String> params = new TreeMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = r.path("params").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> p = it.next();
+            params.put(p.getKey(), p.getValue().asText());
+        }
+        params.forEach((k, v) -> sb.append(" ").append(k).append("=").append(v));
+        return sb.toString();
+    }
+
+    private static JsonNode alloc(JsonNode r) {
+        for (Iterator<Map.Entry<String, JsonNode>> it = r.path("secondaryMetrics").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> m = it.next();
+            // older JMH versions prefix secondary metric names with a middle dot
+            if (m.getKey().endsWith(ALLOC)) return m.getValue();
+        }
+        return null;
+    }
+
+    private static double score(JsonNode metric) {
+        return metric.path("score").asDouble();
+    }
+
+    private static double error(JsonNode metric) {
+        double e = metric.path("scoreError").asDouble();
+        return Double.isNaN(e) ? 0 : e;
+    }
+
+    private static double change(JsonNode before, JsonNode after) {
+        double b = score(before);
+        return b == 0 ? 0 : (score(after) - b) / b * 100;
+    }
+
+    private static boolean worse(JsonNode before, JsonNode after, boolean higherIsBetter, double threshold) {
+        double delta = higherIsBetter ? score(before) - score(after) : score(after) - score(before);
+        return delta > Math.abs(score(before)) * threshold && delta > error(before) + error(after);
+    }
+}
@@ -0,0 +1,43 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.crypto.EntropyPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random bytes for one nonce from a single shared {@code SecureRandom} versus the striped
+ * {@link EntropyPool}. Sampled so the tail shows up: compare the p0.99 rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class NonceEntropyBenchmark {
+    private SecureRandom shared;
+    private EntropyPool pool;
+
+    @Setup
+    public void setUp() throws Exception {
+        shared = SecureRandom.getInstance("DRBG");
+        pool = new EntropyPool(0, 65536, "DRBG");
+    }
+
+    @Benchmark
+    public byte[] sharedSecureRandom() {
+        byte[] b = new byte[32];
+        shared.nextBytes(b);
+        return b;
+    }
+
+    @Benchmark
+    public byte[] entropyPool() {
+        byte[] b = new byte[32];
+        pool.nextBytes(b, 0, 32);
+        return b;
+    }
+}
@@ -0,0 +1,78 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import com.assessment.spruceid.verifier.service.impl.HeapNonceStore;
+import com.assessment.spruceid.verifier.service.impl.NonceServiceImpl;
+import com.assessment.spruceid.verifier.service.impl.OffHeapNonceStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issuing and consuming nonces through {@link NonceServiceImpl}, per store. Pick the thread
+ * count with {@code -t} ({@code run.sh} sweeps 1, 4, 16 and 64).
+ * <p>
+ * {@code issueAndConsume} is one full nonce lifetime; subtract {@code issue} to get the cost
+ * of the consume. {@code consumeUnknown} is the miss path a replayed or forged nonce takes.
+ * Nonces live for one second so the issue-only run keeps about a second of issuance
+ * outstanding; raise {@code capacity} if the off-heap store reports itself full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=2g")
+public class NonceServiceBenchmark {
+    @Param({"heap", "offheap"})
+    public String store;
+
+    @Param("8388608")
+    public long capacity;
+
+    private NonceServiceImpl service;
+
+    @Setup
+    public void setUp() {
+        NonceStore s = switch (store) {
+            case "heap" -> new HeapNonceStore(1 << 16, 100);
+            case "offheap" -> new OffHeapNonceStore(capacity, 64, 100);
+            default -> throw new IllegalArgumentException("Unknown store: " + store);
+        };
+        service = new NonceServiceImpl(1, s);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Unknown {
+        private final SplittableRandom rnd = new SplittableRandom();
+        private final byte[] bytes = new byte[32];
+
+        String next() {
+            rnd.nextBytes(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        }
+    }
+
+    @Benchmark
+    public Nonce issue() {
+        return service.issue(null);
+    }
+
+    @Benchmark
+    public boolean issueAndConsume() {
+        return service.validateAndConsume(service.issue(null).getNonce(), null);
+    }
+
+    @Benchmark
+    public boolean consumeUnknown(Unknown unknown) {
+        return service.validateAndConsume(unknown.next(), null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.utils.PemUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a P-256 public key from PEM with {@link PemUtil#readEcPublicKeyFromPem}, as done
+ * for every {@code <kid>.pem} on each key directory reload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PemReadBenchmark {
+    private byte[] pem;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        byte[] der = keyGen.generateKeyPair().getPublic().getEncoded();
+        pem = ("-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der)
+                + "\n-----END PUBLIC KEY-----\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public ECPublicKey readEcPublicKeyFromPem() throws Exception {
+        return PemUtil.readEcPublicKeyFromPem(new ByteArrayInputStream(pem));
+    }
+}
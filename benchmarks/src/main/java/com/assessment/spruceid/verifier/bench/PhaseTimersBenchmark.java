@@ -0,0 +1,73 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers.Phase;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the phase timers add to one verify request: the seven laps a request records
+ * (json-decode through consume, plus the issue of its nonce), on a Prometheus registry set up
+ * as in application.properties, versus timers switched off. Compare the difference with
+ * {@link VerifyServiceBenchmark} to get the overhead as a share of a request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class PhaseTimersBenchmark {
+    private PhaseTimers enabled;
+    private PhaseTimers disabled;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!id.getName().equals("verifier.phase")) return config;
+                return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.9, 0.99, 0.999)
+                        .percentilesHistogram(true)
+                        .expiry(Duration.ofMinutes(1))
+                        .build()
+                        .merge(config);
+            }
+        });
+        enabled = new PhaseTimers(registry, true);
+        disabled = new PhaseTimers(registry, false);
+    }
+
+    @Benchmark
+    public long enabled() {
+        return laps(enabled);
+    }
+
+    @Benchmark
+    public long disabled() {
+        return laps(disabled);
+    }
+
+    private static long laps(PhaseTimers phases) {
+        long t = phases.start();
+        phases.lap(Phase.ISSUE, t);
+        t = phases.start();
+        phases.lap(Phase.JSON_DECODE, t);
+        t = phases.start();
+        t = phases.lap(Phase.BASE64_DECODE, t);
+        t = phases.lap(Phase.NONCE_LOOKUP, t);
+        t = phases.lap(Phase.QUEUE, t);
+        t = phases.lap(Phase.SIGNATURE, t);
+        return phases.lap(Phase.CONSUME, t);
+    }
+}
@@ -0,0 +1,56 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.crypto.SignatureVerifierPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request {@code Signature.getInstance + initVerify} versus the pooled verifier.
+ * Run with {@code -prof gc} to compare allocated bytes per verify.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureVerifyBenchmark {
+    private ECPublicKey key;
+    private byte[] msg;
+    private byte[] sig;
+    private SignatureVerifierPool pool;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair kp = keyGen.generateKeyPair();
+        key = (ECPublicKey) kp.getPublic();
+        msg = "SuOOneVi-3ZJzSQDUllFPGYorfz_XJeit-BoyrloETA".getBytes(StandardCharsets.US_ASCII);
+        Signature signer = Signature.getInstance(SignatureVerifierPool.ALGORITHM);
+        signer.initSign(kp.getPrivate());
+        signer.update(msg);
+        sig = signer.sign();
+        pool = new SignatureVerifierPool();
+    }
+
+    @Benchmark
+    public boolean freshInstance() throws Exception {
+        Signature s = Signature.getInstance(SignatureVerifierPool.ALGORITHM);
+        s.initVerify(key);
+        s.update(msg);
+        return s.verify(sig);
+    }
+
+    @Benchmark
+    public boolean pooled() throws Exception {
+        return pool.verify(key, msg, sig);
+    }
+}
@@ -0,0 +1,107 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.codec.VerifyRequestReader;
+import com.assessment.spruceid.verifier.codec.VerifyResponseEncoder;
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import com.assessment.spruceid.verifier.utils.Base64Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a /api/verify body and its signature, and writing a fixed-outcome response:
+ * Jackson databind plus the try-url-then-standard base64 decode versus the dedicated codecs.
+ * Run with {@code -prof gc} to compare allocated bytes per request; {@code alphabet=std} is
+ * the holder that sends standard base64, which used to cost an exception per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyCodecBenchmark {
+    @Param({"url", "std"})
+    public String alphabet;
+
+    private static final ResolvableType RESPONSE = ResolvableType.forClass(VerifyResponse.class);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DefaultDataBufferFactory buffers = DefaultDataBufferFactory.sharedInstance;
+    private byte[] body;
+    private Jackson2JsonEncoder jsonEncoder;
+    private VerifyResponseEncoder encoder;
+    private VerifyResponse verified;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyGen.generateKeyPair().getPrivate());
+        String nonce = "SuOOneVi-3ZJzSQDUllFPGYorfz_XJeit-BoyrloETA";
+        signer.update(nonce.getBytes(StandardCharsets.US_ASCII));
+        byte[] sig = signer.sign();
+        // make sure the standard spelling really needs the second alphabet
+        while (!Base64.getEncoder().encodeToString(sig).matches(".*[+/].*")) {
+            signer.update(nonce.getBytes(StandardCharsets.US_ASCII));
+            sig = signer.sign();
+        }
+        String encoded = alphabet.equals("url")
+                ? Base64.getUrlEncoder().withoutPadding().encodeToString(sig)
+                : Base64.getEncoder().encodeToString(sig);
+        body = mapper.writeValueAsBytes(VerifyRequest.builder().nonce(nonce).sigBase64Url(encoded).kid("holder-42").build());
+        jsonEncoder = new Jackson2JsonEncoder(mapper);
+        encoder = new VerifyResponseEncoder(jsonEncoder, r -> {
+            try {
+                return mapper.writeValueAsBytes(r);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        verified = VerifyResponse.verified();
+    }
+
+    @Benchmark
+    public byte[] readJackson(Blackhole bh) throws Exception {
+        VerifyRequest req = mapper.readValue(body, VerifyRequest.class);
+        bh.consume(req.getNonce().getBytes(StandardCharsets.US_ASCII));
+        try {
+            return Base64.getUrlDecoder().decode(req.getSigBase64Url());
+        } catch (IllegalArgumentException e) {
+            return Base64.getDecoder().decode(req.getSigBase64Url());
+        }
+    }
+
+    @Benchmark
+    public byte[] readDedicated(Blackhole bh) {
+        VerifyRequest req = VerifyRequestReader.read(ByteBuffer.wrap(body));
+        bh.consume(req.getNonce().getBytes(StandardCharsets.US_ASCII));
+        return Base64Util.decodeFlexible(req.getSigBase64Url());
+    }
+
+    @Benchmark
+    public DataBuffer writeJackson() {
+        return jsonEncoder.encodeValue(verified, buffers, RESPONSE, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    @Benchmark
+    public DataBuffer writeCanned() {
+        return encoder.encodeValue(verified, buffers, RESPONSE, MediaType.APPLICATION_JSON, Map.of());
+    }
+}
@@ -0,0 +1,105 @@
+package com.assessment.spruceid.verifier.bench;
+
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.crypto.SignatureVerifierPool;
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import com.assessment.spruceid.verifier.service.impl.NonceServiceImpl;
+import com.assessment.spruceid.verifier.service.impl.VerificationStage;
+import com.assessment.spruceid.verifier.service.impl.VerifyServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VerifyServiceImpl#verify} end to end, from a decoded request to the response:
+ * key lookup, signature pre-checks, nonce lookup, the hop onto the verification stage,
+ * ECDSA verify and consume, with the in-memory nonce store.
+ * <p>
+ * Every invocation gets a freshly issued and signed proof, prepared outside the measured
+ * time. {@code proof} selects the outcome: a valid proof, a well-formed signature that does
+ * not verify, a valid signature over a nonce that was never issued, and an undecodable
+ * signature. The last two are answered before any curve arithmetic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyServiceBenchmark {
+    private static final String KID = "holder-1";
+
+    @Param({"valid", "badSignature", "unknownNonce", "malformed"})
+    public String proof;
+
+    private NonceServiceImpl nonces;
+    private VerificationStage stage;
+    private VerifyServiceImpl service;
+    private PrivateKey signingKey;
+    private PrivateKey otherKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair kp = keyGen.generateKeyPair();
+        signingKey = kp.getPrivate();
+        otherKey = keyGen.generateKeyPair().getPrivate();
+        nonces = new NonceServiceImpl(60);
+        stage = new VerificationStage("parallel", 0, 1024);
+        service = new VerifyServiceImpl(nonces, KeyRegistry.of(KID, (ECPublicKey) kp.getPublic()),
+                new SignatureVerifierPool(), stage, 1000, 0, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stage.close();
+        nonces.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Proof {
+        private final Signature signer;
+        VerifyRequest request;
+
+        public Proof() {
+            try {
+                signer = Signature.getInstance(SignatureVerifierPool.ALGORITHM);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void next(VerifyServiceBenchmark b) throws Exception {
+            String nonce = b.proof.equals("unknownNonce")
+                    ? "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA"
+                    : b.nonces.issue(KID).getNonce();
+            String sig = b.proof.equals("malformed")
+                    ? "not*base64"
+                    : sign(b.proof.equals("badSignature") ? b.otherKey : b.signingKey, nonce);
+            request = VerifyRequest.builder().nonce(nonce).sigBase64Url(sig).kid(KID).build();
+        }
+
+        private String sign(PrivateKey key, String nonce) throws Exception {
+            signer.initSign(key);
+            signer.update(nonce.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signer.sign());
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<VerifyResponse> verify(Proof p) {
+        return service.verify(p.request).block();
+    }
+}
@@ -0,0 +1,307 @@
+package com.assessment.spruceid.loadgen;
+
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop holder load against a running verifier: each flow fetches a nonce, signs it with
+ * the holder key and posts the proof to /api/verify, exactly like {@code holder/holder.sh}.
+ * <p>
+ * Flows start on a fixed schedule ({@code --rate} per second) whatever the verifier does, and
+ * each one's latency is measured from its scheduled start, so a stalled verifier shows up as
+ * latency instead of as fewer requests (coordinated omission). At most {@code --connections}
+ * flows are in flight; a flow due while all are busy waits for one, and that wait counts.
+ * Requests go over keep-alive HTTP/1.1 connections, or HTTP/2 ({@code --http2}, cleartext)
+ * with {@code --clients} connections multiplexing the in-flight flows.
+ * <p>
+ * Everything is local: it needs the verifier's URL and the holder's key file and nothing else.
+ */
+public final class LoadGenerator {
+    private final Options options;
+    private final HttpClient[] clients;
+    private final SignerPool signers;
+    private final Report report = new Report();
+    private final Semaphore slots;
+    private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final URI issueUri;
+    private final URI verifyUri;
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    LoadGenerator(Options options, PrivateKey key) {
+        this.options = options;
+        this.signers = new SignerPool(key, options.signThreads);
+        this.slots = new Semaphore(options.connections);
+        this.clients = new HttpClient[options.clients];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = HttpClient.newBuilder()
+                    .version(options.http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofMillis(options.timeoutMillis))
+                    .build();
+        }
+        String kid = options.kid == null ? "" : "?kid=" + URLEncoder.encode(options.kid, StandardCharsets.UTF_8);
+        this.issueUri = URI.create(options.url + "/api/nonce/issue" + kid);
+        this.verifyUri = URI.create(options.url + "/api/verify");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if (options == null) {
+            System.err.println(Options.USAGE);
+            System.exit(2);
+        }
+        LoadGenerator gen = new LoadGenerator(options, HolderKey.read(Path.of(options.keyFile)));
+        System.exit(gen.run(System.out) ? 0 : 1);
+    }
+
+    /**
+     * Run warmup and measurement, wait for the flows still in flight, and print the report.
+     *
+     * @param out where to print
+     * @return true when every measured flow succeeded
+     */
+    boolean run(PrintStream out) throws Exception {
+        out.printf("target %s, %d flows/s for %ds after %ds warmup, %d connections, %s%n",
+                options.url, options.rate, options.durationSeconds, options.warmupSeconds,
+                options.connections, options.http2 ? "HTTP/2" : "HTTP/1.1");
+        long period = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        measureFromNanos = measureFrom;
+
+        long nextReport = measureFrom + TimeUnit.SECONDS.toNanos(1);
+        long lastReport = measureFrom;
+        for (long i = 0; ; i++) {
+            long intended = start + i * period;
+            if (intended >= end) break;
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    report.interval(out, (now - measureFrom) / 1e9, (now - lastReport) / 1e9);
+                    lastReport = now;
+                    nextReport += TimeUnit.SECONDS.toNanos(1);
+                }
+                if (now >= intended) break;
+                LockSupport.parkNanos(Math.min(intended, nextReport) - now);
+            }
+            submit(intended);
+        }
+
+        // let the flows in flight finish, then count whatever is left as unfinished
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.drainSeconds);
+        while (slots.availablePermits() < options.connections || !waiting.isEmpty()) {
+            if (System.nanoTime() > drainUntil) {
+                int unfinished = options.connections - slots.availablePermits() + waiting.size();
+                for (int i = 0; i < unfinished; i++) report.failure("unfinished after drain");
+                break;
+            }
+            Thread.sleep(10);
+        }
+        long now = System.nanoTime();
+        report.interval(out, (now - measureFrom) / 1e9, (now - lastReport) / 1e9);
+        report.summary(out, (end - measureFrom) / 1e9);
+        if (options.hgrmFile != null) {
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(Path.of(options.hgrmFile)))) {
+                report.writeDistribution(hgrm);
+            }
+        }
+        signers.close();
+        return report.failed() == 0;
+    }
+
+    private void submit(long intended) {
+        Runnable flow = () -> flow(intended);
+        if (slots.tryAcquire()) {
+            flow.run();
+            return;
+        }
+        waiting.add(flow);
+        // a slot may have been freed between the failed tryAcquire and the add
+        if (slots.tryAcquire()) runWaitingOrRelease();
+    }
+
+    private void release() {
+        if (waiting.isEmpty()) {
+            slots.release();
+            if (!waiting.isEmpty() && slots.tryAcquire()) runWaitingOrRelease();
+        } else {
+            runWaitingOrRelease();
+        }
+    }
+
+    // holds a slot: hand it to the next waiting flow, or give it back
+    private void runWaitingOrRelease() {
+        Runnable r = waiting.poll();
+        if (r != null) r.run();
+        else slots.release();
+    }
+
+    private void flow(long intended) {
+        HttpClient client = clients[Math.floorMod(next.getAndIncrement(), clients.length)];
+        long started = System.nanoTime();
+        long[] at = new long[2];
+        HttpRequest issueReq = HttpRequest.newBuilder(issueUri)
+                .timeout(Duration.ofMillis(options.timeoutMillis)).GET().build();
+        client.sendAsync(issueReq, HttpResponse.BodyHandlers.ofString())
+                .thenApplyAsync(resp -> {
+                    at[0] = System.nanoTime();
+                    if (resp.statusCode() != 200) throw new FlowFailure("issue: HTTP " + resp.statusCode());
+                    String nonce = field(resp.body(), "nonce");
+                    if (nonce == null) throw new FlowFailure("issue: no nonce in response");
+                    byte[] sig = signers.sign(nonce.getBytes(StandardCharsets.US_ASCII));
+                    at[1] = System.nanoTime();
+                    return proof(nonce, Base64.getUrlEncoder().withoutPadding().encodeToString(sig));
+                }, signers.executor())
+                .thenCompose(body -> client.sendAsync(HttpRequest.newBuilder(verifyUri)
+                        .timeout(Duration.ofMillis(options.timeoutMillis))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(), HttpResponse.BodyHandlers.ofString()))
+                .whenComplete((resp, err) -> {
+                    long done = System.nanoTime();
+                    try {
+                        if (intended < measureFromNanos) return;
+                        if (err != null) report.failure(cause(err, at[0] == 0 ? "issue" : "verify"));
+                        else if (resp.statusCode() != 200 || !resp.body().contains("\"verified\":true"))
+                            report.failure("verify: HTTP " + resp.statusCode() + message(resp.body()));
+                        else report.success(intended, started, at[0], at[1], done);
+                    } finally {
+                        release();
+                    }
+                });
+    }
+
+    private String proof(String nonce, String sig) {
+        return options.kid == null
+                ? "{\"nonce\":\"" + nonce + "\",\"sigBase64Url\":\"" + sig + "\"}"
+                : "{\"nonce\":\"" + nonce + "\",\"sigBase64Url\":\"" + sig + "\",\"kid\":\"" + options.kid + "\"}";
+    }
+
+    private static String cause(Throwable err, String phase) {
+        Throwable t = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (t instanceof FlowFailure f) return f.getMessage();
+        if (t instanceof HttpTimeoutException) return phase + ": timeout";
+        if (t instanceof ConnectException) return phase + ": connection refused";
+        return phase + ": " + t.getClass().getSimpleName();
+    }
+
+    private static String message(String body) {
+        String m = field(body, "message");
+        return m == null ? "" : " " + (m.length() > 80 ? m.substring(0, 80) + "..." : m);
+    }
+
+    // value of a top-level string field of a flat JSON object; the verifier writes no escapes in these
+    static String field(String json, String name) {
+        if (json == null) return null;
+        int k = json.indexOf("\"" + name + "\"");
+        if (k < 0) return null;
+        int colon = json.indexOf(':', k + name.length() + 2);
+        int open = colon < 0 ? -1 : json.indexOf('"', colon + 1);
+        int close = open < 0 ? -1 : json.indexOf('"', open + 1);
+        return close < 0 ? null : json.substring(open + 1, close);
+    }
+
+    private static final class FlowFailure extends RuntimeException {
+        FlowFailure(String cause) {
+            super(cause, null, false, false);
+        }
+    }
+
+    static final class Options {
+        static final String USAGE = """
+                usage: java -jar loadgen.jar [options]
+                  --url URL            verifier base URL (default http://localhost:8080)
+                  --key FILE           holder private key PEM (default ../holder/key.pem)
+                  --kid KID            key id sent with issue and verify (default: verifier's default key)
+                  --rate N             flows started per second (default 500)
+                  --duration S         measured seconds (default 30)
+                  --warmup S           seconds of load before measuring (default 10)
+                  --connections N      flows in flight at most (default 256)
+                  --http2              use cleartext HTTP/2 instead of keep-alive HTTP/1.1
+                  --clients N          HTTP clients; with --http2, one connection each (default 1)
+                  --sign-threads N     signing threads (default: cores)
+                  --timeout-ms N       per-request timeout (default 5000)
+                  --drain S            seconds to wait for flows in flight at the end (default 10)
+                  --hgrm FILE          write the corrected flow latency distribution (.hgrm)""";
+
+        String url = "http://localhost:8080";
+        String keyFile = "../holder/key.pem";
+        String kid;
+        int rate = 500;
+        int durationSeconds = 30;
+        int warmupSeconds = 10;
+        int connections = 256;
+        boolean http2;
+        int clients = 1;
+        int signThreads = Runtime.getRuntime().availableProcessors();
+        int timeoutMillis = 5000;
+        int drainSeconds = 10;
+        String hgrmFile;
+
+        static Options parse(String[] args) {
+            Map<String, String> m = new HashMap<>();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (!a.startsWith("--")) return null;
+                if (a.equals("--http2") || a.equals("--help")) m.put(a, "true");
+                else if (i + 1 < args.length) m.put(a, args[++i]);
+                else return null;
+            }
+            if (m.containsKey("--help")) return null;
+            Options o = new Options();
+            try {
+                for (Map.Entry<String, String> e : m.entrySet()) {
+                    String v = e.getValue();
+                    switch (e.getKey()) {
+                        case "--url" -> o.url = v.endsWith("/") ? v.substring(0, v.length() - 1) : v;
+                        case "--key" -> o.keyFile = v;
+                        case "--kid" -> o.kid = v;
+                        case "--rate" -> o.rate = positive(v);
+                        case "--duration" -> o.durationSeconds = positive(v);
+                        case "--warmup" -> o.warmupSeconds = Integer.parseInt(v);
+                        case "--connections" -> o.connections = positive(v);
+                        case "--http2" -> o.http2 = true;
+                        case "--clients" -> o.clients = positive(v);
+                        case "--sign-threads" -> o.signThreads = positive(v);
+                        case "--timeout-ms" -> o.timeoutMillis = positive(v);
+                        case "--drain" -> o.drainSeconds = Integer.parseInt(v);
+                        case "--hgrm" -> o.hgrmFile = v;
+                        default -> {
+                            return null;
+                        }
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return o;
+        }
+
+        private static int positive(String v) {
+            int n = Integer.parseInt(v);
+            if (n <= 0) throw new IllegalArgumentException(v);
+            return n;
+        }
+    }
+}
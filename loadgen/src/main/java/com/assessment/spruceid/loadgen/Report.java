@@ -0,0 +1,132 @@
+package com.assessment.spruceid.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and error counts of a run, in microseconds.
+ * <p>
+ * Flow latency is recorded twice: from the moment the flow was scheduled to start, which
+ * includes any time it waited because the verifier or the client fell behind (corrected for
+ * coordinated omission), and from the moment it actually started (service time). The first
+ * is the one to read; the gap between the two shows how far behind the run fell. Only
+ * successful flows are in the histograms; failed ones are counted per cause.
+ */
+final class Report {
+    private static final long HIGHEST = TimeUnit.HOURS.toMicros(1);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Phase flow = new Phase("flow (from intended start)");
+    private final Phase flowService = new Phase("flow (from actual start)");
+    private final Phase issue = new Phase("GET /api/nonce/issue");
+    private final Phase verify = new Phase("POST /api/verify");
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder failed = new LongAdder();
+    private long intervalFailed;
+
+    void success(long intendedNanos, long startNanos, long issuedNanos, long signedNanos, long endNanos) {
+        flow.record(endNanos - intendedNanos);
+        flowService.record(endNanos - startNanos);
+        issue.record(issuedNanos - startNanos);
+        verify.record(endNanos - signedNanos);
+    }
+
+    void failure(String cause) {
+        failed.increment();
+        errors.computeIfAbsent(cause, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return measured flows that failed
+     */
+    long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * Fold the last interval into the totals and print one line for it.
+     *
+     * @param out     where to print
+     * @param elapsed seconds since the measurement started
+     * @param seconds length of the interval
+     */
+    void interval(PrintStream out, double elapsed, double seconds) {
+        Histogram h = flow.interval();
+        flowService.interval();
+        issue.interval();
+        verify.interval();
+        long failedNow = failed.sum();
+        long err = failedNow - intervalFailed;
+        intervalFailed = failedNow;
+        out.printf("%6.0fs  ok %8.0f/s  err %6.0f/s  p50 %9s  p99 %9s  p99.9 %9s  max %9s%n", elapsed,
+                h.getTotalCount() / seconds, err / seconds,
+                ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(99)),
+                ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+    }
+
+    void summary(PrintStream out, double seconds) {
+        long ok = flow.total.getTotalCount();
+        long err = failed.sum();
+        out.printf("%nflows: %d ok, %d failed in %.1f s (%.0f ok/s)%n", ok, err, seconds, ok / seconds);
+        out.printf("%n%-28s %10s", "latency (ms)", "count");
+        for (double p : PERCENTILES) out.printf(" %9s", "p" + trim(p));
+        out.printf(" %9s%n", "max");
+        for (Phase p : new Phase[]{flow, flowService, issue, verify}) {
+            out.printf("%-28s %10d", p.name, p.total.getTotalCount());
+            for (double q : PERCENTILES) out.printf(" %9s", ms(p.total.getValueAtPercentile(q)));
+            out.printf(" %9s%n", ms(p.total.getMaxValue()));
+        }
+        if (!errors.isEmpty()) {
+            out.printf("%nerrors%n");
+            errors.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                    .forEach(e -> out.printf("%10d  %s%n", e.getValue().sum(), e.getKey()));
+        }
+    }
+
+    /**
+     * Write the corrected flow latency as a percentile distribution (.hgrm, milliseconds),
+     * for plotting with HdrHistogram's plotter.
+     *
+     * @param out where to write
+     */
+    void writeDistribution(PrintStream out) {
+        flow.total.outputPercentileDistribution(out, 1000.0);
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+
+    private static String trim(double p) {
+        return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+    }
+
+    private static final class Phase {
+        private final String name;
+        private final Recorder recorder = new Recorder(HIGHEST, 3);
+        private final Histogram total = new Histogram(HIGHEST, 3);
+        private Histogram recycled;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos) {
+            recorder.recordValue(Math.min(Math.max(nanos / 1000, 0), HIGHEST));
+        }
+
+        Histogram interval() {
+            recycled = recorder.getIntervalHistogram(recycled);
+            total.add(recycled);
+            return recycled;
+        }
+    }
+}
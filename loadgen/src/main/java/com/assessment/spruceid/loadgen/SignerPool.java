@@ -0,0 +1,61 @@
+package com.assessment.spruceid.loadgen;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Signs nonces with ES256 on a fixed set of threads, each holding its own initialized
+ * {@link Signature}, so no signer is created or shared per proof.
+ */
+final class SignerPool implements AutoCloseable {
+    private static final String ALGORITHM = "SHA256withECDSA";
+    private final ExecutorService executor;
+    private final ThreadLocal<Signature> signers;
+
+    SignerPool(PrivateKey key, int threads) {
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads,
+                r -> Thread.ofPlatform().daemon().name("signer-" + n.getAndIncrement()).unstarted(r));
+        this.signers = ThreadLocal.withInitial(() -> {
+            try {
+                Signature s = Signature.getInstance(ALGORITHM);
+                s.initSign(key);
+                return s;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+            }
+        });
+    }
+
+    /**
+     * @return executor whose threads may call {@link #sign}
+     */
+    ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Sign on the calling thread, which should be one of {@link #executor()}.
+     *
+     * @param msg the message
+     * @return DER-encoded signature
+     */
+    byte[] sign(byte[] msg) {
+        Signature s = signers.get();
+        try {
+            s.update(msg);
+            return s.sign();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Signing failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
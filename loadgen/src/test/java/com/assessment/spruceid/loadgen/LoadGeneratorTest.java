@@ -0,0 +1,33 @@
+package com.assessment.spruceid.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+    @Test
+    void field_readsFlatJsonStrings() {
+        String issued = "{\"nonce\":\"LugnsYgkxpz50O8a7AvD4cxARgBOM3QFhsUXqPz_daA\",\"issuedAt\":1759557863441}";
+        assertEquals("LugnsYgkxpz50O8a7AvD4cxARgBOM3QFhsUXqPz_daA", LoadGenerator.field(issued, "nonce"));
+        assertEquals("Nonce is invalid.",
+                LoadGenerator.field("{\"verified\":false, \"message\" : \"Nonce is invalid.\"}", "message"));
+        assertNull(LoadGenerator.field("{\"verified\":true}", "message"));
+        assertNull(LoadGenerator.field("{\"nonce\":\"unterminated", "nonce"));
+        assertNull(LoadGenerator.field(null, "nonce"));
+    }
+
+    @Test
+    void options_haveDefaults_andRejectNonsense() {
+        LoadGenerator.Options o = LoadGenerator.Options.parse(new String[]{"--rate", "2000", "--http2", "--url", "http://127.0.0.1:9000/"});
+        assertNotNull(o);
+        assertEquals(2000, o.rate);
+        assertTrue(o.http2);
+        assertEquals("http://127.0.0.1:9000", o.url);
+        assertEquals(256, o.connections);
+
+        assertNull(LoadGenerator.Options.parse(new String[]{"--rate", "0"}));
+        assertNull(LoadGenerator.Options.parse(new String[]{"--rate"}));
+        assertNull(LoadGenerator.Options.parse(new String[]{"--frobnicate", "1"}));
+        assertNull(LoadGenerator.Options.parse(new String[]{"--help"}));
+    }
+}
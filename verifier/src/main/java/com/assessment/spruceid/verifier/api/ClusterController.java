@@ -0,0 +1,50 @@
+package com.assessment.spruceid.verifier.api;
+
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.dto.ConsumeRequest;
+import com.assessment.spruceid.verifier.service.NonceService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Internal RSocket route used by the other nodes of a cluster (see cluster.peers). Only
+ * connections authenticated with cluster.secret reach it (see SecurityConfig).
+ */
+@Controller
+@ConditionalOnProperty(name = "nonce.mode", havingValue = "stateful", matchIfMissing = true)
+public class ClusterController {
+    private final NonceService nonceService;
+    private final KeyRegistry keys;
+    // Where consume runs: off the event loop when the nonce store waits on I/O.
+    private final Scheduler consumeOn;
+
+    public ClusterController(NonceService nonceService, KeyRegistry keys) {
+        this.nonceService = nonceService;
+        this.keys = keys;
+        this.consumeOn = nonceService.blocking() ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
+
+    /**
+     * Request-response: consume a nonce this node issued, on behalf of the node that received
+     * the proof. The nonce is only looked up in the local store, never forwarded again.
+     *
+     * @param req the nonce and the kid as presented by the holder
+     * @return Mono of true if the nonce was outstanding, fresh and issued for the key
+     */
+    @MessageMapping("cluster.nonce.consume")
+    public Mono<Boolean> consume(ConsumeRequest req) {
+        return Mono.fromSupplier(() -> {
+            String kid;
+            try {
+                kid = keys.requireKid(req.getKid());
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            return nonceService.validateAndConsume(req.getNonce(), kid);
+        }).subscribeOn(consumeOn);
+    }
+}
@@ -1,32 +1,138 @@
 package com.assessment.spruceid.verifier.api;
 
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
 import com.assessment.spruceid.verifier.dto.NonceResponse;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
 import com.assessment.spruceid.verifier.model.Nonce;
 import com.assessment.spruceid.verifier.service.NonceService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/nonce")
-@RequiredArgsConstructor
 public class NonceController {
     private final NonceService nonceService;
+    private final KeyRegistry keys;
+    private final int maxCount;
+    private final int streamMaxCount;
+    private final int batchSize;
+    private final PhaseTimers phases;
+    // Where issue runs: off the event loop when the nonce store waits on I/O.
+    private final Scheduler issueOn;
+
+    public NonceController(NonceService nonceService, KeyRegistry keys, PhaseTimers phases,
+                           @Value("${nonce.issue.max.count:1000}") int maxCount,
+                           @Value("${nonce.issue.stream.max.count:100000}") int streamMaxCount,
+                           @Value("${nonce.issue.batch.size:256}") int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("nonce.issue.batch.size must be positive");
+        this.nonceService = nonceService;
+        this.keys = keys;
+        this.maxCount = maxCount;
+        this.streamMaxCount = streamMaxCount;
+        this.batchSize = batchSize;
+        this.phases = phases;
+        this.issueOn = nonceService.blocking() ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
 
     /**
-     * Get nonce. Issue one-time nonce (global, single trusted key).
+     * Get nonce. Issue one-time nonce bound to a holder key.
      *
+     * @param kid key id of the holder, the default key if absent
      * @return Mono of NonceResponse
      */
     @GetMapping(value = "/issue", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
-    public Mono<NonceResponse> getNonce() {
-        Nonce n = nonceService.issue();
-        return Mono.just(new NonceResponse(n.getNonce(), n.getIssuedAt().toEpochMilli(), n.getExpiresAt().toEpochMilli()));
+    public Mono<NonceResponse> getNonce(@RequestParam(required = false) String kid) {
+        String resolved = resolveKid(kid);
+        return Mono.fromSupplier(() -> {
+            long t = phases.start();
+            Nonce nonce = issue(resolved);
+            phases.lap(PhaseTimers.Phase.ISSUE, t);
+            return NonceResponse.from(nonce);
+        }).subscribeOn(issueOn);
+    }
+
+    /**
+     * Get nonces in bulk. Issue count nonces bound to a holder key, registered with the
+     * nonce store in one batch.
+     *
+     * @param kid   key id of the holder, the default key if absent
+     * @param count number of nonces, at most nonce.issue.max.count
+     * @return Mono of the NonceResponses, fewer than count if the nonce store ran out of room
+     */
+    @GetMapping(value = "/issue", params = "count", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<List<NonceResponse>> getNonces(@RequestParam(required = false) String kid,
+                                               @RequestParam int count) {
+        checkCount(count, maxCount);
+        String resolved = resolveKid(kid);
+        return Mono.fromSupplier(() -> issue(resolved, count).stream().map(NonceResponse::from).toList())
+                .subscribeOn(issueOn);
+    }
+
+    /**
+     * Stream nonces (NDJSON), one per line. Nonces are issued in batches of
+     * nonce.issue.batch.size as the client reads, so a slow reader does not hold
+     * a large number of outstanding nonces it has not received yet.
+     *
+     * @param kid   key id of the holder, the default key if absent
+     * @param count number of nonces, at most nonce.issue.stream.max.count
+     * @return Flux of NonceResponse
+     */
+    @GetMapping(value = "/issue/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<NonceResponse> streamNonces(@RequestParam(required = false) String kid,
+                                            @RequestParam int count) {
+        checkCount(count, streamMaxCount);
+        String resolved = resolveKid(kid);
+        int batches = (count + batchSize - 1) / batchSize;
+        return Flux.range(0, batches)
+                .concatMap(i -> Mono.fromSupplier(() -> issue(resolved, Math.min(batchSize, count - i * batchSize)))
+                        .subscribeOn(issueOn), 1)
+                .concatMapIterable(batch -> batch)
+                .map(NonceResponse::from);
+    }
+
+    private List<Nonce> issue(String kid, int count) {
+        try {
+            return nonceService.issue(kid, count);
+        } catch (IllegalStateException e) {
+            // the nonce store is full
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private static void checkCount(int count, int max) {
+        if (count < 1 || count > max)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + max);
+    }
+
+    private Nonce issue(String kid) {
+        try {
+            return nonceService.issue(kid);
+        } catch (IllegalStateException e) {
+            // the nonce store is full
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private String resolveKid(String kid) {
+        try {
+            return keys.requireKid(kid);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 }
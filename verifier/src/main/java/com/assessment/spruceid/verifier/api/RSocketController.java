@@ -0,0 +1,121 @@
+package com.assessment.spruceid.verifier.api;
+
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.dto.NonceResponse;
+import com.assessment.spruceid.verifier.dto.NonceStreamRequest;
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import com.assessment.spruceid.verifier.service.NonceService;
+import com.assessment.spruceid.verifier.service.VerifyService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * RSocket routes for the same flows as the REST controllers, on spring.rsocket.server.port.
+ * Requests are multiplexed over one connection and streams honour RSocket request-n.
+ */
+@Controller
+public class RSocketController {
+    private final NonceService nonceService;
+    private final VerifyService verifyService;
+    private final KeyRegistry keys;
+    private final int maxCount;
+    private final int batchSize;
+    // Where issue runs: off the event loop when the nonce store waits on I/O.
+    private final Scheduler issueOn;
+
+    public RSocketController(NonceService nonceService, VerifyService verifyService, KeyRegistry keys,
+                             @Value("${nonce.issue.max.count:1000}") int maxCount,
+                             @Value("${nonce.issue.batch.size:256}") int batchSize) {
+        this.nonceService = nonceService;
+        this.verifyService = verifyService;
+        this.keys = keys;
+        this.maxCount = maxCount;
+        this.batchSize = batchSize;
+        this.issueOn = nonceService.blocking() ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
+
+    /**
+     * Request-response: issue one nonce.
+     *
+     * @param kid key id of the holder, the default key if absent
+     * @return Mono of NonceResponse
+     */
+    @MessageMapping("nonce.issue")
+    public Mono<NonceResponse> issue(@Payload(required = false) String kid) {
+        return Mono.fromSupplier(() -> NonceResponse.from(nonceService.issue(keys.requireKid(kid))))
+                .subscribeOn(issueOn);
+    }
+
+    /**
+     * Request-stream: issue up to nonce.issue.max.count nonces bound to a holder key,
+     * registered with the nonce store in batches of nonce.issue.batch.size as the requester
+     * asks for more.
+     * Payload: { "count": N, "kid": "..." }
+     *
+     * @param req number of nonces wanted and key id of the holder, the default key if absent
+     * @return Flux of NonceResponse
+     */
+    @MessageMapping("nonce.stream")
+    public Flux<NonceResponse> issueStream(NonceStreamRequest req) {
+        Integer count = req.getCount();
+        if (count == null || count < 1 || count > maxCount)
+            return Flux.error(new IllegalArgumentException("count must be between 1 and " + maxCount));
+        String kid;
+        try {
+            kid = keys.requireKid(req.getKid());
+        } catch (IllegalArgumentException e) {
+            return Flux.error(e);
+        }
+        int batches = (count + batchSize - 1) / batchSize;
+        return Flux.range(0, batches)
+                .concatMap(i -> Mono.fromSupplier(() -> nonceService.issue(kid, Math.min(batchSize, count - i * batchSize)))
+                        .subscribeOn(issueOn), 1)
+                .concatMapIterable(batch -> batch)
+                .map(NonceResponse::from);
+    }
+
+    /**
+     * Request-response: verify one proof.
+     *
+     * @param req VerifyRequest
+     * @return Mono of VerifyResponse
+     */
+    @MessageMapping("verify")
+    public Mono<VerifyResponse> verify(VerifyRequest req) {
+        return verifyService.verify(req).map(ResponseEntity::getBody);
+    }
+
+    /**
+     * Request-stream: verify a batch, results in request order.
+     *
+     * @param reqs the proofs
+     * @return Flux of VerifyResponse
+     */
+    @MessageMapping("verify.batch")
+    public Flux<VerifyResponse> verifyBatch(List<VerifyRequest> reqs) {
+        return verifyService.verifyBatch(reqs).flatMapIterable(ResponseEntity::getBody);
+    }
+
+    /**
+     * Request-channel: pipelined verification. The client keeps sending signed proofs
+     * (typically for nonces taken from nonce.stream on the same connection) and receives
+     * each result as it completes, tagged with its nonce.
+     *
+     * @param reqs the proofs
+     * @return Flux of VerifyResponse
+     */
+    @MessageMapping("verify.channel")
+    public Flux<VerifyResponse> verifyChannel(Flux<VerifyRequest> reqs) {
+        return verifyService.verifyStream(reqs);
+    }
+}
@@ -8,8 +8,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
@@ -21,4 +24,15 @@ public class VerifyController {
     public Mono<ResponseEntity<VerifyResponse>> verify(@RequestBody VerifyRequest req) {
         return verifyService.verify(req);
     }
+
+    @PostMapping(value = "/verify/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<ResponseEntity<List<VerifyResponse>>> verifyBatch(@RequestBody List<VerifyRequest> reqs) {
+        return verifyService.verifyBatch(reqs);
+    }
+
+    @PostMapping(value = "/verify/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<VerifyResponse> verifyStream(@RequestBody Flux<VerifyRequest> reqs) {
+        return verifyService.verifyStream(reqs);
+    }
 }
@@ -0,0 +1,325 @@
+package com.assessment.spruceid.verifier.audit;
+
+import com.assessment.spruceid.verifier.service.Rejection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail of verify outcomes, written off the request path.
+ * <p>
+ * A request thread samples its outcome, claims a slot of a bounded ring with one CAS and fills
+ * in a few references; it never formats, allocates or blocks. One background thread drains the
+ * ring and writes one JSON object per line to a {@link Sink}. When the ring is full the record
+ * is dropped and counted, so a burst of junk traffic costs a counter increment per request
+ * rather than an I/O storm.
+ * <p>
+ * Each outcome (verified, malformed, unknown-kid, bad-nonce, bad-signature, busy, error) has
+ * its own sampling rate between 0 and 1.
+ */
+public class AuditLog implements Closeable {
+    private static final Logger log = LogManager.getLogger(AuditLog.class);
+    private static final AuditLog NOOP = new AuditLog();
+    private static final int MAX_FIELD = 128;
+    private static final long IDLE_NANOS = 1_000_000;
+    private static final int VERIFIED = Rejection.values().length;
+
+    private final Entry[] entries;
+    // Vyukov bounded queue: a slot is free for position p when its sequence is p, readable when p + 1.
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final int mask;
+    private final double[] rates;
+    private final Sink sink;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private long head;
+    private volatile boolean running = true;
+
+    /**
+     * Records audited.
+     */
+    public interface Sink extends Closeable {
+        /**
+         * @param line one JSON object, without the line separator
+         */
+        void write(CharSequence line) throws IOException;
+
+        /**
+         * Called after each drained batch.
+         */
+        default void flush() throws IOException {
+        }
+
+        @Override
+        default void close() throws IOException {
+        }
+
+        /**
+         * @param path file to append to, created if missing
+         * @return a sink writing JSON lines to the file
+         */
+        static Sink file(Path path) throws IOException {
+            BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return new Sink() {
+                @Override
+                public void write(CharSequence line) throws IOException {
+                    out.append(line).append('\n');
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.close();
+                }
+            };
+        }
+
+        /**
+         * @param name logger name
+         * @return a sink logging each line at info
+         */
+        static Sink logger(String name) {
+            Logger logger = LogManager.getLogger(name);
+            return line -> logger.info(line.toString());
+        }
+    }
+
+    /**
+     * @param capacity ring size, rounded up to a power of two
+     * @param rates    sampling rate by outcome; outcomes not listed are always written
+     * @param sink     where the writer thread puts the records
+     */
+    public AuditLog(int capacity, Map<String, Double> rates, Sink sink) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        for (Map.Entry<String, Double> e : rates.entrySet()) {
+            if (!e.getKey().equals("verified") && Arrays.stream(Rejection.values()).noneMatch(r -> r.outcome().equals(e.getKey())))
+                throw new IllegalArgumentException("Unknown audit outcome: " + e.getKey());
+            if (!(e.getValue() >= 0 && e.getValue() <= 1))
+                throw new IllegalArgumentException("Audit sampling rate must be between 0 and 1: " + e.getKey() + "=" + e.getValue());
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.entries = new Entry[size];
+        for (int i = 0; i < size; i++) entries[i] = new Entry();
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        this.mask = size - 1;
+        this.rates = new double[VERIFIED + 1];
+        for (Rejection r : Rejection.values()) this.rates[r.ordinal()] = rates.getOrDefault(r.outcome(), 1.0);
+        this.rates[VERIFIED] = rates.getOrDefault("verified", 1.0);
+        this.sink = sink;
+        this.writer = Thread.ofPlatform().daemon().name("audit-writer").start(this::drainLoop);
+    }
+
+    private AuditLog() {
+        this.entries = null;
+        this.sequences = null;
+        this.mask = 0;
+        this.rates = null;
+        this.sink = null;
+        this.writer = null;
+        this.running = false;
+    }
+
+    /**
+     * @return an audit log that records nothing
+     */
+    public static AuditLog noop() {
+        return NOOP;
+    }
+
+    /**
+     * Audit a proof that verified.
+     *
+     * @param kid   the key it was signed with
+     * @param nonce the nonce it consumed
+     */
+    public void verified(String kid, String nonce) {
+        offer(VERIFIED, null, kid, nonce, null);
+    }
+
+    /**
+     * Audit a rejected proof.
+     *
+     * @param reason why
+     * @param kid    the key id, as resolved or as presented; may be null
+     * @param nonce  the nonce presented; may be null
+     * @param error  the unexpected failure behind {@link Rejection#ERROR}, else null
+     */
+    public void rejected(Rejection reason, String kid, String nonce, Throwable error) {
+        offer(reason.ordinal(), reason, kid, nonce, error);
+    }
+
+    /**
+     * @return records lost because the ring was full or the sink failed
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return records handed to the sink
+     */
+    public long written() {
+        return written.sum();
+    }
+
+    private void offer(int outcome, Rejection reason, String kid, String nonce, Throwable error) {
+        if (!running) return;
+        double rate = rates[outcome];
+        if (rate < 1 && (rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate)) return;
+
+        long pos = tail.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long dif = sequences.getAcquire(i) - pos;
+            if (dif == 0) {
+                if (tail.weakCompareAndSetVolatile(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (dif < 0) {
+                dropped.increment();
+                return;
+            } else {
+                pos = tail.get();
+            }
+        }
+        int i = (int) pos & mask;
+        Entry e = entries[i];
+        e.time = System.currentTimeMillis();
+        e.reason = reason;
+        e.kid = kid;
+        e.nonce = nonce;
+        e.error = error;
+        sequences.setRelease(i, pos + 1);
+    }
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        while (running) {
+            if (drain(line) > 0) continue;
+            // a claimed slot not yet filled is a few stores away; an empty ring can wait
+            if (tail.get() != head) Thread.yield();
+            else LockSupport.parkNanos(IDLE_NANOS);
+        }
+        drain(line);
+    }
+
+    // Writes whatever is readable; runs on the writer thread only.
+    private int drain(StringBuilder line) {
+        int n = 0;
+        while (true) {
+            int i = (int) head & mask;
+            if (sequences.getAcquire(i) != head + 1) break;
+            Entry e = entries[i];
+            line.setLength(0);
+            format(e, line);
+            e.kid = null;
+            e.nonce = null;
+            e.error = null;
+            sequences.setRelease(i, head + mask + 1);
+            head++;
+            try {
+                sink.write(line);
+                written.increment();
+            } catch (IOException | RuntimeException ex) {
+                dropped.increment();
+                log.warn("Writing the audit log failed: {}", ex.toString());
+            }
+            n++;
+        }
+        if (n > 0) {
+            try {
+                sink.flush();
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Flushing the audit log failed: {}", ex.toString());
+            }
+        }
+        return n;
+    }
+
+    static void format(Entry e, StringBuilder out) {
+        out.append("{\"time\":\"").append(Instant.ofEpochMilli(e.time)).append('"');
+        out.append(",\"outcome\":\"").append(e.reason == null ? "verified" : e.reason.outcome()).append('"');
+        if (e.reason != null) field(out, "reason", e.reason.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        if (e.kid != null) field(out, "kid", e.kid);
+        if (e.nonce != null) field(out, "nonce", e.nonce);
+        if (e.error != null) {
+            field(out, "error", e.error.toString());
+            StackTraceElement[] stack = e.error.getStackTrace();
+            if (stack.length > 0) field(out, "at", stack[0].toString());
+        }
+        out.append('}');
+    }
+
+    // Appends ,"name":"value" with the value JSON-escaped and cut to MAX_FIELD characters.
+    private static void field(StringBuilder out, String name, String value) {
+        out.append(",\"").append(name).append("\":\"");
+        int end = Math.min(value.length(), MAX_FIELD);
+        for (int i = 0; i < end; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20 || Character.isSurrogate(c)) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+                }
+            }
+        }
+        if (value.length() > MAX_FIELD) out.append("...");
+        out.append('"');
+    }
+
+    /**
+     * Stop accepting records, write what is queued and close the sink.
+     */
+    @Override
+    public void close() {
+        if (writer == null || !running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            log.warn("Closing the audit log failed: {}", e.toString());
+        }
+    }
+
+    static final class Entry {
+        long time;
+        Rejection reason;
+        String kid;
+        String nonce;
+        Throwable error;
+    }
+}
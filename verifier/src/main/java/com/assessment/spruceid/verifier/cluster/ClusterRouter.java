@@ -0,0 +1,146 @@
+package com.assessment.spruceid.verifier.cluster;
+
+import com.assessment.spruceid.verifier.utils.Base64Util;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes nonce consumption to the node that issued the nonce.
+ * <p>
+ * In stateful mode a nonce is only outstanding on the node that issued it, so every node
+ * writes its id (0-255) into the first byte of the nonces it issues. A node handed a nonce
+ * owned by a peer asks that peer to consume it over the internal channel instead of sharing
+ * the store. Nonces that do not decode, carry this node's id or the id of a node that is not
+ * configured are consumed locally.
+ */
+public class ClusterRouter implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(ClusterRouter.class);
+    private static final int NONCE_BYTES = 32;
+
+    private final int nodeId;
+    private final Peer[] peers = new Peer[256];
+    private final Duration timeout;
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param nodeId  id of this node, 0-255
+     * @param peers   other nodes by id
+     * @param timeout how long to wait for a peer before rejecting the nonce
+     */
+    public ClusterRouter(int nodeId, Map<Integer, Peer> peers, Duration timeout) {
+        this.nodeId = checkId(nodeId);
+        this.timeout = timeout;
+        peers.forEach((id, peer) -> {
+            if (checkId(id) != nodeId) this.peers[id] = peer;
+        });
+    }
+
+    /**
+     * Router of a node that is not part of a cluster: every nonce is consumed locally.
+     *
+     * @return the router
+     */
+    public static ClusterRouter standalone() {
+        return new ClusterRouter(0, Map.of(), Duration.ZERO);
+    }
+
+    /**
+     * @return id of this node
+     */
+    public int nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Id of the node that issued a nonce.
+     *
+     * @param nonce the nonce
+     * @return the node id, or -1 if the nonce is not a 32-byte base64url value
+     */
+    public static int owner(String nonce) {
+        if (!Base64Util.isCanonicalUrl(nonce, NONCE_BYTES)) return -1;
+        return (int) (Base64Util.readLong(nonce, 0) >>> 56);
+    }
+
+    /**
+     * @param nonce the nonce
+     * @return true if this node is the one to consume the nonce
+     */
+    public boolean isLocal(String nonce) {
+        int owner = owner(nonce);
+        return owner < 0 || peers[owner] == null;
+    }
+
+    /**
+     * Consume a nonce on the node that issued it. Unreachable or slow peers reject the nonce:
+     * the holder can fetch a new one, while accepting would risk a replay.
+     *
+     * @param nonce the nonce, not local to this node
+     * @param kid   the key id as presented, resolved by the owner
+     * @return Mono of true if the owner consumed the nonce for the key
+     */
+    public Mono<Boolean> consume(String nonce, String kid) {
+        return Mono.defer(() -> {
+            int owner = owner(nonce);
+            Peer peer = owner < 0 ? null : peers[owner];
+            if (peer == null) return Mono.just(false);
+            forwarded.incrementAndGet();
+            return peer.consume(nonce, kid)
+                    .timeout(timeout)
+                    .defaultIfEmpty(false)
+                    .onErrorResume(e -> {
+                        failures.incrementAndGet();
+                        log.warn("Consume on node {} failed: {}", owner, e.toString());
+                        return Mono.just(false);
+                    });
+        });
+    }
+
+    /**
+     * @return consumes sent to other nodes
+     */
+    public long forwarded() {
+        return forwarded.get();
+    }
+
+    /**
+     * @return forwarded consumes that failed or timed out
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        for (Peer peer : peers) {
+            if (peer != null) peer.close();
+        }
+    }
+
+    private static int checkId(int id) {
+        if (id < 0 || id > 255) throw new IllegalArgumentException("Node ids must be between 0 and 255: " + id);
+        return id;
+    }
+
+    /**
+     * Another node of the cluster.
+     */
+    public interface Peer extends AutoCloseable {
+        /**
+         * @param nonce the nonce, issued by this peer
+         * @param kid   the key id as presented
+         * @return Mono of true if the peer consumed the nonce for the key
+         */
+        Mono<Boolean> consume(String nonce, String kid);
+
+        @Override
+        default void close() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.assessment.spruceid.verifier.codec;
+
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON decoder for a single {@link VerifyRequest} body (POST /api/verify). Reads the fields
+ * from the request bytes with {@link VerifyRequestReader}, without a parser, token buffers or
+ * intermediate strings; bodies it does not cover go to the general JSON decoder.
+ * <p>
+ * Lists (batch) and NDJSON streams are left to the general decoder. Decoding time, fast
+ * path or not, is recorded as the json-decode phase.
+ */
+public class VerifyRequestDecoder implements Decoder<VerifyRequest> {
+    private final Decoder<Object> fallback;
+    private final int maxInMemorySize;
+    private final PhaseTimers phases;
+
+    /**
+     * @param fallback        decoder for bodies the fast path does not cover
+     * @param maxInMemorySize largest body accepted, as for the general decoder
+     */
+    public VerifyRequestDecoder(Decoder<Object> fallback, int maxInMemorySize) {
+        this(fallback, maxInMemorySize, PhaseTimers.noop());
+    }
+
+    /**
+     * @param fallback        decoder for bodies the fast path does not cover
+     * @param maxInMemorySize largest body accepted, as for the general decoder
+     * @param phases          where decoding time is recorded
+     */
+    public VerifyRequestDecoder(Decoder<Object> fallback, int maxInMemorySize, PhaseTimers phases) {
+        this.fallback = fallback;
+        this.maxInMemorySize = maxInMemorySize;
+        this.phases = phases;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return elementType.toClass() == VerifyRequest.class
+                && (mimeType == null || MediaType.APPLICATION_JSON.isCompatibleWith(mimeType));
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return List.of(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    public Flux<VerifyRequest> decode(Publisher<DataBuffer> input, ResolvableType elementType,
+                                      MimeType mimeType, Map<String, Object> hints) {
+        return decodeToMono(input, elementType, mimeType, hints).flux();
+    }
+
+    @Override
+    public Mono<VerifyRequest> decodeToMono(Publisher<DataBuffer> input, ResolvableType elementType,
+                                            MimeType mimeType, Map<String, Object> hints) {
+        return DataBufferUtils.join(input, maxInMemorySize)
+                .flatMap(buffer -> Mono.justOrEmpty(decode(buffer, elementType, mimeType, hints)));
+    }
+
+    @Override
+    public VerifyRequest decode(DataBuffer buffer, ResolvableType targetType,
+                                MimeType mimeType, Map<String, Object> hints) {
+        long t = phases.start();
+        VerifyRequest req = null;
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            ByteBuffer first = it.hasNext() ? it.next() : ByteBuffer.allocate(0);
+            // a body split over several buffers is rare for a request this small
+            if (!it.hasNext()) req = VerifyRequestReader.read(first);
+        }
+        if (req != null) {
+            DataBufferUtils.release(buffer);
+        } else {
+            // the general decoder releases the buffer
+            req = (VerifyRequest) fallback.decode(buffer, targetType, mimeType, hints);
+        }
+        phases.lap(PhaseTimers.Phase.JSON_DECODE, t);
+        return req;
+    }
+}
@@ -0,0 +1,207 @@
+package com.assessment.spruceid.verifier.codec;
+
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a {@link VerifyRequest} straight from the bytes of a JSON body, for the common shape
+ * <code>{"nonce":"...","sigBase64Url":"...","kid":"..."}</code>: one flat object with string or
+ * null values. Field values are copied once, into the strings of the request.
+ * <p>
+ * Anything else (escape sequences or non-ASCII characters in a value, nested objects or arrays,
+ * a non-string value for a known field, malformed JSON) makes {@link #read} return null, and the
+ * caller hands the body to the general JSON decoder. So the fast path only ever accepts bodies
+ * that the general decoder reads the same way.
+ */
+public final class VerifyRequestReader {
+    private static final byte[] NONCE = ascii("nonce");
+    private static final byte[] SIG = ascii("sigBase64Url");
+    private static final byte[] KID = ascii("kid");
+    private static final byte[] NULL = ascii("null");
+
+    private final ByteBuffer in;
+    private int pos;
+    private final int end;
+
+    private VerifyRequestReader(ByteBuffer in) {
+        this.in = in;
+        this.pos = in.position();
+        this.end = in.limit();
+    }
+
+    /**
+     * Read a request from the readable bytes of a buffer; the buffer position is not changed.
+     *
+     * @param body the JSON body
+     * @return the request, or null if the body is not of the simple shape
+     */
+    public static VerifyRequest read(ByteBuffer body) {
+        return new VerifyRequestReader(body).object();
+    }
+
+    private VerifyRequest object() {
+        skipWhitespace();
+        if (!take('{')) return null;
+        VerifyRequest req = new VerifyRequest();
+        skipWhitespace();
+        if (!take('}')) {
+            while (true) {
+                skipWhitespace();
+                int keyStart = pos + 1;
+                int keyEnd = plainString();
+                if (keyEnd < 0) return null;
+                skipWhitespace();
+                if (!take(':')) return null;
+                skipWhitespace();
+                byte[] key = knownKey(keyStart, keyEnd);
+                if (key == null) {
+                    if (!skipValue()) return null;
+                } else {
+                    String value;
+                    if (matches(NULL)) {
+                        pos += NULL.length;
+                        value = null;
+                    } else {
+                        int valueStart = pos + 1;
+                        int valueEnd = plainString();
+                        if (valueEnd < 0) return null;
+                        value = string(valueStart, valueEnd);
+                    }
+                    if (key == NONCE) req.setNonce(value);
+                    else if (key == SIG) req.setSigBase64Url(value);
+                    else req.setKid(value);
+                }
+                skipWhitespace();
+                if (take('}')) break;
+                if (!take(',')) return null;
+            }
+        }
+        skipWhitespace();
+        return pos == end ? req : null;
+    }
+
+    // A string without escapes or non-ASCII characters, starting at pos. Returns the index of
+    // the closing quote and moves past it, or -1.
+    private int plainString() {
+        if (!take('"')) return -1;
+        for (; pos < end; pos++) {
+            byte b = in.get(pos);
+            if (b == '"') return pos++;
+            if (b == '\\' || b < 0x20) return -1;
+        }
+        return -1;
+    }
+
+    // Skip the value of an unknown field: a string (escapes allowed) or a literal/number.
+    private boolean skipValue() {
+        if (pos >= end) return false;
+        byte b = in.get(pos);
+        if (b == '"') {
+            for (pos++; pos < end; pos++) {
+                byte c = in.get(pos);
+                if (c == '\\') pos++;
+                else if (c == '"') {
+                    pos++;
+                    return true;
+                } else if (c >= 0 && c < 0x20) return false;
+            }
+            return false;
+        }
+        if (b == '{' || b == '[') return false;
+        int start = pos;
+        while (pos < end) {
+            byte c = in.get(pos);
+            if (c == ',' || c == '}' || isWhitespace(c)) break;
+            if (!(c == '-' || c == '+' || c == '.' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')))
+                return false;
+            pos++;
+        }
+        return literal(start, pos);
+    }
+
+    // true, false, null or a JSON number
+    private boolean literal(int start, int stop) {
+        int len = stop - start;
+        if (len == 0) return false;
+        if (is(start, stop, "true") || is(start, stop, "false") || is(start, stop, "null")) return true;
+        int i = start;
+        if (in.get(i) == '-') i++;
+        if (i == stop) return false;
+        if (in.get(i) == '0') i++;
+        else if (!digits(i, stop)) return false;
+        else while (i < stop && isDigit(in.get(i))) i++;
+        if (i < stop && in.get(i) == '.') {
+            i++;
+            if (!digits(i, stop)) return false;
+            while (i < stop && isDigit(in.get(i))) i++;
+        }
+        if (i < stop && (in.get(i) == 'e' || in.get(i) == 'E')) {
+            i++;
+            if (i < stop && (in.get(i) == '+' || in.get(i) == '-')) i++;
+            if (!digits(i, stop)) return false;
+            while (i < stop && isDigit(in.get(i))) i++;
+        }
+        return i == stop;
+    }
+
+    private boolean digits(int i, int stop) {
+        return i < stop && isDigit(in.get(i));
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private boolean is(int start, int stop, String word) {
+        if (stop - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) if (in.get(start + i) != word.charAt(i)) return false;
+        return true;
+    }
+
+    private byte[] knownKey(int start, int stop) {
+        if (equal(start, stop, NONCE)) return NONCE;
+        if (equal(start, stop, SIG)) return SIG;
+        if (equal(start, stop, KID)) return KID;
+        return null;
+    }
+
+    private boolean equal(int start, int stop, byte[] word) {
+        if (stop - start != word.length) return false;
+        for (int i = 0; i < word.length; i++) if (in.get(start + i) != word[i]) return false;
+        return true;
+    }
+
+    private boolean matches(byte[] word) {
+        return equal(pos, Math.min(end, pos + word.length), word);
+    }
+
+    private String string(int start, int stop) {
+        if (in.hasArray())
+            return new String(in.array(), in.arrayOffset() + start, stop - start, StandardCharsets.ISO_8859_1);
+        byte[] b = new byte[stop - start];
+        in.get(start, b);
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+
+    private boolean take(char c) {
+        if (pos < end && in.get(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(in.get(pos))) pos++;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
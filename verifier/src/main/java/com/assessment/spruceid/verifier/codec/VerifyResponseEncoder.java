@@ -0,0 +1,75 @@
+package com.assessment.spruceid.verifier.codec;
+
+import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * JSON encoder for a single {@link VerifyResponse} body. The fixed outcomes (verified, nonce
+ * rejected, signature rejected, busy) are serialized once at startup and written as a wrapped
+ * byte array; other responses, which carry a request-specific message, go to the general JSON
+ * encoder.
+ * <p>
+ * Lists (batch) and NDJSON streams, whose results echo the nonce, are left to the general
+ * encoder.
+ */
+public class VerifyResponseEncoder implements Encoder<VerifyResponse> {
+    private final Encoder<Object> fallback;
+    private final VerifyResponse[] fixed;
+    private final byte[][] bodies;
+
+    /**
+     * @param fallback  encoder for responses that are not a fixed outcome
+     * @param serialize the JSON serialization of the general encoder, used for the fixed bodies
+     */
+    public VerifyResponseEncoder(Encoder<Object> fallback, Function<VerifyResponse, byte[]> serialize) {
+        this.fallback = fallback;
+        this.fixed = VerifyResponse.fixedOutcomes().toArray(VerifyResponse[]::new);
+        this.bodies = new byte[fixed.length][];
+        for (int i = 0; i < fixed.length; i++) bodies[i] = serialize.apply(fixed[i]);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return elementType.toClass() == VerifyResponse.class
+                && (mimeType == null || MediaType.APPLICATION_JSON.isCompatibleWith(mimeType));
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return List.of(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends VerifyResponse> input, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(input).map(r -> encodeValue(r, bufferFactory, elementType, mimeType, hints));
+    }
+
+    @Override
+    public DataBuffer encodeValue(VerifyResponse value, DataBufferFactory bufferFactory,
+                                  ResolvableType valueType, MimeType mimeType, Map<String, Object> hints) {
+        byte[] body = body(value);
+        if (body != null) return bufferFactory.wrap(body);
+        return fallback.encodeValue(value, bufferFactory, valueType, mimeType, hints);
+    }
+
+    /**
+     * @param value a response
+     * @return the pre-serialized body if the response is a fixed outcome, null otherwise
+     */
+    byte[] body(VerifyResponse value) {
+        for (int i = 0; i < fixed.length; i++) if (fixed[i].equals(value)) return bodies[i];
+        return null;
+    }
+}
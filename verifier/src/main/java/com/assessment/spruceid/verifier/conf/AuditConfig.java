@@ -0,0 +1,49 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.audit.AuditLog;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class AuditConfig {
+    private static final Logger log = LogManager.getLogger(AuditConfig.class);
+
+    /**
+     * Audit log of verify outcomes. verifier.audit.sample lists sampling rates as
+     * outcome=rate, comma separated (outcomes left out are always written). Records go to
+     * verifier.audit.file as JSON lines, or to the "audit" logger when no file is set.
+     *
+     * @param enabled  false for an audit log that records nothing
+     * @param capacity ring size; records beyond it are dropped and counted
+     * @param sample   sampling rate per outcome
+     * @param file     file to append to, may be blank
+     * @return the AuditLog
+     * @throws IOException if the file cannot be opened
+     */
+    @Bean(destroyMethod = "close")
+    public AuditLog auditLog(@Value("${verifier.audit.enabled:true}") boolean enabled,
+                             @Value("${verifier.audit.capacity:8192}") int capacity,
+                             @Value("${verifier.audit.sample:}") String sample,
+                             @Value("${verifier.audit.file:}") String file) throws IOException {
+        if (!enabled) return AuditLog.noop();
+        Map<String, Double> rates = new HashMap<>();
+        for (String entry : sample.split(",")) {
+            if (entry.isBlank()) continue;
+            String[] outcomeRate = entry.trim().split("=", 2);
+            if (outcomeRate.length != 2)
+                throw new IllegalArgumentException("verifier.audit.sample entries must be outcome=rate: " + entry);
+            rates.put(outcomeRate[0].trim(), Double.parseDouble(outcomeRate[1].trim()));
+        }
+        AuditLog.Sink sink = file.isBlank() ? AuditLog.Sink.logger("audit") : AuditLog.Sink.file(Path.of(file));
+        log.info("Audit log: {}, capacity={}, sampling={}", file.isBlank() ? "logger audit" : file, capacity, rates);
+        return new AuditLog(capacity, rates, sink);
+    }
+}
@@ -0,0 +1,90 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.cluster.ClusterRouter;
+import com.assessment.spruceid.verifier.dto.ConsumeRequest;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class ClusterConfig {
+    private static final Logger log = LogManager.getLogger(ClusterConfig.class);
+
+    /**
+     * Routing of nonce consumption between verifier nodes.
+     * <p>
+     * cluster.node.id is written into every nonce this node issues; cluster.peers lists the
+     * other nodes as id=host:port (their spring.rsocket.server.port), comma separated. Each
+     * peer gets one lazily connected RSocket connection that is re-established after a
+     * failure, authenticated with cluster.secret. With no peers every nonce is consumed locally.
+     * <p>
+     * Only stateful nonces are routed; sealed nonces can be checked on any node.
+     *
+     * @param builder       builder for the peer connections
+     * @param mode          nonce.mode
+     * @param nodeId        id of this node
+     * @param peers         the other nodes, may be blank
+     * @param secret        cluster.secret, required with peers
+     * @param timeoutMillis how long to wait for a peer to answer
+     * @return the ClusterRouter
+     */
+    @Bean(destroyMethod = "close")
+    public ClusterRouter clusterRouter(RSocketRequester.Builder builder,
+                                       @Value("${nonce.mode:stateful}") String mode,
+                                       @Value("${cluster.node.id:0}") int nodeId,
+                                       @Value("${cluster.peers:}") String peers,
+                                       @Value("${VERIFIER_CLUSTER_SECRET:${cluster.secret:}}") String secret,
+                                       @Value("${cluster.forward.timeout.millis:1000}") long timeoutMillis) {
+        if (peers.isBlank()) return new ClusterRouter(nodeId, Map.of(), Duration.ofMillis(timeoutMillis));
+        if (!"stateful".equals(mode)) {
+            log.warn("cluster.peers is ignored with nonce.mode={}", mode);
+            return new ClusterRouter(nodeId, Map.of(), Duration.ofMillis(timeoutMillis));
+        }
+        if (secret.isEmpty()) throw new IllegalArgumentException("cluster.secret is required with cluster.peers");
+
+        builder.rsocketStrategies(s -> s.encoder(new SimpleAuthenticationEncoder()))
+                .setupMetadata(new UsernamePasswordMetadata(SecurityConfig.CLUSTER_PEER, secret),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()));
+        Map<Integer, ClusterRouter.Peer> byId = new HashMap<>();
+        for (String entry : peers.split(",")) {
+            String[] idAddress = entry.trim().split("=", 2);
+            int colon = idAddress.length == 2 ? idAddress[1].lastIndexOf(':') : -1;
+            if (colon < 0) throw new IllegalArgumentException("cluster.peers entries must be id=host:port: " + entry);
+            int id = Integer.parseInt(idAddress[0].trim());
+            String host = idAddress[1].substring(0, colon).trim();
+            int port = Integer.parseInt(idAddress[1].substring(colon + 1).trim());
+            byId.put(id, peer(builder.tcp(host, port)));
+            log.info("Cluster peer {}: {}:{}", id, host, port);
+        }
+        log.info("Cluster node {} with {} peers", nodeId, byId.size());
+        return new ClusterRouter(nodeId, byId, Duration.ofMillis(timeoutMillis));
+    }
+
+    private static ClusterRouter.Peer peer(RSocketRequester requester) {
+        return new ClusterRouter.Peer() {
+            @Override
+            public Mono<Boolean> consume(String nonce, String kid) {
+                return requester.route("cluster.nonce.consume")
+                        .data(new ConsumeRequest(nonce, kid))
+                        .retrieveMono(Boolean.class);
+            }
+
+            @Override
+            public void close() {
+                requester.dispose();
+            }
+        };
+    }
+}
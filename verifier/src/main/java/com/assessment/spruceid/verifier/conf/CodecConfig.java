@@ -0,0 +1,47 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.codec.VerifyRequestDecoder;
+import com.assessment.spruceid.verifier.codec.VerifyResponseEncoder;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Registers the dedicated /api/verify codecs ahead of the general JSON codecs. Both fall back
+ * to a Jackson codec built on the application's ObjectMapper, so responses are byte-for-byte
+ * what Jackson would write.
+ */
+@Configuration
+public class CodecConfig implements WebFluxConfigurer {
+    private final ObjectMapper mapper;
+    private final int maxInMemorySize;
+    private final PhaseTimers phases;
+
+    public CodecConfig(ObjectMapper mapper, PhaseTimers phases,
+                       @Value("${spring.http.codecs.max-in-memory-size:256KB}") DataSize maxInMemorySize) {
+        this.mapper = mapper;
+        this.phases = phases;
+        this.maxInMemorySize = (int) maxInMemorySize.toBytes();
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        Jackson2JsonDecoder jsonDecoder = new Jackson2JsonDecoder(mapper);
+        jsonDecoder.setMaxInMemorySize(maxInMemorySize);
+        configurer.customCodecs().register(new VerifyRequestDecoder(jsonDecoder, maxInMemorySize, phases));
+        configurer.customCodecs().register(new VerifyResponseEncoder(new Jackson2JsonEncoder(mapper), r -> {
+            try {
+                return mapper.writeValueAsBytes(r);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot serialize " + r, e);
+            }
+        }));
+    }
+}
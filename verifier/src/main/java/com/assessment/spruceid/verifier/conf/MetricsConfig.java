@@ -0,0 +1,133 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.audit.AuditLog;
+import com.assessment.spruceid.verifier.crypto.EntropyPool;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import com.assessment.spruceid.verifier.service.Rejection;
+import com.assessment.spruceid.verifier.service.impl.SealedNonceServiceImpl;
+import com.assessment.spruceid.verifier.service.impl.VerificationStage;
+import com.assessment.spruceid.verifier.service.impl.VerifyServiceImpl;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters and gauges of the verifier, for /actuator/metrics and /actuator/prometheus.
+ * <p>
+ * All of them read counters the components keep anyway, when the registry is scraped, so
+ * they add nothing to the request path. Per-phase latency is recorded separately by
+ * {@link com.assessment.spruceid.verifier.metrics.PhaseTimers}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * verifier.verify.outcomes, tagged by outcome (verified, malformed, unknown-kid,
+     * bad-nonce, bad-signature, busy, error) and by the finer reason.
+     */
+    @Bean
+    public MeterBinder verifyOutcomeMetrics(VerifyServiceImpl verifyService) {
+        return registry -> {
+            FunctionCounter.builder("verifier.verify.outcomes", verifyService, VerifyServiceImpl::verified)
+                    .description("Proofs verified or rejected")
+                    .tags("outcome", "verified", "reason", "verified")
+                    .register(registry);
+            for (Rejection r : Rejection.values()) {
+                FunctionCounter.builder("verifier.verify.outcomes", verifyService, s -> s.rejections(r))
+                        .description("Proofs verified or rejected")
+                        .tags("outcome", r.outcome(), "reason", r.name().toLowerCase(Locale.ROOT).replace('_', '-'))
+                        .register(registry);
+            }
+        };
+    }
+
+    /**
+     * Verification stage occupancy: tasks running or queued, and queued only.
+     */
+    @Bean
+    public MeterBinder verificationStageMetrics(VerificationStage stage) {
+        return registry -> {
+            Gauge.builder("verifier.verify.in.flight", stage, VerificationStage::inFlight)
+                    .description("Verifications running or queued on the verification stage")
+                    .register(registry);
+            Gauge.builder("verifier.verify.queue.depth", stage, VerificationStage::queueDepth)
+                    .description("Verifications waiting for a verification stage thread")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Outstanding nonces, expirations and sweep time of the nonce store (nonce.mode=stateful),
+     * or the consumed set of nonce.mode=sealed.
+     */
+    @Bean
+    public MeterBinder nonceMetrics(ObjectProvider<NonceStore> store, ObjectProvider<SealedNonceServiceImpl> sealed) {
+        return registry -> {
+            store.ifAvailable(s -> {
+                Gauge.builder("verifier.nonce.outstanding", s, NonceStore::size)
+                        .description("Nonces issued and not yet consumed or expired")
+                        .register(registry);
+                FunctionCounter.builder("verifier.nonce.expired", s, NonceStore::expiredCount)
+                        .description("Nonces that expired unconsumed")
+                        .register(registry);
+                TimeGauge.builder("verifier.nonce.sweep.last", s, TimeUnit.NANOSECONDS, NonceStore::lastSweepNanos)
+                        .description("Duration of the last expiry sweep")
+                        .register(registry);
+                TimeGauge.builder("verifier.nonce.sweep.max", s, TimeUnit.NANOSECONDS, NonceStore::maxSweepNanos)
+                        .description("Longest expiry sweep since startup")
+                        .register(registry);
+            });
+            sealed.ifAvailable(s -> Gauge.builder("verifier.nonce.consumed.remembered", s, SealedNonceServiceImpl::consumedSize)
+                    .description("Consumed sealed nonces remembered until they expire")
+                    .register(registry));
+        };
+    }
+
+    /**
+     * Nonce entropy pool refills, and claims that had to fill a block themselves.
+     */
+    @Bean
+    public MeterBinder entropyMetrics(EntropyPool pool) {
+        return registry -> {
+            FunctionCounter.builder("verifier.entropy.refills", pool, EntropyPool::refills)
+                    .description("Entropy blocks filled in the background")
+                    .register(registry);
+            FunctionCounter.builder("verifier.entropy.misses", pool, EntropyPool::misses)
+                    .description("Nonce issues that waited for an entropy block to be filled")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Audit records written, and lost to a full ring or a failing sink.
+     */
+    @Bean
+    public MeterBinder auditMetrics(AuditLog audit) {
+        return registry -> {
+            FunctionCounter.builder("verifier.audit.written", audit, AuditLog::written)
+                    .description("Audit records written")
+                    .register(registry);
+            FunctionCounter.builder("verifier.audit.dropped", audit, AuditLog::dropped)
+                    .description("Audit records dropped because the ring was full or the sink failed")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Requests refused by the rate limit, when verifier.ratelimit.enabled=true.
+     */
+    @Bean
+    public MeterBinder rateLimitMetrics(ObjectProvider<RateLimitFilter> filter) {
+        return registry -> filter.ifAvailable(f ->
+                FunctionCounter.builder("verifier.ratelimit.rejected", f, RateLimitFilter::rejected)
+                        .description("Requests answered 429 by the rate limit")
+                        .register(registry));
+    }
+}
@@ -0,0 +1,78 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.service.NonceStore;
+import com.assessment.spruceid.verifier.service.impl.HeapNonceStore;
+import com.assessment.spruceid.verifier.service.impl.MappedNonceStore;
+import com.assessment.spruceid.verifier.service.impl.OffHeapNonceStore;
+import com.assessment.spruceid.verifier.service.impl.RespNonceStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+@Configuration
+public class NonceStoreConfig {
+    private static final Logger log = LogManager.getLogger(NonceStoreConfig.class);
+
+    /**
+     * Storage of outstanding nonces for nonce.mode=stateful, selected by nonce.store:
+     * 1. heap: a concurrent hash map on the Java heap
+     * 2. offheap: fixed-size binary entries outside the heap, up to nonce.store.offheap.capacity
+     * 3. mapped: offheap, plus a memory-mapped log in nonce.store.mapped.dir so outstanding and
+     * consumed nonces survive a restart
+     * 4. remote: a Redis-compatible server at nonce.store.remote.host:port, shared by every node
+     * pointed at it
+     *
+     * @param store           the store type
+     * @param initialCapacity initial table size of the heap store
+     * @param capacity        maximum outstanding nonces of the offheap and mapped stores
+     * @param stripes         lock stripes of the offheap and mapped stores
+     * @param tickMillis      resolution of the expiry sweep
+     * @param dir             log directory of the mapped store
+     * @param segmentMb       log segment size in MiB
+     * @param fsync           always, interval or never
+     * @param fsyncMillis     force interval for fsync=interval
+     * @param compactSeconds  snapshot interval of the log, 0 to only drop expired segments
+     * @param remoteHost      host of the remote store
+     * @param remotePort      port of the remote store
+     * @param remoteDatabase  database index on the remote store
+     * @param remotePassword  AUTH password of the remote store, blank for none
+     * @param remotePrefix    prefix of the nonce keys on the remote store
+     * @param remoteTimeout   connect timeout and longest wait for a reply of the remote store
+     * @return the NonceStore
+     */
+    @Bean
+    @ConditionalOnProperty(name = "nonce.mode", havingValue = "stateful", matchIfMissing = true)
+    public NonceStore nonceStore(@Value("${nonce.store:heap}") String store,
+                                 @Value("${nonce.store.initial.capacity:65536}") int initialCapacity,
+                                 @Value("${nonce.store.offheap.capacity:1000000}") long capacity,
+                                 @Value("${nonce.store.offheap.stripes:64}") int stripes,
+                                 @Value("${nonce.expiry.tick.millis:100}") long tickMillis,
+                                 @Value("${nonce.store.mapped.dir:data/nonces}") String dir,
+                                 @Value("${nonce.store.mapped.segment.mb:64}") long segmentMb,
+                                 @Value("${nonce.store.mapped.fsync:interval}") String fsync,
+                                 @Value("${nonce.store.mapped.fsync.millis:100}") long fsyncMillis,
+                                 @Value("${nonce.store.mapped.compact.seconds:0}") long compactSeconds,
+                                 @Value("${nonce.store.remote.host:localhost}") String remoteHost,
+                                 @Value("${nonce.store.remote.port:6379}") int remotePort,
+                                 @Value("${nonce.store.remote.database:0}") int remoteDatabase,
+                                 @Value("${nonce.store.remote.password:}") String remotePassword,
+                                 @Value("${nonce.store.remote.prefix:nonce:}") String remotePrefix,
+                                 @Value("${nonce.store.remote.timeout.millis:500}") long remoteTimeout) {
+        log.info("Nonce store: {}", store);
+        return switch (store) {
+            case "heap" -> new HeapNonceStore(initialCapacity, tickMillis);
+            case "offheap" -> new OffHeapNonceStore(capacity, stripes, tickMillis);
+            case "mapped" -> new MappedNonceStore(Path.of(dir), capacity, stripes, tickMillis, segmentMb << 20,
+                    MappedNonceStore.Fsync.valueOf(fsync.toUpperCase(Locale.ROOT)), fsyncMillis, compactSeconds);
+            case "remote" -> new RespNonceStore(remoteHost, remotePort, remoteDatabase, remotePassword,
+                    remotePrefix, remoteTimeout);
+            default -> throw new IllegalArgumentException("Unknown nonce.store: " + store);
+        };
+    }
+}
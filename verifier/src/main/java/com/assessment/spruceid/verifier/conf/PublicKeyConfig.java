@@ -1,18 +1,33 @@
 package com.assessment.spruceid.verifier.conf;
 
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.crypto.RemoteKeySource;
+import com.assessment.spruceid.verifier.crypto.SignatureVerifierPool;
+import com.assessment.spruceid.verifier.utils.JwksUtil;
 import com.assessment.spruceid.verifier.utils.PemUtil;
+import io.netty.channel.ChannelOption;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.*;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URLConnection;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 public class PublicKeyConfig {
@@ -24,27 +39,91 @@ public class PublicKeyConfig {
     }
 
     /**
-     * Load the verifier's EC public key from a PEM file.
-     * The location can be specified via:
+     * Registry of trusted holder keys by kid, used on the verify path.
+     * <p>
+     * The verifier's EC public key (PEM) is registered under verifier.keys.default.kid.
+     * Its location can be specified via:
      * 1. Environment variable VERIFIER_PUBKEY_PATH
      * 2. Spring property verifier.pubkey.path
      * 3. Defaults to classpath:pub.pem
      * <p>
-     * Supports classpath:, file:, http:, and https: URLs.
-     * For http(s), connection and read timeouts can be set via
-     * verifier.pubkey.connect.timeout and verifier.pubkey.read.timeout (in ms).
+     * The registry also adds:
+     * 1. every *.pem in verifier.keys.dir (kid = file name without extension)
+     * 2. every P-256 key in the JWKS document at verifier.keys.jwks (same location syntax as
+     * the public key)
+     * <p>
+     * Local sources (classpath:, file:, plain paths) are read at startup, so a missing key
+     * fails fast; with verifier.keys.reload.seconds &gt; 0 the directory and JWKS are re-read
+     * periodically. http(s) sources never block startup: they are fetched in the background,
+     * cached for verifier.keys.remote.ttl.seconds, then revalidated with ETag/If-Modified-Since.
+     * Connection and read timeouts are set via verifier.pubkey.connect.timeout and
+     * verifier.pubkey.read.timeout (in ms). A failed reload or refresh keeps the current keys.
      *
-     * @param location       the location of the PEM file
+     * @param verifiers      pooled verifiers, released for keys that disappear
+     * @param location       the location of the verifier PEM public key
+     * @param defaultKid     kid of the default key
+     * @param dir            directory of PEM keys, may be blank
+     * @param jwks           JWKS location, may be blank
+     * @param reloadSeconds  reload period for local sources, 0 disables reloading
+     * @param remoteTtl      cache TTL of http(s) sources in seconds
      * @param connectTimeout connection timeout
      * @param readTimeout    read timeout
+     * @return the KeyRegistry
+     */
+    @Bean(destroyMethod = "close")
+    public KeyRegistry keyRegistry(SignatureVerifierPool verifiers,
+                                   @Value("${VERIFIER_PUBKEY_PATH:${verifier.pubkey.path:classpath:pub.pem}}") String location,
+                                   @Value("${verifier.keys.default.kid:default}") String defaultKid,
+                                   @Value("${verifier.keys.dir:}") String dir,
+                                   @Value("${verifier.keys.jwks:}") String jwks,
+                                   @Value("${verifier.keys.reload.seconds:0}") long reloadSeconds,
+                                   @Value("${verifier.keys.remote.ttl.seconds:300}") long remoteTtl,
+                                   @Value("${verifier.pubkey.connect.timeout:5000}") int connectTimeout,
+                                   @Value("${verifier.pubkey.read.timeout:5000}") int readTimeout) {
+        long start = System.nanoTime();
+        KeyRegistry registry = new KeyRegistry(defaultKid);
+        registry.onRemoved(verifiers::evict);
+        WebClient client = null;
+
+        if (isRemote(location)) {
+            client = webClient(connectTimeout, readTimeout);
+            RemoteKeySource.Parser pem = body -> Map.of(defaultKid, PemUtil.readEcPublicKeyFromPem(new ByteArrayInputStream(body)));
+            registry.attach(new RemoteKeySource(client, URI.create(location), pem, Duration.ofSeconds(remoteTtl),
+                    keys -> registry.update("pubkey", keys)).start());
+        } else {
+            registry.update("pubkey", Map.of(defaultKid, verifierPublicKey(location)));
+        }
+
+        if (dir != null && !dir.isBlank()) {
+            registry.update("dir", loadDirectory(dir));
+            registry.reloadEvery("dir", () -> loadDirectory(dir), reloadSeconds);
+        }
+
+        if (jwks != null && !jwks.isBlank()) {
+            if (isRemote(jwks)) {
+                if (client == null) client = webClient(connectTimeout, readTimeout);
+                RemoteKeySource.Parser parser = body -> JwksUtil.readEcPublicKeys(new ByteArrayInputStream(body));
+                registry.attach(new RemoteKeySource(client, URI.create(jwks), parser, Duration.ofSeconds(remoteTtl),
+                        keys -> registry.update("jwks", keys)).start());
+            } else {
+                registry.update("jwks", loadJwks(jwks));
+                registry.reloadEvery("jwks", () -> loadJwks(jwks), reloadSeconds);
+            }
+        }
+
+        log.info("Key registry loaded {} local keys in {} ms", registry.size(), (System.nanoTime() - start) / 1_000_000);
+        return registry;
+    }
+
+    /**
+     * Load the verifier's EC public key from a local PEM file.
+     *
+     * @param location the location of the PEM file
      * @return the loaded ECPublicKey
      */
-    @Bean
-    public ECPublicKey verifierPublicKey(@Value("${VERIFIER_PUBKEY_PATH:${verifier.pubkey.path:classpath:pub.pem}}") String location,
-                                         @Value("${verifier.pubkey.connect.timeout:5000}") int connectTimeout,
-                                         @Value("${verifier.pubkey.read.timeout:5000}") int readTimeout) {
+    private ECPublicKey verifierPublicKey(String location) {
         Resource r = resolve(location);
-        try (InputStream in = open(r, location, connectTimeout, readTimeout)) {
+        try (InputStream in = open(r)) {
             return PemUtil.readEcPublicKeyFromPem(in);
         } catch (Exception e) {
             log.error("Failed to load EC public key from {}", location, e);
@@ -52,6 +131,43 @@ public class PublicKeyConfig {
         }
     }
 
+    /**
+     * Load every *.pem file of a directory, keyed by file name without extension.
+     *
+     * @param dir the directory
+     * @return kid to ECPublicKey
+     */
+    private Map<String, ECPublicKey> loadDirectory(String dir) {
+        Path path = Path.of(dir.startsWith("~/") ? System.getProperty("user.home") + dir.substring(1) : dir);
+        Map<String, ECPublicKey> keys = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*.pem")) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                try (InputStream in = Files.newInputStream(f)) {
+                    keys.put(name.substring(0, name.length() - ".pem".length()), PemUtil.readEcPublicKeyFromPem(in));
+                }
+            }
+            return keys;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot load EC public keys from directory: " + dir, e);
+        }
+    }
+
+    /**
+     * Load the EC keys of a local JWKS document.
+     *
+     * @param location the JWKS location
+     * @return kid to ECPublicKey
+     */
+    private Map<String, ECPublicKey> loadJwks(String location) {
+        Resource r = resolve(location);
+        try (InputStream in = open(r)) {
+            return JwksUtil.readEcPublicKeys(in);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot load JWKS from: " + location, e);
+        }
+    }
+
     /**
      * Resolve a location to a resource.
      *
@@ -73,27 +189,42 @@ public class PublicKeyConfig {
     }
 
     /**
-     * Open an input stream for the given resource.
+     * Open an input stream for the given local resource.
      *
-     * @param res            the resource to open
-     * @param location       the location of the resource
-     * @param connectTimeout connection timeout
-     * @param readTimeout    read timeout
+     * @param res the resource to open
      * @return the opened input stream
      * @throws IOException if opening the stream fails
      */
-    private InputStream open(Resource res, String location, int connectTimeout, int readTimeout) throws IOException {
-        if (res instanceof UrlResource && (location.startsWith("http://") || location.startsWith("https://"))) {
-            URLConnection c = ((UrlResource) res).getURL().openConnection();
-            c.setConnectTimeout(connectTimeout);
-            c.setReadTimeout(readTimeout);
-            return c.getInputStream();
-        }
+    private InputStream open(Resource res) throws IOException {
         if (!res.exists()) throw new FileNotFoundException("Resource not found: " + safeDescribe(res));
 
         return res.getInputStream();
     }
 
+    /**
+     * Whether a location is fetched over the network.
+     *
+     * @param location the location
+     * @return true for http: and https: URLs
+     */
+    private static boolean isRemote(String location) {
+        return location != null && (location.startsWith("http://") || location.startsWith("https://"));
+    }
+
+    /**
+     * Non-blocking HTTP client for remote key sources.
+     *
+     * @param connectTimeout connection timeout in ms
+     * @param readTimeout    response timeout in ms
+     * @return the WebClient
+     */
+    private static WebClient webClient(int connectTimeout, int readTimeout) {
+        HttpClient http = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .responseTimeout(Duration.ofMillis(readTimeout));
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(http)).build();
+    }
+
     /**
      * Safe describes a resource.
      *
@@ -0,0 +1,129 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.utils.RateLimiter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Per-client admission control for /api/nonce/** and /api/verify/**.
+ * <p>
+ * Runs ahead of the security chain and of body decoding: a client over its budget gets an
+ * empty 429 with Retry-After, and the request never reaches the nonce store, the codecs
+ * or the crypto. Issuing and verifying have separate buckets. A bulk issue or stream
+ * ({@code ?count=N}) costs N tokens, anything else costs one; a count above the burst could
+ * never be paid for and is refused outright, with no Retry-After.
+ * <p>
+ * Clients are told apart by remote address ({@code verifier.ratelimit.key=address}), or by
+ * remote address and the {@code kid} query parameter ({@code kid}), so that holders behind
+ * one address get a budget each. The kid is not authenticated: only a kid registered in the
+ * {@link KeyRegistry} gets its own bucket, anything else is charged to the address, and the
+ * bucket stays tied to the address, so naming another holder's kid does not spend theirs.
+ * Verify bodies are not read, so verify requests are always keyed by address. Behind a proxy
+ * set {@code server.forward-headers-strategy} so the remote address is the client's.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "verifier.ratelimit.enabled", havingValue = "true")
+public class RateLimitFilter implements WebFilter {
+    private static final Logger log = LogManager.getLogger(RateLimitFilter.class);
+    private static final String NONCE_PATH = "/api/nonce/";
+    private static final String VERIFY_PATH = "/api/verify";
+
+    private final RateLimiter nonces;
+    private final RateLimiter verifies;
+    private final boolean byKid;
+    private final KeyRegistry keys;
+
+    @Autowired
+    public RateLimitFilter(KeyRegistry keys,
+                           @Value("${verifier.ratelimit.key:address}") String key,
+                           @Value("${verifier.ratelimit.nonce.rate:50}") double nonceRate,
+                           @Value("${verifier.ratelimit.nonce.burst:100}") int nonceBurst,
+                           @Value("${verifier.ratelimit.verify.rate:50}") double verifyRate,
+                           @Value("${verifier.ratelimit.verify.burst:100}") int verifyBurst,
+                           @Value("${verifier.ratelimit.table.size:65536}") int tableSize) {
+        this(key, keys, new RateLimiter(nonceRate, nonceBurst, tableSize), new RateLimiter(verifyRate, verifyBurst, tableSize));
+        log.info("Rate limit: key={}, nonce {}/s burst {}, verify {}/s burst {}, {} clients",
+                key, nonceRate, nonceBurst, verifyRate, verifyBurst, nonces.capacity());
+    }
+
+    RateLimitFilter(String key, KeyRegistry keys, RateLimiter nonces, RateLimiter verifies) {
+        if (!key.equals("address") && !key.equals("kid"))
+            throw new IllegalArgumentException("Unknown verifier.ratelimit.key: " + key);
+        this.byKid = key.equals("kid");
+        this.keys = keys;
+        this.nonces = nonces;
+        this.verifies = verifies;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        long wait;
+        if (path.startsWith(NONCE_PATH)) {
+            wait = nonces.acquire(byKid ? holder(request) : address(request), count(request.getQueryParams().getFirst("count")));
+        } else if (path.startsWith(VERIFY_PATH)) {
+            wait = verifies.acquire(address(request), 1);
+        } else {
+            return chain.filter(exchange);
+        }
+        if (wait == 0) return chain.filter(exchange);
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        if (wait != Long.MAX_VALUE)
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString((wait + 999_999_999) / 1_000_000_000));
+        return response.setComplete();
+    }
+
+    /**
+     * @return requests refused by the issue and verify limiters since startup
+     */
+    public long rejected() {
+        return nonces.rejected() + verifies.rejected();
+    }
+
+    // the address, plus the kid when it is a registered one
+    private String holder(ServerHttpRequest request) {
+        String address = address(request);
+        String kid = request.getQueryParams().getFirst("kid");
+        if (kid == null || kid.isEmpty() || keys.get(kid) == null) return address;
+        return address + " kid:" + kid;
+    }
+
+    private static String address(ServerHttpRequest request) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote == null) return "unknown";
+        return remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+    }
+
+    // tokens for a bulk issue; a missing or malformed count costs one and is answered by the controller
+    private static int count(String s) {
+        if (s == null || s.isEmpty() || s.length() > 9) return 1;
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return 1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+}
@@ -1,14 +1,32 @@
 package com.assessment.spruceid.verifier.conf;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.rsocket.EnableRSocketSecurity;
+import org.springframework.security.config.annotation.rsocket.RSocketSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.rsocket.core.PayloadSocketAcceptorInterceptor;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Configuration
 @EnableWebFluxSecurity
+@EnableRSocketSecurity
 public class SecurityConfig {
+    /**
+     * User name the cluster nodes present to each other, with cluster.secret as password.
+     */
+    static final String CLUSTER_PEER = "cluster-peer";
+
     @Bean
     public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
         return http
@@ -18,4 +36,33 @@ public class SecurityConfig {
                 .authorizeExchange(ex -> ex.anyExchange().permitAll())
                 .build();
     }
+
+    /**
+     * RSocket access. The public routes are open; the internal cluster.* routes only serve
+     * connections whose setup carries simple authentication as {@value #CLUSTER_PEER} with
+     * cluster.secret. A connection presenting wrong credentials is refused at setup; with a
+     * blank secret nobody reaches the cluster routes.
+     *
+     * @param rsocket       the RSocket security builder
+     * @param clusterSecret cluster.secret, shared by every node of the cluster
+     * @return the PayloadSocketAcceptorInterceptor
+     */
+    @Bean
+    public PayloadSocketAcceptorInterceptor rsocketInterceptor(RSocketSecurity rsocket,
+                                                               @Value("${VERIFIER_CLUSTER_SECRET:${cluster.secret:}}") String clusterSecret) {
+        byte[] secret = clusterSecret.getBytes(StandardCharsets.UTF_8);
+        ReactiveAuthenticationManager peers = auth -> {
+            byte[] presented = String.valueOf(auth.getCredentials()).getBytes(StandardCharsets.UTF_8);
+            if (secret.length == 0 || !CLUSTER_PEER.equals(auth.getName()) || !MessageDigest.isEqual(secret, presented))
+                return Mono.error(new BadCredentialsException("Invalid cluster credentials"));
+            return Mono.just(UsernamePasswordAuthenticationToken.authenticated(CLUSTER_PEER, null,
+                    AuthorityUtils.createAuthorityList("ROLE_CLUSTER")));
+        };
+        return rsocket
+                .simpleAuthentication(s -> s.authenticationManager(peers))
+                .authorizePayload(p -> p
+                        .route("cluster.**").hasRole("CLUSTER")
+                        .anyExchange().permitAll())
+                .build();
+    }
 }
@@ -0,0 +1,97 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Structural checks of a DER-encoded ECDSA signature, cheap enough to run before any curve
+ * arithmetic: {@code SEQUENCE { INTEGER r, INTEGER s }} in minimal DER within the size bounds of
+ * the curve, and {@code 0 < r, s < n} for the curve order n.
+ * <p>
+ * The JDK provider only accepts minimal DER and fails the same signatures, so a signature
+ * that fails here can never verify and may be rejected without touching the nonce or the key.
+ */
+public final class EcdsaSignatureCheck {
+    /**
+     * What is wrong with a signature.
+     */
+    public enum Defect {
+        /** shorter or longer than any signature for the curve */
+        LENGTH,
+        /** not a minimal DER SEQUENCE of two positive INTEGERs */
+        STRUCTURE,
+        /** r or s is zero or not below the curve order */
+        RANGE
+    }
+
+    // the order of the last curve seen, as unsigned big-endian bytes without a sign byte
+    private static volatile Order last;
+
+    private EcdsaSignatureCheck() {
+    }
+
+    /**
+     * @param der   the presented signature
+     * @param order order n of the key's curve
+     * @return the defect, or null if the signature is well-formed
+     */
+    public static Defect check(byte[] der, BigInteger order) {
+        byte[] n = orderBytes(order);
+        // each INTEGER: tag, length, up to one sign byte more than the order
+        int maxContent = 2 * (2 + n.length + 1);
+        int maxTotal = maxContent + (maxContent < 0x80 ? 2 : 3);
+        if (der == null || der.length < 8 || der.length > maxTotal) return Defect.LENGTH;
+
+        if (der[0] != 0x30) return Defect.STRUCTURE;
+        int len = der[1] & 0xff, at = 2;
+        if (len == 0x81) {
+            len = der[2] & 0xff;
+            // the long form is only minimal from 128 on
+            if (len < 0x80) return Defect.STRUCTURE;
+            at = 3;
+        } else if (len > 0x7f) return Defect.STRUCTURE;
+        if (at + len != der.length) return Defect.STRUCTURE;
+
+        int afterR = integer(der, at, n);
+        if (afterR < 0) return afterR == -1 ? Defect.STRUCTURE : Defect.RANGE;
+        int afterS = integer(der, afterR, n);
+        if (afterS < 0) return afterS == -1 ? Defect.STRUCTURE : Defect.RANGE;
+        return afterS == der.length ? null : Defect.STRUCTURE;
+    }
+
+    // Check the INTEGER at offset at. Returns the offset after it, -1 for a structure defect,
+    // -2 for a value out of range.
+    private static int integer(byte[] der, int at, byte[] n) {
+        if (at + 2 > der.length || der[at] != 0x02) return -1;
+        int len = der[at + 1] & 0xff;
+        int start = at + 2, end = start + len;
+        if (len == 0 || len > n.length + 1 || end > der.length) return -1;
+        // negative, or a leading zero byte that is not needed for the sign
+        if (der[start] < 0) return -1;
+        if (len > 1 && der[start] == 0 && der[start + 1] >= 0) return -1;
+
+        int from = der[start] == 0 ? start + 1 : start;
+        int magnitude = end - from;
+        if (magnitude == 0) return -2;
+        if (magnitude < n.length) return end;
+        if (magnitude > n.length) return -2;
+        for (int i = 0; i < magnitude; i++) {
+            int a = der[from + i] & 0xff, b = n[i] & 0xff;
+            if (a != b) return a < b ? end : -2;
+        }
+        return -2;
+    }
+
+    private static byte[] orderBytes(BigInteger order) {
+        Order o = last;
+        if (o == null || !o.n.equals(order)) {
+            byte[] b = order.toByteArray();
+            if (b[0] == 0 && b.length > 1) b = Arrays.copyOfRange(b, 1, b.length);
+            last = o = new Order(order, b);
+        }
+        return o.bytes;
+    }
+
+    private record Order(BigInteger n, byte[] bytes) {
+    }
+}
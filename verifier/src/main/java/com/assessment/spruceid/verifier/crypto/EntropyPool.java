@@ -0,0 +1,157 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-generated random bytes for nonces, so the issue path does not wait on a shared
+ * {@link SecureRandom}.
+ * <p>
+ * The pool is split into stripes (by default one per core, rounded up to a power of two),
+ * picked by the calling thread. Each stripe has its own {@code SecureRandom} and hands out
+ * consecutive slices of a pre-filled block: claiming one is a single atomic add and a copy.
+ * When a block runs out the stripe switches to its spare block and a virtual thread fills
+ * a new spare in bulk. Only if the spare is not ready yet does the claiming thread fill a
+ * block itself. Each byte is handed out once.
+ * <p>
+ * The bytes stay in memory until handed out, so the pool is meant for values that become
+ * public anyway, like nonces, not for keys.
+ */
+@Component
+public final class EntropyPool {
+    private static final Logger log = LogManager.getLogger(EntropyPool.class);
+    private final Stripe[] stripes;
+    private final int blockBytes;
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+
+    /**
+     * @param stripes    number of stripes, 0 for one per core; rounded up to a power of two
+     * @param blockBytes bytes generated per refill
+     * @param algorithm  SecureRandom algorithm of each stripe
+     */
+    @Autowired
+    public EntropyPool(@Value("${nonce.entropy.stripes:0}") int stripes,
+                       @Value("${nonce.entropy.block.bytes:65536}") int blockBytes,
+                       @Value("${nonce.entropy.algorithm:DRBG}") String algorithm) {
+        int wanted = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        int n = Integer.highestOneBit(Math.max(1, wanted) * 2 - 1);
+        if (blockBytes < 1024) throw new IllegalArgumentException("nonce.entropy.block.bytes must be at least 1024");
+        this.blockBytes = blockBytes;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) this.stripes[i] = new Stripe(random(algorithm));
+        log.info("Entropy pool: stripes={}, block={} bytes, algorithm={}", n, blockBytes, algorithm);
+    }
+
+    /**
+     * Fill part of an array with random bytes from the calling thread's stripe.
+     *
+     * @param dst destination
+     * @param off offset in dst
+     * @param len number of bytes, at most a quarter of the block size
+     */
+    public void nextBytes(byte[] dst, int off, int len) {
+        if (len > blockBytes / 4) throw new IllegalArgumentException("Too many bytes for one claim: " + len);
+        Stripe s = stripes[index(Thread.currentThread().threadId(), stripes.length)];
+        while (true) {
+            Block b = s.current.get();
+            int at = b.next.getAndAdd(len);
+            if (at + len <= b.bytes.length) {
+                System.arraycopy(b.bytes, at, dst, off, len);
+                return;
+            }
+            s.advance(b);
+        }
+    }
+
+    /**
+     * @return claims that found the spare block not ready and filled a block themselves
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return blocks filled in the background
+     */
+    public long refills() {
+        return refills.sum();
+    }
+
+    private static SecureRandom random(String algorithm) {
+        try {
+            return SecureRandom.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown nonce.entropy.algorithm: " + algorithm, e);
+        }
+    }
+
+    // Fibonacci hash of the thread id onto [0, n), n a power of two
+    private static int index(long threadId, int n) {
+        return (int) ((threadId * 0x9E3779B97F4A7C15L) >>> 32) & (n - 1);
+    }
+
+    private static final class Block {
+        private final byte[] bytes;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Block(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private final class Stripe {
+        private final SecureRandom random;
+        private final AtomicReference<Block> current;
+        private final AtomicReference<Block> spare;
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        Stripe(SecureRandom random) {
+            this.random = random;
+            this.current = new AtomicReference<>(fill());
+            this.spare = new AtomicReference<>(fill());
+        }
+
+        // Replace an exhausted block with the spare, or a freshly filled one if the spare
+        // is not ready, and have a new spare filled.
+        void advance(Block exhausted) {
+            if (current.get() != exhausted) return;
+            Block next = spare.getAndSet(null);
+            boolean wasSpare = next != null;
+            if (!wasSpare) {
+                misses.increment();
+                next = fill();
+            }
+            if (!current.compareAndSet(exhausted, next) && wasSpare) {
+                // another thread advanced first: keep the spare for the next switch
+                spare.compareAndSet(null, next);
+            }
+            if (spare.get() == null && refilling.compareAndSet(false, true)) {
+                Thread.startVirtualThread(() -> {
+                    try {
+                        spare.compareAndSet(null, fill());
+                        refills.increment();
+                    } finally {
+                        refilling.set(false);
+                    }
+                });
+            }
+        }
+
+        private Block fill() {
+            byte[] b = new byte[blockBytes];
+            random.nextBytes(b);
+            return new Block(b);
+        }
+    }
+}
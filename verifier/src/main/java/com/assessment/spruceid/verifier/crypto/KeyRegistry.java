@@ -0,0 +1,188 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Trusted holder keys indexed by key id ({@code kid}).
+ * <p>
+ * The verify path reads an immutable snapshot through a volatile field, so lookups are
+ * lock-free O(1). Updates build a new snapshot and swap it in (copy-on-write); requests in
+ * flight keep using the snapshot they started with.
+ * <p>
+ * Keys may come from several named sources (local files, remote documents) that are updated
+ * independently; the snapshot is their union, later sources winning on duplicate kids.
+ */
+public final class KeyRegistry implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(KeyRegistry.class);
+    private final String defaultKid;
+    private volatile Map<String, ECPublicKey> keys = Map.of();
+    private final Map<String, Map<String, ECPublicKey>> sources = new LinkedHashMap<>();
+    private final List<AutoCloseable> attached = new ArrayList<>();
+    private Consumer<ECPublicKey> onRemoved = k -> { };
+    private ScheduledExecutorService reloader;
+
+    public KeyRegistry(String defaultKid) {
+        this.defaultKid = defaultKid;
+    }
+
+    /**
+     * Registry holding a single key under the given kid, which is also the default.
+     *
+     * @param kid the key id
+     * @param key the public key
+     * @return the registry
+     */
+    public static KeyRegistry of(String kid, ECPublicKey key) {
+        KeyRegistry r = new KeyRegistry(kid);
+        r.replace(Map.of(kid, key));
+        return r;
+    }
+
+    /**
+     * Resolve a requested kid, falling back to the default kid when none was given.
+     *
+     * @param kid the requested kid, may be null
+     * @return the effective kid
+     * @throws IllegalArgumentException if no key is registered under the kid
+     */
+    public String requireKid(String kid) {
+        String k = kid == null || kid.isEmpty() ? defaultKid : kid;
+        if (!keys.containsKey(k)) throw new IllegalArgumentException("Unknown kid: " + k);
+        return k;
+    }
+
+    /**
+     * @param kid the key id, null for the default key
+     * @return the key, or null if the kid is unknown
+     */
+    public ECPublicKey get(String kid) {
+        return keys.get(kid == null || kid.isEmpty() ? defaultKid : kid);
+    }
+
+    /**
+     * @return number of registered keys
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return the kid used when a request does not name one
+     */
+    public String defaultKid() {
+        return defaultKid;
+    }
+
+    /**
+     * Register a callback for keys dropped by an update, e.g. to release cached verifiers.
+     *
+     * @param onRemoved the callback
+     */
+    public void onRemoved(Consumer<ECPublicKey> onRemoved) {
+        this.onRemoved = onRemoved;
+    }
+
+    /**
+     * Add or replace one key.
+     *
+     * @param kid the key id
+     * @param key the public key
+     */
+    public synchronized void put(String kid, ECPublicKey key) {
+        Map<String, ECPublicKey> manual = new HashMap<>(sources.getOrDefault("", Map.of()));
+        manual.put(kid, key);
+        update("", manual);
+    }
+
+    /**
+     * Swap in a complete new key set, dropping every source.
+     *
+     * @param next the new kid to key mapping
+     */
+    public synchronized void replace(Map<String, ECPublicKey> next) {
+        sources.clear();
+        update("", next);
+    }
+
+    /**
+     * Replace the keys contributed by one source and swap in the new union.
+     *
+     * @param source name of the source
+     * @param next   the source's full kid to key mapping
+     */
+    public synchronized void update(String source, Map<String, ECPublicKey> next) {
+        sources.put(source, Map.copyOf(next));
+        Map<String, ECPublicKey> merged = new HashMap<>();
+        sources.values().forEach(merged::putAll);
+
+        Map<String, ECPublicKey> previous = keys;
+        keys = Map.copyOf(merged);
+        previous.forEach((kid, key) -> {
+            if (!key.equals(keys.get(kid))) onRemoved.accept(key);
+        });
+    }
+
+    /**
+     * Close a resource (e.g. a refreshing key source) together with the registry.
+     *
+     * @param resource the resource
+     */
+    public synchronized void attach(AutoCloseable resource) {
+        attached.add(resource);
+    }
+
+    /**
+     * Reload one source periodically. A failing reload keeps the current keys.
+     *
+     * @param name          name of the source
+     * @param source        produces the source's full kid to key mapping
+     * @param periodSeconds reload period
+     */
+    public synchronized void reloadEvery(String name, Supplier<Map<String, ECPublicKey>> source, long periodSeconds) {
+        if (periodSeconds <= 0) return;
+        if (reloader == null) {
+            reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "key-registry-reload");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                Map<String, ECPublicKey> next = source.get();
+                synchronized (this) {
+                    if (next.equals(sources.get(name))) return;
+                    update(name, next);
+                }
+                log.info("Reloaded {} keys from {}, registry holds {}", next.size(), name, keys.size());
+            } catch (Exception e) {
+                log.warn("Key registry reload failed, keeping {} current keys: {}", keys.size(), e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reloader != null) reloader.shutdownNow();
+        for (AutoCloseable resource : attached) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Failed to close {}", resource, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.URI;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Keys fetched from an http(s) location without blocking, cached and revalidated in the
+ * background.
+ * <p>
+ * {@link #start()} schedules the first fetch right away and a conditional refresh every
+ * {@code ttl} ({@code If-None-Match} / {@code If-Modified-Since}, so an unchanged document
+ * costs a 304). Each successfully parsed document is handed to the update callback; a failed
+ * fetch or an unparsable document is logged and the last good keys stay in use.
+ */
+public final class RemoteKeySource implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(RemoteKeySource.class);
+
+    /**
+     * Parses a fetched document into kid to key.
+     */
+    @FunctionalInterface
+    public interface Parser {
+        Map<String, ECPublicKey> parse(byte[] body) throws Exception;
+    }
+
+    private final WebClient client;
+    private final URI uri;
+    private final Parser parser;
+    private final Duration ttl;
+    private final Consumer<Map<String, ECPublicKey>> onUpdate;
+    private volatile Map<String, ECPublicKey> current = Map.of();
+    private volatile String etag;
+    private volatile String lastModified;
+    private volatile Instant validatedAt;
+    private Disposable refresher;
+
+    /**
+     * @param client   the WebClient (timeouts are configured on its connector)
+     * @param uri      the http(s) location
+     * @param parser   turns the body into keys
+     * @param ttl      how long a fetched document is trusted before revalidation
+     * @param onUpdate receives every newly fetched key set
+     */
+    public RemoteKeySource(WebClient client, URI uri, Parser parser, Duration ttl,
+                           Consumer<Map<String, ECPublicKey>> onUpdate) {
+        this.client = client;
+        this.uri = uri;
+        this.parser = parser;
+        this.ttl = ttl;
+        this.onUpdate = onUpdate;
+    }
+
+    /**
+     * Fetch now in the background and revalidate every TTL. Returns immediately.
+     *
+     * @return this source
+     */
+    public synchronized RemoteKeySource start() {
+        if (refresher == null) {
+            refresher = Flux.interval(Duration.ZERO, ttl)
+                    .onBackpressureDrop()
+                    .concatMap(i -> refresh().onErrorResume(e -> {
+                        log.warn("Refreshing keys from {} failed, keeping {} cached keys: {}", uri, current.size(), e.toString());
+                        return Mono.empty();
+                    }))
+                    .subscribe();
+        }
+        return this;
+    }
+
+    /**
+     * Revalidate the cached document once.
+     *
+     * @return Mono emitting true if new keys were loaded, false if the document was unchanged
+     */
+    public Mono<Boolean> refresh() {
+        return client.get().uri(uri)
+                .headers(h -> {
+                    if (etag != null) h.setIfNoneMatch(etag);
+                    if (lastModified != null) h.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+                })
+                .exchangeToMono(resp -> {
+                    if (resp.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                        validatedAt = Instant.now();
+                        return resp.releaseBody().thenReturn(false);
+                    }
+                    if (!resp.statusCode().is2xxSuccessful())
+                        return resp.releaseBody().then(Mono.error(
+                                new IllegalStateException("GET " + uri + " returned " + resp.statusCode().value())));
+
+                    HttpHeaders headers = resp.headers().asHttpHeaders();
+                    String newEtag = headers.getETag();
+                    String newLastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                    return resp.bodyToMono(byte[].class)
+                            .publishOn(Schedulers.boundedElastic())
+                            .map(body -> {
+                                Map<String, ECPublicKey> keys = parse(body);
+                                current = keys;
+                                etag = newEtag;
+                                lastModified = newLastModified;
+                                validatedAt = Instant.now();
+                                onUpdate.accept(keys);
+                                log.info("Loaded {} keys from {}", keys.size(), uri);
+                                return true;
+                            });
+                });
+    }
+
+    /**
+     * @return the last successfully fetched keys, empty until the first fetch completes
+     */
+    public Map<String, ECPublicKey> current() {
+        return current;
+    }
+
+    /**
+     * @return when the cached document was last fetched or confirmed unchanged, null if never
+     */
+    public Instant validatedAt() {
+        return validatedAt;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refresher != null) refresher.dispose();
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteKeySource[" + uri + "]";
+    }
+
+    private Map<String, ECPublicKey> parse(byte[] body) {
+        try {
+            return parser.parse(body);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot parse keys from " + uri, e);
+        }
+    }
+}
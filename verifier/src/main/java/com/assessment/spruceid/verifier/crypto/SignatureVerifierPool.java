@@ -0,0 +1,68 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of ready-to-use {@code SHA256withECDSA} verifiers, bound to their trusted public key.
+ * <p>
+ * {@link Signature#getInstance} plus {@link Signature#initVerify} costs a provider lookup,
+ * an allocation and key validation on every call. A successful {@link Signature#verify} resets
+ * the instance to its post-{@code initVerify} state, so an instance can go back to the pool
+ * for the same key without re-initialization. Instances that threw are dropped instead, as
+ * their internal state is not guaranteed.
+ * <p>
+ * Borrowing is lock-free and works the same for platform and virtual threads; the number of
+ * pooled instances per key settles at the peak verification concurrency.
+ */
+@Component
+public final class SignatureVerifierPool {
+    public static final String ALGORITHM = "SHA256withECDSA";
+    private final ConcurrentHashMap<ECPublicKey, ConcurrentLinkedQueue<Signature>> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Verify a DER-encoded ECDSA signature over a message.
+     *
+     * @param key    the trusted public key
+     * @param msg    the signed message
+     * @param sigDer the DER-encoded signature
+     * @return true if the signature is valid for the key
+     * @throws GeneralSecurityException if the signature cannot be processed
+     */
+    public boolean verify(ECPublicKey key, byte[] msg, byte[] sigDer) throws GeneralSecurityException {
+        ConcurrentLinkedQueue<Signature> pool = pools.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+        Signature s = pool.poll();
+        if (s == null) {
+            s = Signature.getInstance(ALGORITHM);
+            s.initVerify(key);
+        }
+        // if update/verify throw, the instance is not returned: its state is provider specific
+        s.update(msg);
+        boolean ok = s.verify(sigDer);
+        pool.offer(s);
+        return ok;
+    }
+
+    /**
+     * Drop pooled verifiers for a key that is no longer trusted.
+     *
+     * @param key the key to evict
+     */
+    public void evict(ECPublicKey key) {
+        pools.remove(key);
+    }
+
+    /**
+     * @param key a public key
+     * @return number of idle verifiers pooled for the key
+     */
+    public int idle(ECPublicKey key) {
+        ConcurrentLinkedQueue<Signature> pool = pools.get(key);
+        return pool == null ? 0 : pool.size();
+    }
+}
@@ -0,0 +1,17 @@
+package com.assessment.spruceid.verifier.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ConsumeRequest {
+    private String nonce; // nonce issued by the receiving node
+    private String kid; // key id as presented by the holder, default key if absent
+}
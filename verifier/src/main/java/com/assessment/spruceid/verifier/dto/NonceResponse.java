@@ -1,5 +1,6 @@
 package com.assessment.spruceid.verifier.dto;
 
+import com.assessment.spruceid.verifier.model.Nonce;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -15,4 +16,9 @@ public class NonceResponse {
     private String nonce; // challenge proves liveness and prevents replay
     private long issuedAt; // created time
     private long expiresAt; // expiration time
+    private String kid; // key the nonce is bound to
+
+    public static NonceResponse from(Nonce n) {
+        return new NonceResponse(n.getNonce(), n.getIssuedAt().toEpochMilli(), n.getExpiresAt().toEpochMilli(), n.getKid());
+    }
 }
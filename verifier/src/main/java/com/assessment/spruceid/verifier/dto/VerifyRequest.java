@@ -16,4 +16,5 @@ import lombok.NoArgsConstructor;
 public class VerifyRequest {
     private String nonce; // challenge proves liveness and prevents replay
     private String sigBase64Url; // ECDSA (DER) signature
+    private String kid; // key id of the holder, default key if absent
 }
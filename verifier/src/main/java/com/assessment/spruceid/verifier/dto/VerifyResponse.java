@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -14,4 +16,24 @@ import lombok.NoArgsConstructor;
 public class VerifyResponse {
     private boolean verified;   // true if verification is successful, false otherwise
     private String message;     // additional message or error details
+    private String nonce;       // echoed on streamed results, which complete out of order
+
+    public static final String NONCE_REJECTED = "The nonce is invalid or has already been consumed.";
+    public static final String SIGNATURE_REJECTED = "Signature verification failed.";
+    public static final String BUSY = "The verifier is busy, retry later.";
+
+    public static VerifyResponse verified() {
+        return VerifyResponse.builder().verified(true).build();
+    }
+
+    public static VerifyResponse rejected(String message) {
+        return VerifyResponse.builder().verified(false).message(message).build();
+    }
+
+    /**
+     * @return the responses whose body never varies, which encoders may serialize once
+     */
+    public static List<VerifyResponse> fixedOutcomes() {
+        return List.of(verified(), rejected(NONCE_REJECTED), rejected(SIGNATURE_REJECTED), rejected(BUSY));
+    }
 }
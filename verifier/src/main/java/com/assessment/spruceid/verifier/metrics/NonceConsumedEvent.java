@@ -0,0 +1,36 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: an outstanding nonce was consumed by a proof. Off unless a recording enables it
+ * (see verifier.jfc).
+ */
+@Name("com.assessment.spruceid.verifier.NonceConsumed")
+@Label("Nonce Consumed")
+@Category({"Verifier", "Nonce"})
+@Description("An outstanding nonce was consumed")
+@Enabled(false)
+@StackTrace(false)
+public final class NonceConsumedEvent extends Event {
+    @Label("Key Id")
+    String kid;
+
+    /**
+     * Record a consume, if a recording wants it.
+     *
+     * @param kid the key the nonce was presented with
+     */
+    public static void emit(String kid) {
+        NonceConsumedEvent event = new NonceConsumedEvent();
+        if (!event.shouldCommit()) return;
+        event.kid = kid;
+        event.commit();
+    }
+}
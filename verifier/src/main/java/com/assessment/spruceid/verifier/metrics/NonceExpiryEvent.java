@@ -0,0 +1,52 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Periodic JFR event: nonces that expired unconsumed since the previous event, and the
+ * outstanding count. The store expires nonces in bulk sweeps, so they are reported per
+ * period rather than one event per nonce; the hook only runs while a recording enables it.
+ */
+@Name("com.assessment.spruceid.verifier.NonceExpiry")
+@Label("Nonce Expiry")
+@Category({"Verifier", "Nonce"})
+@Description("Nonces expired unconsumed since the previous period")
+@Enabled(false)
+@Period("1 s")
+@StackTrace(false)
+public final class NonceExpiryEvent extends Event {
+    @Label("Expired")
+    @Description("Nonces removed by the expiry sweep since the previous event")
+    long expired;
+
+    @Label("Outstanding")
+    long outstanding;
+
+    @Label("Last Sweep")
+    @Timespan(Timespan.NANOSECONDS)
+    long lastSweep;
+
+    /**
+     * Record one period; called from the hook registered with
+     * {@link jdk.jfr.FlightRecorder#addPeriodicEvent}.
+     *
+     * @param expired     nonces expired since the previous call
+     * @param outstanding nonces outstanding now
+     * @param lastSweep   duration of the last sweep in nanoseconds
+     */
+    public static void emit(long expired, long outstanding, long lastSweep) {
+        NonceExpiryEvent event = new NonceExpiryEvent();
+        event.expired = expired;
+        event.outstanding = outstanding;
+        event.lastSweep = lastSweep;
+        event.commit();
+    }
+}
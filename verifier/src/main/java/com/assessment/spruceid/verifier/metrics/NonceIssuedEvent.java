@@ -0,0 +1,42 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: nonces issued for a key, one event per issue call. Off unless a recording
+ * enables it (see verifier.jfc).
+ */
+@Name("com.assessment.spruceid.verifier.NonceIssued")
+@Label("Nonce Issued")
+@Category({"Verifier", "Nonce"})
+@Description("Nonces issued and registered as outstanding")
+@Enabled(false)
+@StackTrace(false)
+public final class NonceIssuedEvent extends Event {
+    @Label("Key Id")
+    String kid;
+
+    @Label("Count")
+    @Description("Nonces registered by this call")
+    int count;
+
+    /**
+     * Record an issue, if a recording wants it.
+     *
+     * @param kid   the key the nonces are for
+     * @param count how many were registered
+     */
+    public static void emit(String kid, int count) {
+        NonceIssuedEvent event = new NonceIssuedEvent();
+        if (!event.shouldCommit()) return;
+        event.kid = kid;
+        event.count = count;
+        event.commit();
+    }
+}
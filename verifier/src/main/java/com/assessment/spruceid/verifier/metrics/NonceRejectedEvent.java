@@ -0,0 +1,43 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: a presented nonce was not outstanding for its key, found either by the lookup
+ * before the signature check or by the consume. Off unless a recording enables it (see
+ * verifier.jfc).
+ */
+@Name("com.assessment.spruceid.verifier.NonceRejected")
+@Label("Nonce Rejected")
+@Category({"Verifier", "Nonce"})
+@Description("A nonce was unknown, already used, expired or issued for another key")
+@Enabled(false)
+@StackTrace(false)
+public final class NonceRejectedEvent extends Event {
+    @Label("Key Id")
+    String kid;
+
+    @Label("Check")
+    @Description("lookup (before the signature check) or consume")
+    String check;
+
+    /**
+     * Record a rejection, if a recording wants it.
+     *
+     * @param kid   the key the nonce was presented with
+     * @param check lookup or consume
+     */
+    public static void emit(String kid, String check) {
+        NonceRejectedEvent event = new NonceRejectedEvent();
+        if (!event.shouldCommit()) return;
+        event.kid = kid;
+        event.check = check;
+        event.commit();
+    }
+}
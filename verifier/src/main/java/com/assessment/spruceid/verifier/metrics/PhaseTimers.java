@@ -0,0 +1,108 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of each phase of issuing a nonce and verifying a proof, as Micrometer timers named
+ * {@code verifier.phase} and tagged by {@code phase}.
+ * <p>
+ * Callers take a timestamp with {@link #start()} and close each phase with
+ * {@link #lap(Phase, long)}, which records it and returns the timestamp the next phase starts
+ * from, so consecutive phases cost one clock read each. Percentiles and histogram buckets are
+ * set through {@code management.metrics.distribution.*.verifier.phase}. With
+ * {@code verifier.metrics.phases=false} nothing is read or recorded.
+ */
+@Component
+public final class PhaseTimers {
+    private static final PhaseTimers NOOP = new PhaseTimers();
+
+    /**
+     * The phases, in the order a verify request goes through them; {@link #ISSUE} is the
+     * nonce issue path.
+     */
+    public enum Phase {
+        /** request body to VerifyRequest */
+        JSON_DECODE("json-decode"),
+        /** kid lookup, then base64 decode and DER pre-checks of the signature */
+        BASE64_DECODE("base64-decode"),
+        /** outstanding-nonce check, without consuming */
+        NONCE_LOOKUP("nonce-lookup"),
+        /** waiting for a verification stage thread */
+        QUEUE("queue"),
+        /** ECDSA verify */
+        SIGNATURE("signature"),
+        /** consuming the nonce, locally or on the issuing node */
+        CONSUME("consume"),
+        /** issuing a nonce */
+        ISSUE("issue");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private final Timer[] timers;
+
+    /**
+     * @param registry where the timers are registered
+     * @param enabled  false to record nothing
+     */
+    @Autowired
+    public PhaseTimers(MeterRegistry registry, @Value("${verifier.metrics.phases:true}") boolean enabled) {
+        if (!enabled) {
+            this.timers = null;
+            return;
+        }
+        this.timers = new Timer[Phase.values().length];
+        for (Phase p : Phase.values()) {
+            timers[p.ordinal()] = Timer.builder("verifier.phase")
+                    .description("Time spent in one phase of nonce issuance or proof verification")
+                    .tag("phase", p.tag())
+                    .register(registry);
+        }
+    }
+
+    private PhaseTimers() {
+        this.timers = null;
+    }
+
+    /**
+     * @return timers that record nothing
+     */
+    public static PhaseTimers noop() {
+        return NOOP;
+    }
+
+    /**
+     * @return the start of a phase, 0 when disabled
+     */
+    public long start() {
+        return timers == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Close a phase.
+     *
+     * @param phase the phase that ends now
+     * @param since its start, from {@link #start()} or the previous lap
+     * @return the start of the next phase
+     */
+    public long lap(Phase phase, long since) {
+        if (timers == null) return 0;
+        long now = System.nanoTime();
+        timers[phase.ordinal()].record(now - since, TimeUnit.NANOSECONDS);
+        return now;
+    }
+}
@@ -0,0 +1,49 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the ECDSA verify of a proof, with the outcome of the whole proof once
+ * its nonce has been consumed. On by default above a 10 ms threshold, so a continuous
+ * recording keeps only the slow ones; verifier.jfc records all of them.
+ */
+@Name("com.assessment.spruceid.verifier.SignatureVerification")
+@Label("Signature Verification")
+@Category({"Verifier", "Verify"})
+@Description("ECDSA verification of a proof")
+@Threshold("10 ms")
+@StackTrace(false)
+public final class SignatureVerificationEvent extends Event {
+    @Label("Key Id")
+    String kid;
+
+    @Label("Outcome")
+    @Description("verified, bad-signature, bad-nonce or error")
+    String outcome;
+
+    @Label("Remote Nonce")
+    @Description("The nonce was consumed on the node that issued it")
+    boolean remote;
+
+    /**
+     * Commit the event, if it is enabled and over the threshold. Ends it first unless
+     * {@link #end()} was called.
+     *
+     * @param kid     the key the proof was checked with
+     * @param outcome verified, or the outcome of the rejection
+     * @param remote  whether the nonce was consumed on another node
+     */
+    public void report(String kid, String outcome, boolean remote) {
+        if (!shouldCommit()) return;
+        this.kid = kid;
+        this.outcome = outcome;
+        this.remote = remote;
+        commit();
+    }
+}
@@ -15,5 +15,6 @@ public class Nonce {
     private String nonce;
     private Instant issuedAt;
     private Instant expiresAt;
+    private String kid; // key the nonce was issued for
     volatile boolean used;
 }
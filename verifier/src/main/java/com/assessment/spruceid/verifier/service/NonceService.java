@@ -2,8 +2,52 @@ package com.assessment.spruceid.verifier.service;
 
 import com.assessment.spruceid.verifier.model.Nonce;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface NonceService {
-    Nonce issue();
+    default Nonce issue() {
+        return issue(null);
+    }
+
+    Nonce issue(String kid);
+
+    /**
+     * Issue several nonces bound to the same key in one call.
+     *
+     * @param kid   the key id the nonces are for
+     * @param count number of nonces wanted
+     * @return the issued nonces, fewer than count if the store ran out of room
+     * @throws IllegalStateException if not a single nonce could be registered
+     */
+    default List<Nonce> issue(String kid, int count) {
+        List<Nonce> issued = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) issued.add(issue(kid));
+        return issued;
+    }
+
+    /**
+     * @return true if issue may block the caller on I/O, so that an event loop must not call it
+     */
+    default boolean blocking() {
+        return false;
+    }
+
+    default boolean validateAndConsume(String nonce) {
+        return validateAndConsume(nonce, null);
+    }
+
+    boolean validateAndConsume(String nonce, String kid);
 
-    boolean validateAndConsume(String nonce);
+    /**
+     * Cheap check, without consuming, that a nonce could be accepted by
+     * {@link #validateAndConsume}. True when the implementation cannot tell cheaply.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return false if the nonce would certainly be rejected
+     */
+    default boolean isOutstanding(String nonce, String kid) {
+        return true;
+    }
 }
@@ -0,0 +1,99 @@
+package com.assessment.spruceid.verifier.service;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+
+import java.util.List;
+
+/**
+ * Storage of outstanding nonces for the stateful nonce mode, in process or on a shared server.
+ * <p>
+ * Both operations are atomic: {@link #put} only adds a nonce that is not outstanding yet
+ * (put-if-absent) and {@link #consume} removes and returns it in one step
+ * (consume-if-present). A nonce lives until its expiresAt; implementations drop nonces that
+ * were never consumed once they expire, and never hand out an expired one.
+ */
+public interface NonceStore extends AutoCloseable {
+    /**
+     * Register an issued nonce unless the same value is already outstanding.
+     *
+     * @param nonce the issued nonce
+     * @return false if the value is already outstanding or the store has no room left
+     * @throws IllegalStateException if the store cannot be reached
+     */
+    boolean put(Nonce nonce);
+
+    /**
+     * Register several issued nonces. Remote stores send them together, so a batch costs
+     * about one round trip.
+     *
+     * @param nonces the issued nonces
+     * @return for each nonce, whether it was added
+     * @throws IllegalStateException if the store cannot be reached
+     */
+    default boolean[] putAll(List<Nonce> nonces) {
+        boolean[] added = new boolean[nonces.size()];
+        for (int i = 0; i < added.length; i++) added[i] = put(nonces.get(i));
+        return added;
+    }
+
+    /**
+     * Remove a nonce. Removal is the atomic single-use step: of several concurrent callers
+     * only one can succeed. A nonce presented for another key is removed and rejected.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return true if the nonce was outstanding, fresh and issued for the key; false as well
+     * if a remote store cannot be reached
+     */
+    boolean consume(String nonce, String kid);
+
+    /**
+     * Check a nonce without consuming it, so that a proof for an unknown nonce can be turned
+     * away before its signature is checked. The answer may be stale by the time the nonce is
+     * consumed; {@link #consume} stays the single-use step.
+     * <p>
+     * Stores for which a lookup costs about as much as the check it would save (a round trip
+     * to a remote server) keep the default, which lets every nonce through to consume.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return false if the nonce is certainly not outstanding, fresh and issued for the key
+     */
+    default boolean isOutstanding(String nonce, String kid) {
+        return true;
+    }
+
+    /**
+     * Whether {@link #put} and {@link #putAll} can wait on I/O, a disk force or a round trip to
+     * a server. Callers on an event loop run issue on another thread when it does.
+     *
+     * @return true if registering a nonce may block the caller
+     */
+    default boolean blocking() {
+        return false;
+    }
+
+    /**
+     * @return number of outstanding nonces
+     */
+    long size();
+
+    /**
+     * @return number of nonces removed because they expired unconsumed
+     */
+    long expiredCount();
+
+    /**
+     * @return duration of the most recent expiry sweep in nanoseconds
+     */
+    long lastSweepNanos();
+
+    /**
+     * @return longest expiry sweep observed in nanoseconds
+     */
+    long maxSweepNanos();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,45 @@
+package com.assessment.spruceid.verifier.service;
+
+/**
+ * Why a proof was turned away. The verify service counts rejections per reason; the first
+ * six are decided before any curve arithmetic and without consuming the nonce.
+ * <p>
+ * Each reason belongs to a coarser {@link #outcome()}, the tag the metrics are reported under.
+ */
+public enum Rejection {
+    /** nonce or signature missing */
+    MISSING_FIELDS("malformed"),
+    /** no key registered for the kid */
+    UNKNOWN_KID("unknown-kid"),
+    /** signature is not base64 */
+    SIGNATURE_ENCODING("malformed"),
+    /** signature length impossible for the curve */
+    SIGNATURE_LENGTH("malformed"),
+    /** signature is not minimal DER */
+    SIGNATURE_STRUCTURE("malformed"),
+    /** r or s out of range */
+    SIGNATURE_RANGE("malformed"),
+    /** nonce not outstanding, expired or issued for another key (checked without consuming) */
+    UNKNOWN_NONCE("bad-nonce"),
+    /** nonce could not be consumed: already used, expired, or refused by the issuing node */
+    NONCE_REJECTED("bad-nonce"),
+    /** well-formed signature that does not verify */
+    SIGNATURE_INVALID("bad-signature"),
+    /** unexpected error while verifying */
+    ERROR("error"),
+    /** verification stage saturated, answered with 503 before the nonce was touched */
+    BUSY("busy");
+
+    private final String outcome;
+
+    Rejection(String outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return malformed, unknown-kid, bad-nonce, bad-signature, error or busy
+     */
+    public String outcome() {
+        return outcome;
+    }
+}
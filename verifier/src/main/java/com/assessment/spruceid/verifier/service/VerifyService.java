@@ -4,8 +4,15 @@ import com.assessment.spruceid.verifier.dto.VerifyRequest;
 import com.assessment.spruceid.verifier.dto.VerifyResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface VerifyService {
     Mono<ResponseEntity<VerifyResponse>> verify(@RequestBody VerifyRequest req);
+
+    Mono<ResponseEntity<List<VerifyResponse>>> verifyBatch(@RequestBody List<VerifyRequest> reqs);
+
+    Flux<VerifyResponse> verifyStream(@RequestBody Flux<VerifyRequest> reqs);
 }
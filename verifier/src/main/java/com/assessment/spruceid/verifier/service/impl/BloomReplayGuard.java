@@ -0,0 +1,178 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Fixed-memory consumed-set made of time slices, each a Bloom filter backed by a fixed-size
+ * table of 64-bit fingerprints.
+ * <p>
+ * A nonce is recorded in the slice of its expiry, so a replay always lands in the same slice
+ * and only one slice is ever probed. A slice is cleared and reused once its whole window has
+ * expired. The Bloom filter answers most first-time consumptions without looking further; a
+ * probable hit is confirmed against the fingerprint table. When a slice receives more
+ * nonces than its table holds, the overflow is recorded in the Bloom filter only and a
+ * probable hit there is treated as a replay: memory stays constant, replays are still always
+ * caught, and the cost of a burst is a few legitimate nonces rejected (at most the filter's
+ * false-positive rate). Nothing is allocated after construction.
+ */
+public class BloomReplayGuard implements ReplayGuard {
+    private static final double MAX_LOAD = 0.75;
+    // expiries do not spread evenly across slices, leave room above the average
+    private static final double SLACK = 1.25;
+
+    private final long sliceMillis;
+    private final Slice[] ring;
+    private final int hashes;
+    private final LongSupplier clock;
+
+    /**
+     * @param ttlMillis    nonce lifetime
+     * @param slicesPerTtl number of slices one TTL is split into
+     * @param capacity     consumed nonces expected per TTL window, beyond which slices overflow
+     * @param fpp          target false-positive probability of each Bloom filter
+     */
+    public BloomReplayGuard(long ttlMillis, int slicesPerTtl, long capacity, double fpp) {
+        this(ttlMillis, slicesPerTtl, capacity, fpp, System::currentTimeMillis);
+    }
+
+    BloomReplayGuard(long ttlMillis, int slicesPerTtl, long capacity, double fpp, LongSupplier clock) {
+        if (slicesPerTtl <= 0 || capacity <= 0 || fpp <= 0 || fpp >= 1)
+            throw new IllegalArgumentException("Invalid replay guard sizing");
+        this.sliceMillis = Math.max(1, (ttlMillis + slicesPerTtl - 1) / slicesPerTtl);
+        this.clock = clock;
+
+        // a nonce expires between now and now + ttl, so ttl/slice + 2 slices are live at once
+        long perSlice = (long) Math.ceil(SLACK * capacity / slicesPerTtl);
+        long bits = (long) Math.ceil(-perSlice * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / perSlice * Math.log(2)));
+        int words = Math.toIntExact((bits + 63) >>> 6);
+        int slots = Math.toIntExact((long) Math.ceil(perSlice / MAX_LOAD));
+        this.ring = new Slice[slicesPerTtl + 2];
+        for (int i = 0; i < ring.length; i++) ring[i] = new Slice(words, slots, Math.toIntExact(perSlice));
+    }
+
+    @Override
+    public boolean markConsumed(long hi, long lo, long expiresAtMillis) {
+        long epoch = expiresAtMillis / sliceMillis;
+        long now = clock.getAsLong() / sliceMillis;
+        if (epoch < now || epoch >= now + ring.length) return false;
+        Slice s = ring[(int) (epoch % ring.length)];
+        synchronized (s) {
+            if (s.epoch != epoch) {
+                // a different epoch in this slot: older ones have fully expired and can go,
+                // a newer one means the clock went backwards, so refuse rather than guess
+                if (s.epoch > epoch) return false;
+                s.reset(epoch);
+            }
+            return s.add(mix(lo), mix(hi) | 1, hashes);
+        }
+    }
+
+    @Override
+    public long size() {
+        long now = clock.getAsLong() / sliceMillis;
+        long n = 0;
+        for (Slice s : ring) {
+            synchronized (s) {
+                if (s.epoch >= now) n += s.count;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return bytes held by the filters and tables, fixed at construction
+     */
+    public long memoryBytes() {
+        return (long) ring.length * (ring[0].bits.length + ring[0].fingerprints.length) * Long.BYTES;
+    }
+
+    /**
+     * @return number of consumptions recorded in the Bloom filters only, since the live slices started
+     */
+    public long overflowed() {
+        long n = 0;
+        for (Slice s : ring) {
+            synchronized (s) {
+                n += s.overflowed;
+            }
+        }
+        return n;
+    }
+
+    // SplitMix64 finalizer: spreads the digest bits before they are used as hash positions.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Slice {
+        private final long[] bits;
+        private final long[] fingerprints;
+        private final int maxEntries;
+        private long epoch = Long.MIN_VALUE;
+        private int count;
+        private int stored;
+        private int overflowed;
+
+        Slice(int words, int slots, int maxEntries) {
+            this.bits = new long[words];
+            this.fingerprints = new long[slots];
+            this.maxEntries = maxEntries;
+        }
+
+        void reset(long epoch) {
+            if (count > 0) {
+                Arrays.fill(bits, 0L);
+                Arrays.fill(fingerprints, 0L);
+            }
+            this.epoch = epoch;
+            count = stored = overflowed = 0;
+        }
+
+        // Double hashing: position i is h1 + i * h2 over the filter's bits.
+        boolean add(long h1, long h2, int k) {
+            long nbits = (long) bits.length << 6;
+            boolean seen = true;
+            for (int i = 0; i < k; i++) {
+                long pos = Math.floorMod(h1 + i * h2, nbits);
+                long mask = 1L << pos;
+                int w = (int) (pos >>> 6);
+                if ((bits[w] & mask) == 0) {
+                    seen = false;
+                    bits[w] |= mask;
+                }
+            }
+            long fp = h1 == 0 ? 1 : h1;
+            if (seen) {
+                if (contains(fp)) return false;
+                // probable hit not in the table: only trustworthy if nothing has overflowed
+                if (overflowed > 0) return false;
+            }
+            if (stored < maxEntries) {
+                insert(fp);
+                stored++;
+            } else {
+                overflowed++;
+            }
+            count++;
+            return true;
+        }
+
+        private boolean contains(long fp) {
+            for (int i = Math.floorMod(fp, fingerprints.length); ; i = i + 1 == fingerprints.length ? 0 : i + 1) {
+                long f = fingerprints[i];
+                if (f == 0) return false;
+                if (f == fp) return true;
+            }
+        }
+
+        private void insert(long fp) {
+            int i = Math.floorMod(fp, fingerprints.length);
+            while (fingerprints[i] != 0) i = i + 1 == fingerprints.length ? 0 : i + 1;
+            fingerprints[i] = fp;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.utils.TimingWheel;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact consumed-set: a concurrent hash set of digests, pruned by a timing wheel once each
+ * nonce's expiry has passed. Memory is proportional to consumptions within one TTL window.
+ */
+public class ExactReplayGuard implements ReplayGuard {
+    private final Set<Consumed> consumed = ConcurrentHashMap.newKeySet();
+    private final TimingWheel<Consumed> expiry;
+
+    public ExactReplayGuard(long tickMillis) {
+        this.expiry = new TimingWheel<Consumed>(tickMillis, Consumed::expiresAt, consumed::remove)
+                .start("replay-guard-expiry");
+    }
+
+    @Override
+    public boolean markConsumed(long hi, long lo, long expiresAtMillis) {
+        Consumed c = new Consumed(hi, lo, expiresAtMillis);
+        if (!consumed.add(c)) return false;
+        expiry.schedule(c);
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return consumed.size();
+    }
+
+    @Override
+    public void close() {
+        expiry.close();
+    }
+
+    private record Consumed(long hi, long lo, long expiresAt) {
+    }
+}
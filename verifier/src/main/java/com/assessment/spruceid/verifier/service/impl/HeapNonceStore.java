@@ -0,0 +1,78 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import com.assessment.spruceid.verifier.utils.TimingWheel;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outstanding nonces in a concurrent hash table on the heap, keyed by their base64url value.
+ */
+public class HeapNonceStore implements NonceStore {
+    private final ConcurrentHashMap<String, Nonce> live;
+    // Drops nonces that were never consumed once their TTL has passed.
+    private final TimingWheel<Nonce> expiry;
+
+    /**
+     * @param initialCapacity initial table size, grows as needed
+     * @param tickMillis      resolution of the expiry sweep
+     */
+    public HeapNonceStore(int initialCapacity, long tickMillis) {
+        this.live = new ConcurrentHashMap<>(initialCapacity);
+        this.expiry = new TimingWheel<Nonce>(tickMillis, n -> n.getExpiresAt().toEpochMilli(),
+                n -> live.remove(n.getNonce(), n)).start("nonce-expiry");
+    }
+
+    @Override
+    public boolean put(Nonce nonce) {
+        if (live.putIfAbsent(nonce.getNonce(), nonce) != null) return false;
+        expiry.schedule(nonce);
+        return true;
+    }
+
+    @Override
+    public boolean consume(String nonce, String kid) {
+        if (nonce == null) return false;
+        Nonce n = live.remove(nonce);
+        if (n == null) return false;
+        if (Instant.now().isAfter(n.getExpiresAt())) return false;
+        if (!Objects.equals(n.getKid(), kid)) return false;
+        n.setUsed(true);
+        return true;
+    }
+
+    @Override
+    public boolean isOutstanding(String nonce, String kid) {
+        if (nonce == null) return false;
+        Nonce n = live.get(nonce);
+        return n != null && !Instant.now().isAfter(n.getExpiresAt()) && Objects.equals(n.getKid(), kid);
+    }
+
+    @Override
+    public long size() {
+        return live.size();
+    }
+
+    @Override
+    public long expiredCount() {
+        return expiry.expired();
+    }
+
+    @Override
+    public long lastSweepNanos() {
+        return expiry.lastSweepNanos();
+    }
+
+    @Override
+    public long maxSweepNanos() {
+        return expiry.maxSweepNanos();
+    }
+
+    @Override
+    public void close() {
+        expiry.close();
+    }
+}
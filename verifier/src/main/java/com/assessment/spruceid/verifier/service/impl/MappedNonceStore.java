@@ -0,0 +1,545 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import com.assessment.spruceid.verifier.utils.Base64Util;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Outstanding nonces that survive a restart. Every issue and consume is appended to a
+ * memory-mapped log before it takes effect; the live set itself is an {@link OffHeapNonceStore}
+ * rebuilt from the log on startup.
+ * <p>
+ * The log is a sequence of fixed-size segment files of 56-byte records (checksum and type,
+ * the 32 nonce bytes, expiry, kid hash). Writers reserve record slots with one atomic add,
+ * so appends take no lock. Because records are written into mapped memory they reach the
+ * page cache at once and survive a crash of the process; surviving a crash of the machine is
+ * a matter of the fsync policy:
+ * <ul>
+ * <li>{@code always}: each record is forced to disk before the call returns; the store
+ * reports itself {@link #blocking()}, so issue is moved off the event loop,</li>
+ * <li>{@code interval}: the current segment is forced every fsync interval,</li>
+ * <li>{@code never}: the OS writes pages back on its own schedule.</li>
+ * </ul>
+ * The maintenance thread keeps the next segment file created and mapped ahead of time, and
+ * seals and forces a segment once it is full, so the append that fills a segment only swaps
+ * in the spare one.
+ * <p>
+ * Space is reclaimed two ways. A closed segment whose records have all expired is deleted,
+ * which costs no writes. With a compaction interval set, the store also periodically starts a
+ * new segment, writes the live set as a snapshot and deletes everything older, trading
+ * extra writes for a smaller log and a faster recovery. Recovery loads the newest snapshot
+ * and replays the segments written after it.
+ */
+public class MappedNonceStore implements NonceStore {
+    private static final Logger log = LogManager.getLogger(MappedNonceStore.class);
+    static final long RECORD = 56;
+    private static final int ISSUE = 1;
+    private static final int CONSUME = 2;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final String SEGMENT = "segment-%016d.log";
+    private static final String SNAPSHOT = "snapshot-%016d.snap";
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum Fsync {ALWAYS, INTERVAL, NEVER}
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final Fsync fsync;
+    private final OffHeapNonceStore index;
+    private final ConcurrentLinkedDeque<Closed> closed = new ConcurrentLinkedDeque<>();
+    // Segments replaced by a roll, waiting for the maintenance thread to seal and force them.
+    private final ConcurrentLinkedQueue<Segment> full = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService maintenance;
+    private final AtomicLong appendedBytes = new AtomicLong();
+    private final AtomicLong compactedBytes = new AtomicLong();
+    private final Object compaction = new Object();
+    private volatile Segment current;
+    // The next segment, created ahead of time; guarded by this.
+    private Segment spare;
+    private volatile long recoveryMillis;
+    private boolean shut;
+
+    /**
+     * Open the log in a directory, recovering the nonces it holds.
+     *
+     * @param dir            directory of the log, created if missing
+     * @param capacity       maximum number of outstanding nonces
+     * @param stripes        lock stripes of the in-memory index
+     * @param tickMillis     interval of the index's expiry sweep
+     * @param segmentBytes   size of one log segment file
+     * @param fsync          when records are forced to disk
+     * @param fsyncMillis    force interval for {@link Fsync#INTERVAL}
+     * @param compactSeconds snapshot interval, 0 to reclaim space only by dropping expired segments
+     */
+    public MappedNonceStore(Path dir, long capacity, int stripes, long tickMillis, long segmentBytes,
+                            Fsync fsync, long fsyncMillis, long compactSeconds) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes / RECORD * RECORD;
+        if (this.segmentBytes <= 0) throw new IllegalArgumentException("Segment size too small");
+        this.fsync = fsync;
+        this.index = new OffHeapNonceStore(capacity, stripes, tickMillis);
+        try {
+            Files.createDirectories(dir);
+            long next = recover();
+            this.current = Segment.create(dir, next, this.segmentBytes);
+        } catch (IOException e) {
+            index.close();
+            throw new IllegalStateException("Cannot open nonce log in " + dir, e);
+        }
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nonce-log");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.execute(this::prepareSpare);
+        maintenance.scheduleWithFixedDelay(this::dropExpiredSegments, 1, 1, TimeUnit.SECONDS);
+        if (fsync == Fsync.INTERVAL)
+            maintenance.scheduleWithFixedDelay(this::forceCurrent, fsyncMillis, fsyncMillis, TimeUnit.MILLISECONDS);
+        if (compactSeconds > 0)
+            maintenance.scheduleWithFixedDelay(this::compactQuietly, compactSeconds, compactSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean put(Nonce nonce) {
+        String n = nonce.getNonce();
+        if (!Base64Util.isCanonicalUrl(n, 32)) throw new IllegalArgumentException("Not a 32-byte base64url nonce");
+        long k0 = Base64Util.readLong(n, 0), k1 = Base64Util.readLong(n, 8),
+                k2 = Base64Util.readLong(n, 16), k3 = Base64Util.readLong(n, 24);
+        long expiresAt = nonce.getExpiresAt().toEpochMilli();
+        long kidHash = OffHeapNonceStore.kidHash(nonce.getKid());
+        if (!index.putIfAbsent(k0, k1, k2, k3, expiresAt, kidHash)) return false;
+        append(ISSUE, k0, k1, k2, k3, expiresAt, kidHash);
+        return true;
+    }
+
+    @Override
+    public boolean consume(String nonce, String kid) {
+        if (!Base64Util.isCanonicalUrl(nonce, 32)) return false;
+        long k0 = Base64Util.readLong(nonce, 0), k1 = Base64Util.readLong(nonce, 8),
+                k2 = Base64Util.readLong(nonce, 16), k3 = Base64Util.readLong(nonce, 24);
+        long kidHash = OffHeapNonceStore.kidHash(kid);
+        long expiresAt = index.take(k0, k1, k2, k3, kidHash);
+        if (expiresAt == OffHeapNonceStore.ABSENT) return false;
+        // the consume is durable before anyone is told it succeeded; the record carries an
+        // expiry so the segment holding it is kept for as long as the issue could be replayed
+        append(CONSUME, k0, k1, k2, k3, Math.abs(expiresAt), kidHash);
+        return expiresAt > 0 && System.currentTimeMillis() <= expiresAt;
+    }
+
+    @Override
+    public boolean isOutstanding(String nonce, String kid) {
+        if (!Base64Util.isCanonicalUrl(nonce, 32)) return false;
+        long expiresAt = index.peek(Base64Util.readLong(nonce, 0), Base64Util.readLong(nonce, 8),
+                Base64Util.readLong(nonce, 16), Base64Util.readLong(nonce, 24), OffHeapNonceStore.kidHash(kid));
+        return expiresAt > 0 && System.currentTimeMillis() <= expiresAt;
+    }
+
+    /**
+     * @return true with {@link Fsync#ALWAYS}, which waits for a disk force on every append
+     */
+    @Override
+    public boolean blocking() {
+        return fsync == Fsync.ALWAYS;
+    }
+
+    @Override
+    public long size() {
+        return index.size();
+    }
+
+    @Override
+    public long expiredCount() {
+        return index.expiredCount();
+    }
+
+    @Override
+    public long lastSweepNanos() {
+        return index.lastSweepNanos();
+    }
+
+    @Override
+    public long maxSweepNanos() {
+        return index.maxSweepNanos();
+    }
+
+    /**
+     * @return time the last startup spent rebuilding the index from disk
+     */
+    public long recoveryMillis() {
+        return recoveryMillis;
+    }
+
+    /**
+     * @return bytes written to the log and snapshots per byte of records appended
+     */
+    public double writeAmplification() {
+        long appended = appendedBytes.get();
+        return appended == 0 ? 1 : (double) (appended + compactedBytes.get()) / appended;
+    }
+
+    /**
+     * Start a new segment, write the live set as a snapshot and delete older files.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void compact() throws IOException {
+        synchronized (compaction) {
+            compactNow();
+        }
+    }
+
+    private void compactNow() throws IOException {
+        Segment from = roll(current);
+        retireFull();
+        long now = System.currentTimeMillis();
+        Path tmp = dir.resolve(String.format(Locale.ROOT, SNAPSHOT, from.seq) + ".tmp");
+        long written;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) RECORD * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            long[] count = {0};
+            index.forEach((k0, k1, k2, k3, e, kid) -> {
+                if (e < now) return;
+                if (!buf.hasRemaining()) flush(ch, buf);
+                buf.putLong(header(ISSUE, k0, k1, k2, k3, e, kid))
+                        .putLong(k0).putLong(k1).putLong(k2).putLong(k3).putLong(e).putLong(kid);
+                count[0]++;
+            });
+            flush(ch, buf);
+            ch.force(true);
+            written = count[0];
+        }
+        Files.move(tmp, dir.resolve(String.format(Locale.ROOT, SNAPSHOT, from.seq)), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        compactedBytes.addAndGet(written * RECORD);
+
+        for (Closed c : closed) {
+            if (c.seq < from.seq) {
+                Files.deleteIfExists(c.path);
+                closed.remove(c);
+            }
+        }
+        for (Path p : list("snapshot-", ".snap")) if (seqOf(p) < from.seq) Files.deleteIfExists(p);
+        log.debug("Nonce log compacted: {} live nonces in snapshot {}", written, from.seq);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (shut) return;
+            shut = true;
+        }
+        maintenance.shutdownNow();
+        try {
+            maintenance.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            full.add(current);
+            retireFull();
+            if (spare != null) {
+                spare.arena.close();
+                try {
+                    Files.deleteIfExists(spare.path);
+                } catch (IOException e) {
+                    log.warn("Cannot delete unused nonce log segment {}: {}", spare.path, e.toString());
+                }
+                spare = null;
+            }
+        }
+        index.close();
+    }
+
+    private void append(int type, long k0, long k1, long k2, long k3, long expiresAt, long kidHash) {
+        while (true) {
+            Segment seg = current;
+            seg.writers.incrementAndGet();
+            try {
+                if (!seg.sealed) {
+                    long off = seg.next.getAndAdd(RECORD);
+                    if (off + RECORD <= seg.map.byteSize()) {
+                        MemorySegment m = seg.map;
+                        m.set(LONG, off + 8, k0);
+                        m.set(LONG, off + 16, k1);
+                        m.set(LONG, off + 24, k2);
+                        m.set(LONG, off + 32, k3);
+                        m.set(LONG, off + 40, expiresAt);
+                        m.set(LONG, off + 48, kidHash);
+                        // the header goes last: a record torn by a crash fails its checksum
+                        m.set(LONG, off, header(type, k0, k1, k2, k3, expiresAt, kidHash));
+                        if (fsync == Fsync.ALWAYS) m.asSlice(off, RECORD).force();
+                        seg.maxExpiresAt.accumulateAndGet(expiresAt, Math::max);
+                        appendedBytes.addAndGet(RECORD);
+                        return;
+                    }
+                }
+            } finally {
+                seg.writers.decrementAndGet();
+            }
+            roll(seg);
+        }
+    }
+
+    // Replace a full (or, for compaction, any) segment by the spare one and leave sealing and
+    // forcing the old one to the maintenance thread. Returns the new segment.
+    private synchronized Segment roll(Segment seg) {
+        if (current != seg) return current;
+        Segment next = spare;
+        spare = null;
+        if (next == null) {
+            // the maintenance thread has not caught up yet
+            try {
+                next = Segment.create(dir, seg.seq + 1, segmentBytes);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create nonce log segment in " + dir, e);
+            }
+        }
+        current = next;
+        full.add(seg);
+        try {
+            maintenance.execute(() -> {
+                retireFull();
+                prepareSpare();
+            });
+        } catch (RejectedExecutionException e) {
+            // closing: close() retires what is left
+        }
+        return next;
+    }
+
+    // Seal, force and release the segments replaced by a roll; they become eligible for deletion.
+    private void retireFull() {
+        synchronized (full) {
+            Segment seg;
+            while ((seg = full.poll()) != null) {
+                seg.seal();
+                seg.map.force();
+                closed.add(new Closed(seg.seq, seg.path, seg.maxExpiresAt.get()));
+                seg.arena.close();
+            }
+        }
+    }
+
+    // Create and map the segment after the current one, so that a roll does not have to.
+    private synchronized void prepareSpare() {
+        if (shut || spare != null) return;
+        try {
+            spare = Segment.create(dir, current.seq + 1, segmentBytes);
+        } catch (IOException e) {
+            log.warn("Cannot create the next nonce log segment ahead of time: {}", e.toString());
+        }
+    }
+
+    private void forceCurrent() {
+        Segment seg = current;
+        seg.writers.incrementAndGet();
+        try {
+            if (!seg.sealed) seg.map.force();
+        } finally {
+            seg.writers.decrementAndGet();
+        }
+    }
+
+    private void dropExpiredSegments() {
+        long now = System.currentTimeMillis();
+        for (Closed c : closed) {
+            if (c.maxExpiresAt < now) {
+                try {
+                    Files.deleteIfExists(c.path);
+                    closed.remove(c);
+                } catch (IOException e) {
+                    log.warn("Cannot delete expired nonce log segment {}: {}", c.path, e.toString());
+                }
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.warn("Nonce log compaction failed, will retry: {}", e.toString());
+        }
+    }
+
+    // Rebuild the index: newest snapshot first, then every segment written after it, in order.
+    private long recover() throws IOException {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        for (Path p : list("snapshot-", ".snap.tmp")) Files.deleteIfExists(p);
+
+        List<Path> snapshots = list("snapshot-", ".snap");
+        long from = snapshots.isEmpty() ? 0 : seqOf(snapshots.getLast());
+        long records = 0;
+        long torn = 0;
+        if (!snapshots.isEmpty()) {
+            long[] r = replay(snapshots.getLast(), now);
+            records += r[0];
+            torn += r[1];
+        }
+
+        long next = from;
+        for (Path p : list("segment-", ".log")) {
+            long seq = seqOf(p);
+            if (seq < from) {
+                Files.delete(p);
+                continue;
+            }
+            long[] r = replay(p, now);
+            records += r[0];
+            torn += r[1];
+            closed.add(new Closed(seq, p, r[2]));
+            next = seq + 1;
+        }
+        for (Path p : snapshots) if (seqOf(p) < from) Files.deleteIfExists(p);
+
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Nonce log recovered: {} records, {} outstanding nonces, {} torn records skipped, in {} ms",
+                records, index.size(), torn, recoveryMillis);
+        return next;
+    }
+
+    // Apply one file's records to the index. Returns {records, torn, max expiry}.
+    private long[] replay(Path file, long now) throws IOException {
+        long records = 0, torn = 0, maxExpiresAt = 0;
+        try (Arena arena = Arena.ofConfined();
+             FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size() / RECORD * RECORD;
+            if (size == 0) return new long[]{0, 0, 0};
+            MemorySegment m = ch.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            // slots are reserved concurrently, so a crash can leave holes: scan to the end
+            for (long off = 0; off < size; off += RECORD) {
+                long header = m.get(LONG, off);
+                if (header == 0) continue;
+                long k0 = m.get(LONG, off + 8), k1 = m.get(LONG, off + 16),
+                        k2 = m.get(LONG, off + 24), k3 = m.get(LONG, off + 32);
+                long e = m.get(LONG, off + 40), kid = m.get(LONG, off + 48);
+                int type = (int) header;
+                if (header != header(type, k0, k1, k2, k3, e, kid)) {
+                    torn++;
+                    continue;
+                }
+                records++;
+                maxExpiresAt = Math.max(maxExpiresAt, e);
+                if (type == ISSUE && e >= now) index.putIfAbsent(k0, k1, k2, k3, e, kid);
+                else if (type == CONSUME) index.take(k0, k1, k2, k3, kid);
+            }
+        }
+        return new long[]{records, torn, maxExpiresAt};
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).sorted().forEach(out::add);
+        }
+        return out;
+    }
+
+    private void syncDirectory() {
+        // makes the rename durable on Linux; not supported everywhere, and not fatal
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf) {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) ch.write(buf);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        buf.clear();
+    }
+
+    private static long seqOf(Path p) {
+        String name = p.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    // Record type in the low word, a checksum of the type and all fields in the high word.
+    private static long header(int type, long k0, long k1, long k2, long k3, long expiresAt, long kidHash) {
+        long h = OffHeapNonceStore.mix(type);
+        h = OffHeapNonceStore.mix(h ^ k0);
+        h = OffHeapNonceStore.mix(h ^ k1);
+        h = OffHeapNonceStore.mix(h ^ k2);
+        h = OffHeapNonceStore.mix(h ^ k3);
+        h = OffHeapNonceStore.mix(h ^ expiresAt);
+        h = OffHeapNonceStore.mix(h ^ kidHash);
+        return (h & 0xffffffff00000000L) | (type & 0xffffffffL);
+    }
+
+    private record Closed(long seq, Path path, long maxExpiresAt) {
+    }
+
+    private static final class Segment {
+        private final long seq;
+        private final Path path;
+        private final Arena arena;
+        private final MemorySegment map;
+        private final AtomicLong next = new AtomicLong();
+        private final AtomicInteger writers = new AtomicInteger();
+        private final AtomicLong maxExpiresAt = new AtomicLong();
+        private volatile boolean sealed;
+
+        private Segment(long seq, Path path, Arena arena, MemorySegment map) {
+            this.seq = seq;
+            this.path = path;
+            this.arena = arena;
+            this.map = map;
+        }
+
+        static Segment create(Path dir, long seq, long bytes) throws IOException {
+            Path path = dir.resolve(String.format(Locale.ROOT, SEGMENT, seq));
+            Arena arena = Arena.ofShared();
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(seq, path, arena, ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes, arena));
+            } catch (IOException | RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+        }
+
+        // Stop new writers and wait for the ones already inside, so the mapping can be released.
+        void seal() {
+            sealed = true;
+            while (writers.get() > 0) Thread.onSpinWait();
+        }
+    }
+}
@@ -1,43 +1,197 @@
 package com.assessment.spruceid.verifier.service.impl;
 
+import com.assessment.spruceid.verifier.crypto.EntropyPool;
+import com.assessment.spruceid.verifier.metrics.NonceConsumedEvent;
+import com.assessment.spruceid.verifier.metrics.NonceExpiryEvent;
+import com.assessment.spruceid.verifier.metrics.NonceIssuedEvent;
+import com.assessment.spruceid.verifier.metrics.NonceRejectedEvent;
 import com.assessment.spruceid.verifier.model.Nonce;
 import com.assessment.spruceid.verifier.service.NonceService;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.FlightRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.List;
 
 @Service
+@ConditionalOnProperty(name = "nonce.mode", havingValue = "stateful", matchIfMissing = true)
 public class NonceServiceImpl implements NonceService {
-    private final SecureRandom rnd = new SecureRandom();
+    private final EntropyPool entropy;
     private final Duration ttl;
-    private final AtomicReference<Nonce> current = new AtomicReference<>();
+    // Outstanding nonces; removal from the store is the single-use consume.
+    private final NonceStore store;
+    // Written into the first byte of every nonce, so that other nodes know where to consume it.
+    private final byte nodeId;
+    // Periodic JFR hook reporting expirations; only runs while a recording enables the event.
+    private final Runnable expiryHook = this::emitExpiry;
+    private long expiredReported;
 
-    public NonceServiceImpl(@Value("${nonce.ttl.seconds:300}") long ttlSeconds) {
+    public NonceServiceImpl(long ttlSeconds) {
+        this(ttlSeconds, 1 << 16, 100);
+    }
+
+    public NonceServiceImpl(long ttlSeconds, int initialCapacity, long tickMillis) {
+        this(ttlSeconds, new HeapNonceStore(initialCapacity, tickMillis));
+    }
+
+    public NonceServiceImpl(long ttlSeconds, NonceStore store) {
+        this(ttlSeconds, store, 0, new EntropyPool(1, 1 << 12, "DRBG"));
+    }
+
+    @Autowired
+    public NonceServiceImpl(@Value("${nonce.ttl.seconds:300}") long ttlSeconds, NonceStore store,
+                            @Value("${cluster.node.id:0}") int nodeId, EntropyPool entropy) {
+        if (nodeId < 0 || nodeId > 255) throw new IllegalArgumentException("cluster.node.id must be between 0 and 255");
+        this.entropy = entropy;
         this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.store = store;
+        this.nodeId = (byte) nodeId;
+        this.expiredReported = store.expiredCount();
+        FlightRecorder.addPeriodicEvent(NonceExpiryEvent.class, expiryHook);
     }
 
-    public Nonce issue() {
-        byte[] b = new byte[32]; rnd.nextBytes(b);
-        String n = Base64.getUrlEncoder().withoutPadding().encodeToString(b);
-        Instant now = Instant.now();
-        Nonce nonce = new Nonce(n, now, now.plus(ttl),false);
-        current.set(nonce);
+    /**
+     * Issue a new single-use nonce bound to a key and register it as outstanding.
+     * Any number of nonces may be outstanding at the same time.
+     * <p>
+     * The first of the 32 bytes is the id of this node (cluster.node.id), the other 31 are random.
+     *
+     * @param kid the key id the nonce is for
+     * @return the issued Nonce
+     * @throws IllegalStateException if the store has no room left
+     */
+    @Override
+    public Nonce issue(String kid) {
+        Nonce nonce = create(kid, Instant.now());
+        if (!store.put(nonce)) throw new IllegalStateException("Nonce store is full");
+        NonceIssuedEvent.emit(kid, 1);
         return nonce;
     }
 
-    public boolean validateAndConsume(String nonce) {
-        Nonce n = current.get();
-        if (n == null) return false;
-        if (n.isUsed()) return false;
-        if (Instant.now().isAfter(n.getExpiresAt())) { current.set(null); return false; }
-        if (!n.getNonce().equals(nonce)) return false;
-        n.setUsed(true);
-        current.set(null);
-        return true;
+    /**
+     * Issue several nonces bound to a key and register them with one {@link NonceStore#putAll},
+     * a single round trip for a remote store.
+     *
+     * @param kid   the key id the nonces are for
+     * @param count number of nonces wanted
+     * @return the registered nonces, fewer than count if the store ran out of room
+     * @throws IllegalStateException if the store has no room left at all
+     */
+    @Override
+    public List<Nonce> issue(String kid, int count) {
+        Instant now = Instant.now();
+        List<Nonce> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) batch.add(create(kid, now));
+        boolean[] added = store.putAll(batch);
+        List<Nonce> issued = new ArrayList<>(count);
+        for (int i = 0; i < added.length; i++) if (added[i]) issued.add(batch.get(i));
+        if (issued.isEmpty() && count > 0) throw new IllegalStateException("Nonce store is full");
+        NonceIssuedEvent.emit(kid, issued.size());
+        return issued;
+    }
+
+    private Nonce create(String kid, Instant now) {
+        byte[] b = new byte[32]; entropy.nextBytes(b, 0, 32);
+        b[0] = nodeId;
+        String n = Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+        return Nonce.builder().nonce(n).issuedAt(now).expiresAt(now.plus(ttl)).kid(kid).build();
+    }
+
+    /**
+     * @return whether the store waits on I/O when a nonce is registered
+     */
+    @Override
+    public boolean blocking() {
+        return store.blocking();
+    }
+
+    /**
+     * Validate a nonce and consume it. Removing the entry from the store is the
+     * atomic single-use step: of several concurrent callers only one gets it back.
+     *
+     * A nonce presented for another key than it was issued for is consumed and rejected.
+     * Only nonces issued by this node are found; see
+     * {@link com.assessment.spruceid.verifier.cluster.ClusterRouter} for the others.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return true if the nonce was outstanding, fresh and issued for the key, false otherwise
+     */
+    @Override
+    public boolean validateAndConsume(String nonce, String kid) {
+        boolean consumed = store.consume(nonce, kid);
+        if (consumed) NonceConsumedEvent.emit(kid);
+        else NonceRejectedEvent.emit(kid, "consume");
+        return consumed;
+    }
+
+    /**
+     * Check, without consuming, that a nonce is outstanding, fresh and issued for the key.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return false if a consume would certainly fail
+     */
+    @Override
+    public boolean isOutstanding(String nonce, String kid) {
+        boolean outstanding = store.isOutstanding(nonce, kid);
+        if (!outstanding) NonceRejectedEvent.emit(kid, "lookup");
+        return outstanding;
+    }
+
+    /**
+     * Number of outstanding (issued, not yet consumed) nonces.
+     *
+     * @return the live-entry count
+     */
+    public long size() {
+        return store.size();
+    }
+
+    /**
+     * Number of nonces removed by the expiry sweep because they were never consumed.
+     *
+     * @return the expired-entry count
+     */
+    public long expiredCount() {
+        return store.expiredCount();
+    }
+
+    /**
+     * Duration of the most recent expiry sweep.
+     *
+     * @return sweep latency in nanoseconds
+     */
+    public long lastSweepNanos() {
+        return store.lastSweepNanos();
+    }
+
+    /**
+     * Longest expiry sweep observed since startup.
+     *
+     * @return sweep latency in nanoseconds
+     */
+    public long maxSweepNanos() {
+        return store.maxSweepNanos();
+    }
+
+    private void emitExpiry() {
+        long expired = store.expiredCount();
+        NonceExpiryEvent.emit(expired - expiredReported, store.size(), store.lastSweepNanos());
+        expiredReported = expired;
+    }
+
+    @PreDestroy
+    public void close() {
+        FlightRecorder.removePeriodicEvent(expiryHook);
+        store.close();
     }
 }
@@ -0,0 +1,325 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import com.assessment.spruceid.verifier.utils.Base64Util;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outstanding nonces in off-heap memory, as fixed-size binary entries in open-addressing
+ * tables. Nothing per nonce lives on the heap, so the store adds no GC work however many
+ * nonces are outstanding.
+ * <p>
+ * An entry is 48 bytes: the 32 random bytes of the nonce as four longs, the expiry in epoch
+ * millis and a 64-bit hash of the kid. An expiry of 0 marks a free slot. The table is split
+ * into stripes, each with its own lock and linear-probing region sized for its share of the
+ * capacity at a load of at most {@value #MAX_LOAD}; removal shifts the following entries
+ * back, so there are no tombstones. Incoming nonces are decoded from base64url straight into
+ * the probe key. A background thread sweeps one stripe per tick for expired entries.
+ */
+public class OffHeapNonceStore implements NonceStore {
+    private static final int KEY_BYTES = 32;
+    private static final long ENTRY = 48;
+    private static final long EXPIRES = 32;
+    private static final long KID = 40;
+    private static final double MAX_LOAD = 0.8;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG;
+    static final long ABSENT = 0;
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment table;
+    private final Stripe[] stripes;
+    private final int slots;
+    private final int maxPerStripe;
+    private final AtomicLong expired = new AtomicLong();
+    private volatile long lastSweepNanos;
+    private volatile long maxSweepNanos;
+    private final ScheduledExecutorService sweeper;
+    private int nextSweep;
+    private boolean closed;
+
+    /**
+     * @param capacity    maximum number of outstanding nonces
+     * @param stripeCount number of independently locked stripes
+     * @param tickMillis  interval between stripe sweeps
+     */
+    public OffHeapNonceStore(long capacity, int stripeCount, long tickMillis) {
+        if (capacity <= 0 || stripeCount <= 0) throw new IllegalArgumentException("Invalid off-heap store sizing");
+        // nonces hash evenly but not exactly evenly: leave each stripe room for four
+        // standard deviations above its share, so the whole capacity fits
+        double share = (double) capacity / stripeCount;
+        this.maxPerStripe = Math.toIntExact(stripeCount == 1 ? capacity : (long) Math.ceil(share + 4 * Math.sqrt(share)));
+        this.slots = Math.toIntExact((long) Math.ceil(maxPerStripe / MAX_LOAD));
+        this.table = arena.allocate((long) stripeCount * slots * ENTRY, Long.BYTES);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) stripes[i] = new Stripe((long) i * slots * ENTRY);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nonce-store-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleAtFixedRate(this::sweepNext, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean put(Nonce nonce) {
+        String n = nonce.getNonce();
+        if (!Base64Util.isCanonicalUrl(n, KEY_BYTES)) throw new IllegalArgumentException("Not a 32-byte base64url nonce");
+        return insert(Base64Util.readLong(n, 0), Base64Util.readLong(n, 8), Base64Util.readLong(n, 16),
+                Base64Util.readLong(n, 24), nonce.getExpiresAt().toEpochMilli(), kidHash(nonce.getKid()));
+    }
+
+    @Override
+    public boolean consume(String nonce, String kid) {
+        if (!Base64Util.isCanonicalUrl(nonce, KEY_BYTES)) return false;
+        long expiresAt = take(Base64Util.readLong(nonce, 0), Base64Util.readLong(nonce, 8),
+                Base64Util.readLong(nonce, 16), Base64Util.readLong(nonce, 24), kidHash(kid));
+        return expiresAt > 0 && System.currentTimeMillis() <= expiresAt;
+    }
+
+    @Override
+    public boolean isOutstanding(String nonce, String kid) {
+        if (!Base64Util.isCanonicalUrl(nonce, KEY_BYTES)) return false;
+        long expiresAt = peek(Base64Util.readLong(nonce, 0), Base64Util.readLong(nonce, 8),
+                Base64Util.readLong(nonce, 16), Base64Util.readLong(nonce, 24), kidHash(kid));
+        return expiresAt > 0 && System.currentTimeMillis() <= expiresAt;
+    }
+
+    /**
+     * Insert an entry given as raw key words, unless the key is already present.
+     *
+     * @return false if the key was present or the stripe is full
+     */
+    boolean putIfAbsent(long k0, long k1, long k2, long k3, long expiresAt, long kidHash) {
+        return insert(k0, k1, k2, k3, expiresAt, kidHash);
+    }
+
+    /**
+     * Remove an entry given as raw key words.
+     *
+     * @return the entry's expiry if it was present and issued for the kid, the negated expiry
+     * if it was present for another kid, {@link #ABSENT} otherwise
+     */
+    long take(long k0, long k1, long k2, long k3, long kidHash) {
+        long h = mix(k0);
+        Stripe s = stripes[index(h >>> 32, stripes.length)];
+        synchronized (s) {
+            long at = find(s, h, k0, k1, k2, k3);
+            if (at < 0) return ABSENT;
+            long expiresAt = table.get(LONG, at + EXPIRES);
+            boolean sameKid = table.get(LONG, at + KID) == kidHash;
+            remove(s, at);
+            return sameKid ? expiresAt : -expiresAt;
+        }
+    }
+
+    /**
+     * Look up an entry given as raw key words, leaving it in place.
+     *
+     * @return as {@link #take}
+     */
+    long peek(long k0, long k1, long k2, long k3, long kidHash) {
+        long h = mix(k0);
+        Stripe s = stripes[index(h >>> 32, stripes.length)];
+        synchronized (s) {
+            long at = find(s, h, k0, k1, k2, k3);
+            if (at < 0) return ABSENT;
+            long expiresAt = table.get(LONG, at + EXPIRES);
+            return table.get(LONG, at + KID) == kidHash ? expiresAt : -expiresAt;
+        }
+    }
+
+    /**
+     * Visit every entry, one stripe at a time under that stripe's lock.
+     */
+    void forEach(EntryVisitor visitor) {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                long end = s.base + slots * ENTRY;
+                for (long at = s.base; at < end; at += ENTRY) {
+                    long e = table.get(LONG, at + EXPIRES);
+                    if (e != 0) visitor.visit(table.get(LONG, at), table.get(LONG, at + 8),
+                            table.get(LONG, at + 16), table.get(LONG, at + 24), e, table.get(LONG, at + KID));
+                }
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.count;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public long expiredCount() {
+        return expired.get();
+    }
+
+    @Override
+    public long lastSweepNanos() {
+        return lastSweepNanos;
+    }
+
+    @Override
+    public long maxSweepNanos() {
+        return maxSweepNanos;
+    }
+
+    /**
+     * @return bytes of off-heap memory reserved for the table
+     */
+    public long memoryBytes() {
+        return table.byteSize();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        sweeper.shutdownNow();
+        try {
+            sweeper.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        arena.close();
+    }
+
+    private boolean insert(long k0, long k1, long k2, long k3, long expiresAt, long kidHash) {
+        long h = mix(k0);
+        Stripe s = stripes[index(h >>> 32, stripes.length)];
+        synchronized (s) {
+            if (s.count >= maxPerStripe) {
+                sweep(s, System.currentTimeMillis());
+                if (s.count >= maxPerStripe) return false;
+            }
+            // a key is never past the first free slot of its cluster, so one probe both
+            // checks for a duplicate and finds where to insert
+            long at = s.base + index(h, slots) * ENTRY;
+            while (table.get(LONG, at + EXPIRES) != 0) {
+                if (table.get(LONG, at) == k0 && table.get(LONG, at + 8) == k1
+                        && table.get(LONG, at + 16) == k2 && table.get(LONG, at + 24) == k3) return false;
+                at = next(s, at);
+            }
+            table.set(LONG, at, k0);
+            table.set(LONG, at + 8, k1);
+            table.set(LONG, at + 16, k2);
+            table.set(LONG, at + 24, k3);
+            table.set(LONG, at + KID, kidHash);
+            table.set(LONG, at + EXPIRES, expiresAt);
+            s.count++;
+            return true;
+        }
+    }
+
+    // Offset of the entry with this key, or -1. Caller holds the stripe lock.
+    private long find(Stripe s, long h, long k0, long k1, long k2, long k3) {
+        long at = s.base + index(h, slots) * ENTRY;
+        while (table.get(LONG, at + EXPIRES) != 0) {
+            if (table.get(LONG, at) == k0 && table.get(LONG, at + 8) == k1
+                    && table.get(LONG, at + 16) == k2 && table.get(LONG, at + 24) == k3) return at;
+            at = next(s, at);
+        }
+        return -1;
+    }
+
+    private void sweepNext() {
+        Stripe s = stripes[nextSweep];
+        nextSweep = (nextSweep + 1) % stripes.length;
+        long start = System.nanoTime();
+        synchronized (s) {
+            sweep(s, System.currentTimeMillis());
+        }
+        long took = System.nanoTime() - start;
+        lastSweepNanos = took;
+        if (took > maxSweepNanos) maxSweepNanos = took;
+    }
+
+    // Remove every expired entry of a stripe. Removal only moves entries backwards, so
+    // re-checking the same slot after a removal visits every entry.
+    private void sweep(Stripe s, long now) {
+        long end = s.base + slots * ENTRY;
+        for (long at = s.base; at < end; ) {
+            long e = table.get(LONG, at + EXPIRES);
+            if (e != 0 && e < now) {
+                remove(s, at);
+                expired.incrementAndGet();
+            } else {
+                at += ENTRY;
+            }
+        }
+    }
+
+    // Backward-shift deletion for linear probing: pull later entries of the same cluster
+    // into the hole unless that would move them before their home slot.
+    private void remove(Stripe s, long hole) {
+        long at = hole;
+        while (true) {
+            at = next(s, at);
+            if (table.get(LONG, at + EXPIRES) == 0) break;
+            long home = s.base + index(mix(table.get(LONG, at)), slots) * ENTRY;
+            boolean stays = hole <= at ? hole < home && home <= at : hole < home || home <= at;
+            if (stays) continue;
+            MemorySegment.copy(table, at, table, hole, ENTRY);
+            hole = at;
+        }
+        table.set(LONG, hole + EXPIRES, 0L);
+        s.count--;
+    }
+
+    private long next(Stripe s, long at) {
+        at += ENTRY;
+        return at == s.base + slots * ENTRY ? s.base : at;
+    }
+
+    // Maps the low 32 bits of a hash onto [0, n) without division.
+    private static int index(long h, int n) {
+        return (int) (((h & 0xffffffffL) * n) >>> 32);
+    }
+
+    // SplitMix64 finalizer
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // 64-bit FNV-1a over the kid's UTF-16 chars; 0 for no kid
+    static long kidHash(String kid) {
+        if (kid == null) return 0;
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < kid.length(); i++) {
+            h ^= kid.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(long k0, long k1, long k2, long k3, long expiresAt, long kidHash);
+    }
+
+    private static final class Stripe {
+        private final long base;
+        private int count;
+
+        Stripe(long base) {
+            this.base = base;
+        }
+    }
+}
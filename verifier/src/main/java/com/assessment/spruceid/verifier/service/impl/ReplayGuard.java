@@ -0,0 +1,26 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+/**
+ * Remembers consumed nonces until they expire, for nonce modes that keep no per-nonce state
+ * at issuance. A nonce is identified by a 128-bit digest of its random part.
+ */
+public interface ReplayGuard extends AutoCloseable {
+    /**
+     * Record a nonce as consumed.
+     *
+     * @param hi              high 64 bits of the nonce digest
+     * @param lo              low 64 bits of the nonce digest
+     * @param expiresAtMillis when the nonce expires; it need not be remembered after that
+     * @return true if this is the first consumption, false if the nonce was already consumed
+     */
+    boolean markConsumed(long hi, long lo, long expiresAtMillis);
+
+    /**
+     * @return number of consumed nonces currently remembered (approximate)
+     */
+    long size();
+
+    @Override
+    default void close() {
+    }
+}
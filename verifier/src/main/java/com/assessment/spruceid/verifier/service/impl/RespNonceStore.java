@@ -0,0 +1,389 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outstanding nonces on a Redis-compatible key-value server (RESP2, GETDEL needs Redis 6.2+,
+ * Valkey or a compatible server), so that all verifier nodes pointed at the same server share
+ * one set of outstanding nonces and replay state.
+ * <p>
+ * A nonce is stored as {@code <prefix><nonce> = <expiresAt>:<kid>} with {@code SET NX PX}, so
+ * the server expires it, and consumed with {@code GETDEL}, the atomic single-use step. Expiry
+ * and the kid are checked on this side.
+ * <p>
+ * All callers share one connection. Commands are queued; a writer thread sends whatever has
+ * queued up in one write and a reader thread matches replies to commands in order. Concurrent
+ * consumes therefore ride the same round trip instead of paying one each, and
+ * {@link #putAll} sends a whole batch at once. A broken connection fails the commands in
+ * flight and is re-opened on the next command. Callers wait at most the command timeout, so
+ * the store reports itself {@link #blocking()} and issue is moved off the event loop.
+ */
+public class RespNonceStore implements NonceStore {
+    private static final Logger log = LogManager.getLogger(RespNonceStore.class);
+
+    private final String host;
+    private final int port;
+    private final int database;
+    private final String password;
+    private final byte[] prefix;
+    private final long timeoutMillis;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    private Connection connection;
+    private volatile boolean closed;
+
+    /**
+     * @param host          server host
+     * @param port          server port
+     * @param database      database index, 0 for the default
+     * @param password      AUTH password, blank for none
+     * @param prefix        prefix of the nonce keys
+     * @param timeoutMillis connect timeout and longest wait for a reply
+     */
+    public RespNonceStore(String host, int port, int database, String password, String prefix, long timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.database = database;
+        this.password = password;
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public boolean put(Nonce nonce) {
+        return await(send(set(nonce)), "put") != null;
+    }
+
+    @Override
+    public boolean[] putAll(List<Nonce> nonces) {
+        List<byte[][]> batch = new ArrayList<>(nonces.size());
+        for (Nonce n : nonces) batch.add(set(n));
+        List<CompletableFuture<Object>> replies = send(batch);
+        boolean[] added = new boolean[replies.size()];
+        for (int i = 0; i < added.length; i++) added[i] = await(replies.get(i), "put") != null;
+        return added;
+    }
+
+    /**
+     * @return true: every put waits for a round trip to the server
+     */
+    @Override
+    public boolean blocking() {
+        return true;
+    }
+
+    @Override
+    public boolean consume(String nonce, String kid) {
+        if (nonce == null) return false;
+        Object reply;
+        try {
+            reply = await(send(command("GETDEL", key(nonce))), "consume");
+        } catch (IllegalStateException e) {
+            // unreachable: a nonce that cannot be checked is not accepted
+            return false;
+        }
+        if (!(reply instanceof byte[] value)) return false;
+        String v = new String(value, StandardCharsets.UTF_8);
+        int colon = v.indexOf(':');
+        if (colon < 0) return false;
+        long expiresAt = Long.parseLong(v, 0, colon, 10);
+        String issuedFor = v.substring(colon + 1);
+        return System.currentTimeMillis() <= expiresAt && issuedFor.equals(Objects.toString(kid, ""));
+    }
+
+    /**
+     * @return number of keys in the database, outstanding nonces if the database is dedicated to them
+     */
+    @Override
+    public long size() {
+        Object reply = await(send(command("DBSIZE")), "size");
+        return reply instanceof Long n ? n : 0;
+    }
+
+    // Expiry is done by the server.
+    @Override
+    public long expiredCount() {
+        return 0;
+    }
+
+    @Override
+    public long lastSweepNanos() {
+        return 0;
+    }
+
+    @Override
+    public long maxSweepNanos() {
+        return 0;
+    }
+
+    /**
+     * @return commands per write to the server, above 1 when callers share round trips
+     */
+    public double commandsPerWrite() {
+        long w = writes.get();
+        return w == 0 ? 0 : (double) commands.get() / w;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (connection != null) connection.fail(new IOException("Nonce store closed"));
+    }
+
+    private byte[][] set(Nonce nonce) {
+        long expiresAt = nonce.getExpiresAt().toEpochMilli();
+        // at least 1 ms: PX 0 is an error, and such a nonce can never be consumed anyway
+        long ttl = Math.max(1, expiresAt - System.currentTimeMillis());
+        return command("SET", key(nonce.getNonce()),
+                (expiresAt + ":" + Objects.toString(nonce.getKid(), "")).getBytes(StandardCharsets.UTF_8),
+                "NX", "PX", Long.toString(ttl));
+    }
+
+    private byte[] key(String nonce) {
+        byte[] n = nonce.getBytes(StandardCharsets.UTF_8);
+        byte[] k = new byte[prefix.length + n.length];
+        System.arraycopy(prefix, 0, k, 0, prefix.length);
+        System.arraycopy(n, 0, k, prefix.length, n.length);
+        return k;
+    }
+
+    private static byte[][] command(Object... args) {
+        byte[][] out = new byte[args.length][];
+        for (int i = 0; i < args.length; i++)
+            out[i] = args[i] instanceof byte[] b ? b : args[i].toString().getBytes(StandardCharsets.UTF_8);
+        return out;
+    }
+
+    private CompletableFuture<Object> send(byte[][] command) {
+        return send(Collections.singletonList(command)).getFirst();
+    }
+
+    // Queue commands on the current connection, opening one if needed. The commands of one
+    // call are queued back to back, so they go out in one write or very few.
+    private List<CompletableFuture<Object>> send(List<byte[][]> batch) {
+        List<Command> queued = new ArrayList<>(batch.size());
+        for (byte[][] args : batch) queued.add(new Command(args));
+        try {
+            connection().enqueue(queued);
+        } catch (IOException e) {
+            queued.forEach(c -> c.reply.completeExceptionally(e));
+        }
+        List<CompletableFuture<Object>> replies = new ArrayList<>(queued.size());
+        for (Command c : queued) replies.add(c.reply);
+        return replies;
+    }
+
+    private synchronized Connection connection() throws IOException {
+        if (closed) throw new IOException("Nonce store closed");
+        if (connection == null || connection.failed) {
+            connection = new Connection();
+            // queued ahead of everything else; nobody waits for these replies
+            if (password != null && !password.isBlank()) handshake(command("AUTH", password));
+            if (database != 0) handshake(command("SELECT", Integer.toString(database)));
+        }
+        return connection;
+    }
+
+    private void handshake(byte[][] args) throws IOException {
+        Command c = new Command(args);
+        c.reply.whenComplete((r, e) -> {
+            if (e != null) log.error("Nonce store {} failed: {}", new String(args[0], StandardCharsets.US_ASCII), e.getMessage());
+        });
+        connection.enqueue(List.of(c));
+    }
+
+    private Object await(CompletableFuture<Object> reply, String what) {
+        try {
+            return reply.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the nonce store", e);
+        } catch (ExecutionException | TimeoutException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            log.warn("Nonce store {} failed: {}", what, cause.toString());
+            throw new IllegalStateException("Nonce store unavailable", cause);
+        }
+    }
+
+    private static final class Command {
+        private final byte[][] args;
+        private final CompletableFuture<Object> reply = new CompletableFuture<>();
+
+        Command(byte[][] args) {
+            this.args = args;
+        }
+    }
+
+    /**
+     * An error reply from the server.
+     */
+    static final class RespError extends Exception {
+        RespError(String message) {
+            super(message);
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket = new Socket();
+        private final OutputStream out;
+        private final InputStream in;
+        private final LinkedBlockingQueue<Command> outbox = new LinkedBlockingQueue<>();
+        // sent, waiting for their reply, in the order the server answers them
+        private final ConcurrentLinkedQueue<Command> inFlight = new ConcurrentLinkedQueue<>();
+        private final Thread writer;
+        private volatile boolean failed;
+
+        Connection() throws IOException {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), (int) timeoutMillis);
+            out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+            in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+            writer = Thread.ofPlatform().daemon().name("nonce-store-writer").start(this::writeLoop);
+            Thread.ofPlatform().daemon().name("nonce-store-reader").start(this::readLoop);
+        }
+
+        void enqueue(List<Command> commands) throws IOException {
+            if (failed) throw new IOException("Connection to the nonce store is closed");
+            outbox.addAll(commands);
+            // lost a race with fail(): make sure nothing is left waiting
+            if (failed) drain(new IOException("Connection to the nonce store is closed"));
+        }
+
+        private void writeLoop() {
+            List<Command> batch = new ArrayList<>();
+            try {
+                while (!failed) {
+                    batch.add(outbox.take());
+                    outbox.drainTo(batch);
+                    // in flight before the first byte goes out, so a failure below fails them all
+                    inFlight.addAll(batch);
+                    // fail() may have drained while this batch was in neither queue
+                    if (failed) {
+                        drain(new IOException("Connection to the nonce store is closed"));
+                        return;
+                    }
+                    for (Command c : batch) writeCommand(c.args);
+                    out.flush();
+                    writes.incrementAndGet();
+                    commands.addAndGet(batch.size());
+                    batch.clear();
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // the connection failed while waiting for commands
+            }
+        }
+
+        private void readLoop() {
+            try {
+                while (!failed) {
+                    Object reply = readReply();
+                    Command c = inFlight.poll();
+                    if (c == null) throw new IOException("Reply without a command");
+                    if (reply instanceof RespError err) c.reply.completeExceptionally(err);
+                    else c.reply.complete(reply);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void writeCommand(byte[][] args) throws IOException {
+            out.write('*');
+            writeNumber(args.length);
+            for (byte[] a : args) {
+                out.write('$');
+                writeNumber(a.length);
+                out.write(a);
+                out.write('\r');
+                out.write('\n');
+            }
+        }
+
+        private void writeNumber(long n) throws IOException {
+            out.write(Long.toString(n).getBytes(StandardCharsets.US_ASCII));
+            out.write('\r');
+            out.write('\n');
+        }
+
+        private Object readReply() throws IOException {
+            int type = in.read();
+            if (type < 0) throw new EOFException("Nonce store closed the connection");
+            return switch (type) {
+                case '+' -> readLine();
+                case '-' -> new RespError(readLine());
+                case ':' -> Long.parseLong(readLine());
+                case '$' -> {
+                    int len = Integer.parseInt(readLine());
+                    if (len < 0) yield null;
+                    byte[] b = in.readNBytes(len);
+                    if (b.length < len || in.read() != '\r' || in.read() != '\n') throw new EOFException("Truncated reply");
+                    yield b;
+                }
+                case '*' -> {
+                    int len = Integer.parseInt(readLine());
+                    if (len < 0) yield null;
+                    Object[] items = new Object[len];
+                    for (int i = 0; i < len; i++) items[i] = readReply();
+                    yield items;
+                }
+                default -> throw new IOException("Unexpected reply type: " + (char) type);
+            };
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (int c; (c = in.read()) != '\r'; ) {
+                if (c < 0) throw new EOFException("Nonce store closed the connection");
+                sb.append((char) c);
+            }
+            if (in.read() != '\n') throw new IOException("Malformed reply line");
+            return sb.toString();
+        }
+
+        // Close once, but drain on every call: a later failure can find commands an earlier drain missed.
+        private void fail(IOException e) {
+            if (!failed) {
+                failed = true;
+                if (!closed) log.warn("Connection to the nonce store at {}:{} lost: {}", host, port, e.toString());
+                try {
+                    socket.close();
+                } catch (IOException ignore) {
+                    // already broken
+                }
+                writer.interrupt();
+            }
+            drain(e);
+        }
+
+        private void drain(IOException e) {
+            for (Command c; (c = inFlight.poll()) != null; ) c.reply.completeExceptionally(e);
+            for (Command c; (c = outbox.poll()) != null; ) c.reply.completeExceptionally(e);
+        }
+    }
+}
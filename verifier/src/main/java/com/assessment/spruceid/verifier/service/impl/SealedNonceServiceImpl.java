@@ -0,0 +1,193 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.crypto.EntropyPool;
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceService;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stateless nonces (nonce.mode=sealed): each nonce carries its own issuedAt, expiresAt and
+ * random bytes, sealed with an HMAC over those fields and the kid. Any node sharing
+ * nonce.sealed.secret can check authenticity and freshness without a lookup; only consumed
+ * nonces are remembered, by a {@link ReplayGuard}, until they expire.
+ * <p>
+ * Layout before base64url: version(1) | issuedAt ms(8) | expiresAt ms(8) | random(16) | mac(16).
+ */
+@Service
+@ConditionalOnProperty(name = "nonce.mode", havingValue = "sealed")
+public class SealedNonceServiceImpl implements NonceService {
+    private static final Logger log = LogManager.getLogger(SealedNonceServiceImpl.class);
+    private static final byte VERSION = 1;
+    private static final int RANDOM_LEN = 16;
+    private static final int MAC_LEN = 16;
+    private static final int BODY_LEN = 1 + 8 + 8 + RANDOM_LEN;
+    private static final int RAW_LEN = BODY_LEN + MAC_LEN;
+    private static final int ENCODED_LEN = (RAW_LEN * 8 + 5) / 6;
+
+    private final EntropyPool entropy;
+    private final Duration ttl;
+    private final SecretKeySpec macKey;
+    private final ConcurrentLinkedQueue<Mac> macs = new ConcurrentLinkedQueue<>();
+    private final ReplayGuard guard;
+
+    @Autowired
+    public SealedNonceServiceImpl(@Value("${nonce.ttl.seconds:300}") long ttlSeconds,
+                                  @Value("${nonce.sealed.secret:}") String secret,
+                                  @Value("${nonce.expiry.tick.millis:100}") long tickMillis,
+                                  @Value("${nonce.replay.guard:exact}") String replayGuard,
+                                  @Value("${nonce.replay.bloom.capacity:1000000}") long bloomCapacity,
+                                  @Value("${nonce.replay.bloom.fpp:0.001}") double bloomFpp,
+                                  @Value("${nonce.replay.bloom.slices:4}") int bloomSlices,
+                                  EntropyPool entropy) {
+        this(ttlSeconds, secret, entropy, switch (replayGuard) {
+            case "exact" -> new ExactReplayGuard(tickMillis);
+            case "bloom" -> new BloomReplayGuard(ttlSeconds * 1000, bloomSlices, bloomCapacity, bloomFpp);
+            default -> throw new IllegalArgumentException("Unknown nonce.replay.guard: " + replayGuard);
+        });
+        log.info("Sealed nonces: replay guard={}", replayGuard);
+    }
+
+    public SealedNonceServiceImpl(long ttlSeconds, String secret, ReplayGuard guard) {
+        this(ttlSeconds, secret, new EntropyPool(1, 1 << 12, "DRBG"), guard);
+    }
+
+    public SealedNonceServiceImpl(long ttlSeconds, String secret, EntropyPool entropy, ReplayGuard guard) {
+        this.entropy = entropy;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.guard = guard;
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("nonce.sealed.secret is not set: using a random per-process key, nonces are only valid on this node");
+        } else {
+            key = Base64.getDecoder().decode(secret.trim());
+            if (key.length < 32) throw new IllegalArgumentException("nonce.sealed.secret must be at least 32 bytes");
+        }
+        this.macKey = new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    /**
+     * Issue a sealed nonce bound to a key. Nothing is stored.
+     *
+     * @param kid the key id the nonce is for
+     * @return the issued Nonce
+     */
+    @Override
+    public Nonce issue(String kid) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(ttl);
+        byte[] raw = new byte[RAW_LEN];
+        ByteBuffer buf = ByteBuffer.wrap(raw)
+                .put(VERSION)
+                .putLong(now.toEpochMilli())
+                .putLong(expiresAt.toEpochMilli());
+        byte[] random = new byte[RANDOM_LEN];
+        entropy.nextBytes(random, 0, RANDOM_LEN);
+        buf.put(random);
+        buf.put(mac(raw, kid), 0, MAC_LEN);
+        String n = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        return Nonce.builder().nonce(n).issuedAt(now).expiresAt(expiresAt).kid(kid).build();
+    }
+
+    /**
+     * Check the seal, freshness and key binding, then record the nonce as consumed.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return true if the nonce is authentic, fresh, issued for the key and not yet consumed
+     */
+    @Override
+    public boolean validateAndConsume(String nonce, String kid) {
+        long[] sealed = unseal(nonce, kid);
+        return sealed != null && guard.markConsumed(sealed[0], sealed[1], sealed[2]);
+    }
+
+    /**
+     * Check the seal, freshness and key binding without recording anything. A nonce that was
+     * already consumed still passes; that is left to {@link #validateAndConsume}.
+     *
+     * @param nonce the nonce presented by the holder
+     * @param kid   the key id the proof is signed with
+     * @return true if the nonce is authentic, fresh and issued for the key
+     */
+    @Override
+    public boolean isOutstanding(String nonce, String kid) {
+        return unseal(nonce, kid) != null;
+    }
+
+    // {digest hi, digest lo, expiresAt} of an authentic, fresh nonce for the kid, else null
+    private long[] unseal(String nonce, String kid) {
+        if (nonce == null || nonce.length() != ENCODED_LEN) return null;
+        byte[] raw;
+        try {
+            raw = Base64.getUrlDecoder().decode(nonce);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(raw);
+        if (buf.get() != VERSION) return null;
+        long issuedAt = buf.getLong();
+        long expiresAt = buf.getLong();
+        long hi = buf.getLong();
+        long lo = buf.getLong();
+
+        byte[] expected = mac(raw, kid);
+        byte[] presented = new byte[MAC_LEN];
+        buf.get(presented);
+        if (!MessageDigest.isEqual(presented, Arrays.copyOf(expected, MAC_LEN))) return null;
+
+        long now = System.currentTimeMillis();
+        if (now > expiresAt || issuedAt > expiresAt) return null;
+        return new long[]{hi, lo, expiresAt};
+    }
+
+    /**
+     * @return number of consumed nonces remembered for replay protection
+     */
+    public long consumedSize() {
+        return guard.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        guard.close();
+    }
+
+    // HMAC-SHA256 over the body (version..random) and the kid
+    private byte[] mac(byte[] raw, String kid) {
+        Mac mac = macs.poll();
+        try {
+            if (mac == null) {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(macKey);
+            }
+            mac.update(raw, 0, BODY_LEN);
+            if (kid != null) mac.update(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] out = mac.doFinal(); // doFinal resets the Mac for reuse
+            macs.offer(mac);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded execution stage for CPU-bound verification work, kept off the Netty event loop.
+ * <p>
+ * The backing scheduler is selected by {@code verifier.verify.executor}:
+ * {@code parallel} (a fixed pool sized by {@code verifier.verify.parallelism}, defaults to the
+ * number of cores) or {@code virtual} (one virtual thread per task). At most
+ * {@code verifier.verify.max.in.flight} tasks may be running or queued; beyond that, work is
+ * refused immediately so callers can answer 503 instead of piling up latency.
+ */
+@Component
+public class VerificationStage {
+    private static final Logger log = LogManager.getLogger(VerificationStage.class);
+    private final Scheduler scheduler;
+    private final int parallelism;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Autowired
+    public VerificationStage(@Value("${verifier.verify.executor:parallel}") String executor,
+                             @Value("${verifier.verify.parallelism:0}") int parallelism,
+                             @Value("${verifier.verify.max.in.flight:1024}") int maxInFlight) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxInFlight = maxInFlight;
+        this.scheduler = switch (executor) {
+            case "parallel" -> Schedulers.newParallel("verify", this.parallelism, true);
+            case "virtual" -> Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "verify-vt");
+            default -> throw new IllegalArgumentException("Unknown verifier.verify.executor: " + executor);
+        };
+        log.info("Verification stage: executor={}, parallelism={}, maxInFlight={}", executor, this.parallelism, maxInFlight);
+    }
+
+    /**
+     * Create a stage on an existing scheduler.
+     *
+     * @param scheduler   the scheduler to run work on
+     * @param maxInFlight maximum number of running plus queued tasks
+     */
+    public VerificationStage(Scheduler scheduler, int maxInFlight) {
+        this.scheduler = scheduler;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Run work on the stage, or answer with the fallback right away if the stage is full.
+     *
+     * @param work        the work to run
+     * @param onSaturated produces the result when no capacity is left
+     * @param <T>         result type
+     * @return Mono of the result
+     */
+    public <T> Mono<T> submit(Callable<T> work, Supplier<T> onSaturated) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) return Mono.fromSupplier(onSaturated);
+            return Mono.fromCallable(work)
+                    .subscribeOn(scheduler)
+                    .doFinally(s -> inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Run work on the stage once an asynchronous step has completed, or answer with the
+     * fallback right away if the stage is full. The slot is taken before the step starts and
+     * held until the work is done, but no worker waits for the step.
+     *
+     * @param step        the asynchronous step, e.g. a remote call
+     * @param work        the work to run on the step's result
+     * @param onSaturated produces the result when no capacity is left
+     * @param <U>         result type of the step
+     * @param <T>         result type
+     * @return Mono of the result
+     */
+    public <U, T> Mono<T> submitAfter(Mono<U> step, Function<U, T> work, Supplier<T> onSaturated) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) return Mono.fromSupplier(onSaturated);
+            return step.publishOn(scheduler)
+                    .map(work)
+                    .doFinally(s -> inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * @return number of workers doing verification in parallel
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return tasks currently running or queued
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return tasks waiting for a worker (approximate)
+     */
+    public int queueDepth() {
+        return Math.max(0, inFlight.get() - parallelism);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.dispose();
+    }
+
+    private boolean tryAcquire() {
+        for (int n; (n = inFlight.get()) < maxInFlight; ) {
+            if (inFlight.compareAndSet(n, n + 1)) return true;
+        }
+        return false;
+    }
+}
@@ -1,91 +1,304 @@
 package com.assessment.spruceid.verifier.service.impl;
 
+import com.assessment.spruceid.verifier.audit.AuditLog;
+import com.assessment.spruceid.verifier.cluster.ClusterRouter;
+import com.assessment.spruceid.verifier.crypto.EcdsaSignatureCheck;
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.crypto.SignatureVerifierPool;
 import com.assessment.spruceid.verifier.dto.VerifyRequest;
 import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers.Phase;
+import com.assessment.spruceid.verifier.metrics.SignatureVerificationEvent;
 import com.assessment.spruceid.verifier.service.NonceService;
+import com.assessment.spruceid.verifier.service.Rejection;
 import com.assessment.spruceid.verifier.service.VerifyService;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import com.assessment.spruceid.verifier.utils.Base64Util;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
-import java.security.Signature;
 import java.security.interfaces.ECPublicKey;
-import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
 
 @Service
 public class VerifyServiceImpl implements VerifyService {
-    private static final Logger log = LogManager.getLogger(VerifyServiceImpl.class);
     private final NonceService nonceService;
-    private final ECPublicKey verifierPublicKey;
+    private final ClusterRouter cluster;
+    private final KeyRegistry keys;
+    private final SignatureVerifierPool verifiers;
+    private final VerificationStage stage;
+    private final int batchMaxItems;
+    private final int batchConcurrency;
+    private final int streamConcurrency;
+    private final PhaseTimers phases;
+    private final AuditLog audit;
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder[] rejections = new LongAdder[Rejection.values().length];
 
-    public VerifyServiceImpl(NonceService nonceService, ECPublicKey verifierPublicKey) {
+    public VerifyServiceImpl(NonceService nonceService, KeyRegistry keys,
+                             SignatureVerifierPool verifiers, VerificationStage stage,
+                             int batchMaxItems, int batchConcurrency, int streamConcurrency) {
+        this(nonceService, ClusterRouter.standalone(), keys, verifiers, stage,
+                batchMaxItems, batchConcurrency, streamConcurrency);
+    }
+
+    public VerifyServiceImpl(NonceService nonceService, ClusterRouter cluster, KeyRegistry keys,
+                             SignatureVerifierPool verifiers, VerificationStage stage,
+                             int batchMaxItems, int batchConcurrency, int streamConcurrency) {
+        this(nonceService, cluster, keys, verifiers, stage, PhaseTimers.noop(),
+                batchMaxItems, batchConcurrency, streamConcurrency);
+    }
+
+    public VerifyServiceImpl(NonceService nonceService, ClusterRouter cluster, KeyRegistry keys,
+                             SignatureVerifierPool verifiers, VerificationStage stage, PhaseTimers phases,
+                             int batchMaxItems, int batchConcurrency, int streamConcurrency) {
+        this(nonceService, cluster, keys, verifiers, stage, phases, AuditLog.noop(),
+                batchMaxItems, batchConcurrency, streamConcurrency);
+    }
+
+    @Autowired
+    public VerifyServiceImpl(NonceService nonceService, ClusterRouter cluster, KeyRegistry keys,
+                             SignatureVerifierPool verifiers, VerificationStage stage, PhaseTimers phases,
+                             AuditLog audit,
+                             @Value("${verifier.verify.batch.max.items:1000}") int batchMaxItems,
+                             @Value("${verifier.verify.batch.concurrency:0}") int batchConcurrency,
+                             @Value("${verifier.verify.stream.concurrency:0}") int streamConcurrency) {
         this.nonceService = nonceService;
-        this.verifierPublicKey = verifierPublicKey;
+        this.cluster = cluster;
+        this.keys = keys;
+        this.verifiers = verifiers;
+        this.stage = stage;
+        this.phases = phases;
+        this.audit = audit;
+        this.batchMaxItems = batchMaxItems;
+        this.batchConcurrency = batchConcurrency > 0 ? batchConcurrency : stage.parallelism();
+        this.streamConcurrency = streamConcurrency > 0 ? streamConcurrency : stage.parallelism();
+        for (int i = 0; i < rejections.length; i++) rejections[i] = new LongAdder();
     }
 
     /**
      * Verify the signature over the nonce using the trusted public key.
-     * Body: { "nonce": "...", "sigBase64Url": "..." }
+     * Body: { "nonce": "...", "sigBase64Url": "...", "kid": "..." }
      * Steps:
-     * 1. Check nonce freshness and consume it (prevents replay).
-     * 2. Verify ECDSA signature over EXACT ASCII: nonce, using pre-installed public key.
+     * 1. Resolve the holder key by kid (default key when absent).
+     * 2. Check the signature encoding, DER structure, length and r/s range.
+     * 3. Check that the nonce is outstanding, fresh and bound to the key, without consuming it.
+     * 4. Verify ECDSA signature over EXACT ASCII: nonce, using the holder's public key.
+     * 5. Consume the nonce (prevents replay), whatever the outcome of step 4.
+     * <p>
+     * Steps 1-3 are cheap and run on the calling thread: a proof that fails them is answered
+     * at once, without curve arithmetic, without taking a {@link VerificationStage} slot and
+     * without spending the nonce. Steps 4-5 run on the stage, never on the event loop. When
+     * the stage is saturated the request is answered with 503 without touching the nonce.
+     * <p>
+     * A nonce issued by another node of the cluster skips step 3 and is consumed on that node
+     * before step 4; the signature is then checked here once the answer is back.
+     * <p>
+     * Each step is timed as a {@link PhaseTimers} phase, and step 4 is also a
+     * {@link SignatureVerificationEvent} for JFR recordings. Every outcome is counted and
+     * handed to the {@link AuditLog}, which samples it and writes it off the request path.
      *
      * @param req VerifyRequest
      * @return Mono of ResponseEntity<VerifyResponse>
      */
     @Override
     public Mono<ResponseEntity<VerifyResponse>> verify(VerifyRequest req) {
-        try {
-            if (req == null || req.getNonce() == null || req.getSigBase64Url() == null)
-                throw new IllegalArgumentException("Invalid request: missing required fields.");
-
-            log.info("Received request: {}", req);
-            // Validate & consume nonce first (replay protection)
-            if (!nonceService.validateAndConsume(req.getNonce())) {
-                return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(VerifyResponse.builder()
-                                .verified(false)
-                                .message("The nonce is invalid or has already been consumed.")
-                                .build()));
-            }
+        boolean local = req == null || req.getNonce() == null || cluster.isLocal(req.getNonce());
+        return switch (precheck(req, local)) {
+            case Refused refused -> Mono.just(refused.response());
+            case Proof proof when local -> stage.submit(
+                    () -> verifyNow(proof, nonceService::validateAndConsume, true), () -> saturated(proof));
+            case Proof proof -> stage.submitAfter(consumeOnIssuer(proof),
+                    fresh -> verifyNow(proof, (nonce, kid) -> fresh, false), () -> saturated(proof));
+        };
+    }
 
+    /**
+     * @return number of proofs verified since startup
+     */
+    public long verified() {
+        return verified.sum();
+    }
+
+    /**
+     * @param reason why proofs were rejected
+     * @return number of proofs rejected for that reason since startup
+     */
+    public long rejections(Rejection reason) {
+        return rejections[reason.ordinal()].sum();
+    }
+
+    /**
+     * Verify many proofs in one call.
+     * Body: [ { "nonce": "...", "sigBase64Url": "..." }, ... ]
+     * Items fan out over the {@link VerificationStage} and are checked exactly like
+     * {@link #verify}; results come back in request order. A failing item only affects
+     * its own result.
+     *
+     * @param reqs the proofs, at most verifier.verify.batch.max.items
+     * @return Mono of ResponseEntity with one VerifyResponse per item
+     */
+    @Override
+    public Mono<ResponseEntity<List<VerifyResponse>>> verifyBatch(List<VerifyRequest> reqs) {
+        if (reqs == null || reqs.isEmpty() || reqs.size() > batchMaxItems)
+            return Mono.just(ResponseEntity.badRequest().body(List.of(VerifyResponse.builder()
+                    .verified(false)
+                    .message("Invalid request: a batch must hold between 1 and " + batchMaxItems + " items.")
+                    .build())));
+
+        // by index: a JSON null item must still produce its own result
+        return Flux.range(0, reqs.size())
+                .flatMapSequential(i -> verify(reqs.get(i)).map(ResponseEntity::getBody), batchConcurrency)
+                .collectList()
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Verify a continuous stream of proofs.
+     * Each result is emitted as soon as its verification completes, so results may come
+     * back out of order; every result echoes the nonce it belongs to. At most
+     * verifier.verify.stream.concurrency proofs are in flight and no more are requested
+     * from upstream until one completes (backpressure).
+     *
+     * @param reqs the proofs
+     * @return Flux of VerifyResponse, one per proof
+     */
+    @Override
+    public Flux<VerifyResponse> verifyStream(Flux<VerifyRequest> reqs) {
+        return reqs.flatMap(req -> verify(req).map(r -> VerifyResponse.builder()
+                .verified(r.getBody().isVerified())
+                .message(r.getBody().getMessage())
+                .nonce(req.getNonce())
+                .build()), streamConcurrency);
+    }
+
+    // Steps 1-3 of verify: everything that needs no curve arithmetic and leaves the nonce alone.
+    private Checked precheck(VerifyRequest req, boolean local) {
+        if (req == null || req.getNonce() == null || req.getSigBase64Url() == null)
+            return refuse(Rejection.MISSING_FIELDS, req == null ? null : req.getKid(), req == null ? null : req.getNonce(),
+                    HttpStatus.BAD_REQUEST, "Invalid request: missing required fields.");
+
+        long t = phases.start();
+        String kid = req.getKid() == null || req.getKid().isEmpty() ? keys.defaultKid() : req.getKid();
+        ECPublicKey key = keys.get(kid);
+        if (key == null)
+            return refuse(Rejection.UNKNOWN_KID, kid, req.getNonce(), HttpStatus.BAD_REQUEST, "Invalid request: Unknown kid: " + kid);
+
+        // base64url or standard base64 (+,/)
+        byte[] sigDer = Base64Util.decodeFlexible(req.getSigBase64Url());
+        if (sigDer == null)
+            return refuse(Rejection.SIGNATURE_ENCODING, kid, req.getNonce(), HttpStatus.BAD_REQUEST, "Invalid request: signature is not valid base64.");
+        EcdsaSignatureCheck.Defect defect = EcdsaSignatureCheck.check(sigDer, key.getParams().getOrder());
+        if (defect != null) {
+            Rejection reason = switch (defect) {
+                case LENGTH -> Rejection.SIGNATURE_LENGTH;
+                case STRUCTURE -> Rejection.SIGNATURE_STRUCTURE;
+                case RANGE -> Rejection.SIGNATURE_RANGE;
+            };
+            return refuse(reason, kid, req.getNonce(), HttpStatus.BAD_REQUEST, "Invalid request: malformed signature.");
+        }
+        t = phases.lap(Phase.BASE64_DECODE, t);
+
+        if (local) {
+            boolean outstanding = nonceService.isOutstanding(req.getNonce(), kid);
+            t = phases.lap(Phase.NONCE_LOOKUP, t);
+            if (!outstanding)
+                return refuse(Rejection.UNKNOWN_NONCE, kid, req.getNonce(), HttpStatus.UNAUTHORIZED, VerifyResponse.NONCE_REJECTED);
+        }
+        return new Proof(req.getNonce(), kid, key, sigDer, t);
+    }
+
+    // Step 5 for a nonce issued by a peer, timed as the consume phase.
+    private Mono<Boolean> consumeOnIssuer(Proof proof) {
+        return Mono.defer(() -> {
+            long t = phases.start();
+            return cluster.consume(proof.nonce(), proof.kid()).doOnNext(fresh -> phases.lap(Phase.CONSUME, t));
+        });
+    }
+
+    // Steps 4-5 of verify. A local proof is timed from the end of the pre-checks, so the wait
+    // for a stage thread shows as the queue phase.
+    private ResponseEntity<VerifyResponse> verifyNow(Proof proof, BiPredicate<String, String> consume, boolean local) {
+        long t = local ? phases.lap(Phase.QUEUE, proof.checkedAt()) : phases.start();
+        SignatureVerificationEvent event = new SignatureVerificationEvent();
+        try {
             // Verify ECDSA signature over ASCII "nonce" with ES256
-            byte[] msg = req.getNonce().getBytes(StandardCharsets.US_ASCII);
-            byte[] sigDer = decodeB64Flexible(req.getSigBase64Url());
+            byte[] msg = proof.nonce().getBytes(StandardCharsets.US_ASCII);
+            event.begin();
+            boolean ok = verifiers.verify(proof.key(), msg, proof.sigDer());
+            event.end();
+            t = phases.lap(Phase.SIGNATURE, t);
 
-            Signature s = Signature.getInstance("SHA256withECDSA");
-            s.initVerify(verifierPublicKey);
-            s.update(msg);
-            boolean ok = s.verify(sigDer);
+            // Consume the nonce on either outcome: a nonce is good for one attempt (replay protection)
+            boolean consumed = consume.test(proof.nonce(), proof.kid());
+            if (local) phases.lap(Phase.CONSUME, t);
+            if (!consumed) {
+                count(Rejection.NONCE_REJECTED);
+                audit.rejected(Rejection.NONCE_REJECTED, proof.kid(), proof.nonce(), null);
+                event.report(proof.kid(), Rejection.NONCE_REJECTED.outcome(), !local);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(VerifyResponse.rejected(VerifyResponse.NONCE_REJECTED));
+            }
             if (!ok) {
-                return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(VerifyResponse.builder()
-                                .verified(false)
-                                .message("Signature verification failed.")
-                                .build()));
+                count(Rejection.SIGNATURE_INVALID);
+                audit.rejected(Rejection.SIGNATURE_INVALID, proof.kid(), proof.nonce(), null);
+                event.report(proof.kid(), Rejection.SIGNATURE_INVALID.outcome(), !local);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(VerifyResponse.rejected(VerifyResponse.SIGNATURE_REJECTED));
             }
 
-            return Mono.just(ResponseEntity.ok(new VerifyResponse(true, null)));
+            verified.increment();
+            audit.verified(proof.kid(), proof.nonce());
+            event.report(proof.kid(), "verified", !local);
+            return ResponseEntity.ok(VerifyResponse.verified());
 
         } catch (Exception e) {
-            log.error("Request processing failed.", e);
-            return Mono.just(ResponseEntity.badRequest()
+            count(Rejection.ERROR);
+            audit.rejected(Rejection.ERROR, proof.kid(), proof.nonce(), e);
+            event.report(proof.kid(), Rejection.ERROR.outcome(), !local);
+            return ResponseEntity.badRequest()
                     .body(VerifyResponse.builder()
                             .verified(false)
                             .message("Request processing failed. Invalid request: " + e.getMessage())
-                            .build()));
+                            .build());
         }
     }
 
-    private static byte[] decodeB64Flexible(String s) {
-        try {
-            return Base64.getUrlDecoder().decode(s);   // works if holder sends base64url
-        } catch (IllegalArgumentException ignore) {
-            return Base64.getDecoder().decode(s);      // fallback for standard base64 (+,/)
-        }
+    private Refused refuse(Rejection reason, String kid, String nonce, HttpStatus status, String message) {
+        count(reason);
+        audit.rejected(reason, kid, nonce, null);
+        if (status == HttpStatus.BAD_REQUEST) message = "Request processing failed. " + message;
+        return new Refused(ResponseEntity.status(status).body(VerifyResponse.rejected(message)));
+    }
+
+    private void count(Rejection reason) {
+        rejections[reason.ordinal()].increment();
+    }
+
+    private ResponseEntity<VerifyResponse> saturated(Proof proof) {
+        count(Rejection.BUSY);
+        audit.rejected(Rejection.BUSY, proof.kid(), proof.nonce(), null);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(VerifyResponse.rejected(VerifyResponse.BUSY));
+    }
+
+    private sealed interface Checked permits Proof, Refused {
+    }
+
+    // a proof that passed the cheap checks
+    private record Proof(String nonce, String kid, ECPublicKey key, byte[] sigDer, long checkedAt) implements Checked {
+    }
+
+    private record Refused(ResponseEntity<VerifyResponse> response) implements Checked {
     }
 }
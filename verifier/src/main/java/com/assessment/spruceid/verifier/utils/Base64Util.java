@@ -0,0 +1,104 @@
+package com.assessment.spruceid.verifier.utils;
+
+import java.util.Arrays;
+
+public final class Base64Util {
+    private static final byte[] URL = new byte[128];
+    // both alphabets: '-' and '+' are 62, '_' and '/' are 63
+    private static final byte[] ANY = new byte[128];
+
+    static {
+        Arrays.fill(URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) URL[alphabet.charAt(i)] = (byte) i;
+        System.arraycopy(URL, 0, ANY, 0, URL.length);
+        ANY['+'] = 62;
+        ANY['/'] = 63;
+    }
+
+    private Base64Util() {
+    }
+
+    /**
+     * Whether a string is the canonical unpadded base64url encoding of exactly {@code bytes}
+     * bytes: right length, URL-safe alphabet only, unused trailing bits zero. Canonical form
+     * matters where the decoded bytes are used as a key, so that one value has one spelling.
+     *
+     * @param s     the encoded string
+     * @param bytes the expected decoded length
+     * @return true if {@link #readLong} may be used on it
+     */
+    public static boolean isCanonicalUrl(CharSequence s, int bytes) {
+        int len = (bytes * 8 + 5) / 6;
+        if (s == null || s.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 128 || URL[c] < 0) return false;
+        }
+        int unused = len * 6 - bytes * 8;
+        return (URL[s.charAt(len - 1)] & ((1 << unused) - 1)) == 0;
+    }
+
+    /**
+     * Decode base64 in either alphabet (base64url or standard, so holders may send either),
+     * padded or not, in one pass. Invalid input is reported by the return value rather than
+     * an exception, as it is an expected outcome for request data.
+     *
+     * @param s the encoded string
+     * @return the decoded bytes, or null if s is null or not valid base64
+     */
+    public static byte[] decodeFlexible(CharSequence s) {
+        if (s == null) return null;
+        int len = s.length();
+        int end = len;
+        if (end > 0 && s.charAt(end - 1) == '=') end--;
+        if (end > 0 && s.charAt(end - 1) == '=') end--;
+        // padding, when present, must complete the last quantum
+        if (end != len && len % 4 != 0) return null;
+        if (end % 4 == 1) return null;
+        byte[] out = new byte[end * 6 / 8];
+        int i = 0, o = 0;
+        // whole quanta: 4 characters to 3 bytes; an invalid character makes v negative
+        for (int full = end & ~3; i < full; i += 4) {
+            int v = any(s.charAt(i)) << 18 | any(s.charAt(i + 1)) << 12
+                    | any(s.charAt(i + 2)) << 6 | any(s.charAt(i + 3));
+            if (v < 0) return null;
+            out[o++] = (byte) (v >> 16);
+            out[o++] = (byte) (v >> 8);
+            out[o++] = (byte) v;
+        }
+        if (i < end) {
+            // 2 or 3 characters left: 1 or 2 bytes
+            int v = any(s.charAt(i)) << 18 | any(s.charAt(i + 1)) << 12
+                    | (i + 2 < end ? any(s.charAt(i + 2)) << 6 : 0);
+            if (v < 0) return null;
+            out[o++] = (byte) (v >> 16);
+            if (i + 2 < end) out[o] = (byte) (v >> 8);
+        }
+        return out;
+    }
+
+    private static int any(char c) {
+        return c < 128 ? ANY[c] : -1;
+    }
+
+    /**
+     * Decode 8 bytes (big-endian) of an unpadded base64url string without allocating.
+     * The string must have been checked with {@link #isCanonicalUrl}.
+     *
+     * @param s          the encoded string
+     * @param byteOffset offset of the first byte in the decoded data
+     * @return the decoded long
+     */
+    public static long readLong(CharSequence s, int byteOffset) {
+        int bit = byteOffset * 8;
+        int c = bit / 6;
+        int skip = bit % 6;
+        long v = URL[s.charAt(c++)] & ((1 << (6 - skip)) - 1);
+        int n = 6 - skip;
+        for (; n + 6 <= 64; n += 6) v = (v << 6) | URL[s.charAt(c++)];
+        int rest = 64 - n;
+        if (rest > 0) v = (v << rest) | (URL[s.charAt(c)] >>> (6 - rest));
+        return v;
+    }
+}
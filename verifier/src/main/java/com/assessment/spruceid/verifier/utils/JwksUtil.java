@@ -0,0 +1,76 @@
+package com.assessment.spruceid.verifier.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class JwksUtil {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ECParameterSpec P256 = p256();
+
+    private JwksUtil() {
+    }
+
+    /**
+     * Read the P-256 EC keys of a JWKS document: { "keys": [ { "kty": "EC", "crv": "P-256",
+     * "kid": "...", "x": "...", "y": "..." }, ... ] }. Keys of other types are skipped.
+     *
+     * @param in the input stream containing the JWKS JSON
+     * @return kid to ECPublicKey
+     * @throws Exception if the document or one of its EC keys is invalid
+     */
+    public static Map<String, ECPublicKey> readEcPublicKeys(InputStream in) throws Exception {
+        JsonNode keys = MAPPER.readTree(in).path("keys");
+        if (!keys.isArray()) throw new IllegalArgumentException("JWKS has no \"keys\" array");
+
+        var kf = KeyFactory.getInstance("EC");
+        Map<String, ECPublicKey> out = new HashMap<>(keys.size() * 2);
+        for (JsonNode jwk : keys) {
+            if (!"EC".equals(jwk.path("kty").asText()) || !"P-256".equals(jwk.path("crv").asText())) continue;
+            String kid = jwk.path("kid").asText(null);
+            if (kid == null || kid.isEmpty()) throw new IllegalArgumentException("JWK without kid");
+            ECPoint w = new ECPoint(coordinate(jwk, "x"), coordinate(jwk, "y"));
+            if (!onCurve(w)) throw new IllegalArgumentException("JWK " + kid + " is not a P-256 point");
+            out.put(kid, (ECPublicKey) kf.generatePublic(new ECPublicKeySpec(w, P256)));
+        }
+        return out;
+    }
+
+    private static BigInteger coordinate(JsonNode jwk, String name) {
+        String v = jwk.path(name).asText(null);
+        if (v == null) throw new IllegalArgumentException("JWK missing \"" + name + "\"");
+        return new BigInteger(1, Base64.getUrlDecoder().decode(v));
+    }
+
+    // y^2 = x^3 + ax + b (mod p)
+    private static boolean onCurve(ECPoint w) {
+        BigInteger p = ((ECFieldFp) P256.getCurve().getField()).getP();
+        BigInteger x = w.getAffineX(), y = w.getAffineY();
+        if (x.signum() < 0 || x.compareTo(p) >= 0 || y.signum() < 0 || y.compareTo(p) >= 0) return false;
+        BigInteger rhs = x.pow(3).add(P256.getCurve().getA().multiply(x)).add(P256.getCurve().getB()).mod(p);
+        return y.modPow(BigInteger.TWO, p).equals(rhs);
+    }
+
+    private static ECParameterSpec p256() {
+        try {
+            AlgorithmParameters params = AlgorithmParameters.getInstance("EC");
+            params.init(new ECGenParameterSpec("secp256r1"));
+            return params.getParameterSpec(ECParameterSpec.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("P-256 parameters unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.assessment.spruceid.verifier.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client token buckets in a fixed-size table, with no locks on the admission path.
+ * <p>
+ * Each bucket is kept in the GCRA form: a single "theoretical arrival time" that advances
+ * by one emission interval (1 / rate) per token taken. A request is admitted while that
+ * time stays within {@code burst} intervals of now, which is exactly a bucket of
+ * {@code burst} tokens refilled at {@code rate} per second. Taking tokens is one CAS on
+ * the bucket, retried only when two requests of the same client race.
+ * <p>
+ * Buckets live in an open-addressed table with a short probe sequence, so memory is
+ * bounded by the table size however many clients show up. A bucket that has fully
+ * refilled holds no state a fresh one would not, so it is replaced freely by a new
+ * client. Only when every probed slot belongs to a client that is still draining is one
+ * evicted: the one closest to full. That client starts over with a full bucket, so under
+ * more active clients than slots the limit becomes approximate, never stricter.
+ */
+public final class RateLimiter {
+    private static final int PROBES = 4;
+
+    private final AtomicReferenceArray<Bucket> table;
+    private final int mask;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int burst;
+    private final LongSupplier nanoClock;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param ratePerSecond tokens added to each bucket per second
+     * @param burst         bucket capacity, i.e. requests a quiet client may send at once
+     * @param tableSize     bucket slots, rounded up to a power of two
+     */
+    public RateLimiter(double ratePerSecond, int burst, int tableSize) {
+        this(ratePerSecond, burst, tableSize, System::nanoTime);
+    }
+
+    RateLimiter(double ratePerSecond, int burst, int tableSize, LongSupplier nanoClock) {
+        if (!(ratePerSecond > 0)) throw new IllegalArgumentException("rate must be positive");
+        if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+        if (tableSize < PROBES) throw new IllegalArgumentException("tableSize must be at least " + PROBES);
+        int n = Integer.highestOneBit(tableSize * 2 - 1);
+        this.table = new AtomicReferenceArray<>(n);
+        this.mask = n - 1;
+        this.intervalNanos = Math.max(1, Math.round(1e9 / ratePerSecond));
+        this.toleranceNanos = intervalNanos * burst;
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Take tokens from a client's bucket.
+     *
+     * @param key  the client
+     * @param cost tokens the request needs, at least one
+     * @return 0 when admitted, otherwise nanoseconds until the request would be admitted, or
+     * {@link Long#MAX_VALUE} if it costs more than the burst and never will be
+     */
+    public long acquire(String key, int cost) {
+        if (cost > burst) {
+            rejected.increment();
+            return Long.MAX_VALUE;
+        }
+        long charge = intervalNanos * Math.max(cost, 1);
+        long now = nanoClock.getAsLong();
+        Bucket b = bucket(key, now);
+        while (true) {
+            long tat = b.get();
+            long next = Math.max(tat, now) + charge;
+            long wait = next - now - toleranceNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (b.compareAndSet(tat, next)) return 0;
+        }
+    }
+
+    /**
+     * @return requests refused since startup
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return buckets of still-draining clients dropped to make room for another client
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of bucket slots
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private Bucket bucket(String key, long now) {
+        int home = spread(key.hashCode());
+        int victim = home & mask;
+        long victimTat = Long.MAX_VALUE;
+        for (int p = 0; p < PROBES; p++) {
+            int i = (home + p) & mask;
+            Bucket b = table.get(i);
+            if (b != null && b.key.equals(key)) return b;
+            long tat = b == null ? Long.MIN_VALUE : b.get();
+            if (tat <= now) {
+                // empty, or full again: nothing is lost by taking the slot
+                Bucket fresh = new Bucket(key, now);
+                if (table.compareAndSet(i, b, fresh)) return fresh;
+                b = table.get(i);
+                if (b != null && b.key.equals(key)) return b;
+                continue;
+            }
+            if (tat < victimTat) {
+                victim = i;
+                victimTat = tat;
+            }
+        }
+        Bucket fresh = new Bucket(key, now);
+        table.set(victim, fresh);
+        evictions.increment();
+        return fresh;
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    // theoretical arrival time of the client's next request, in nanoTime
+    private static final class Bucket extends AtomicLong {
+        private final String key;
+
+        Bucket(String key, long now) {
+            super(now);
+            this.key = key;
+        }
+    }
+}
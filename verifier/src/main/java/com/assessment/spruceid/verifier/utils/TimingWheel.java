@@ -0,0 +1,204 @@
+package com.assessment.spruceid.verifier.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hierarchical timing wheel that fires a callback once an item's deadline has passed.
+ * <p>
+ * Any thread may {@link #schedule} items; they go through a lock-free intake queue and are
+ * placed into the wheel by the single thread that calls {@link #advance}. Each level has
+ * {@value #SLOTS} slots and every level covers {@value #SLOTS} times the span of the one below,
+ * so insertion, cascading and expiry are amortized O(1) per item and nothing ever scans the
+ * full set. Slot buffers are reused between rotations to keep allocation off the sweep path.
+ *
+ * @param <T> the scheduled item type
+ */
+public final class TimingWheel<T> implements AutoCloseable {
+    private static final int BITS = 9;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final ToLongFunction<T> deadline;
+    private final Predicate<T> onExpire;
+    private final ConcurrentLinkedQueue<T> intake = new ConcurrentLinkedQueue<>();
+    private final Bucket[][] wheels = new Bucket[LEVELS][SLOTS];
+    private Bucket scratch = new Bucket();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile long lastSweepNanos;
+    private volatile long maxSweepNanos;
+    private long currentTick;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Create a wheel. Nothing advances it until {@link #start} is called or {@link #advance}
+     * is invoked explicitly.
+     *
+     * @param tickMillis resolution of the wheel in milliseconds
+     * @param deadline   extracts the epoch-millis deadline of an item
+     * @param onExpire   invoked on the wheel thread for each item whose deadline has passed;
+     *                   returns false if the item had already been removed (e.g. consumed),
+     *                   so that it is not counted as expired
+     */
+    public TimingWheel(long tickMillis, ToLongFunction<T> deadline, Predicate<T> onExpire) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        this.tickMillis = tickMillis;
+        this.deadline = deadline;
+        this.onExpire = onExpire;
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        for (Bucket[] level : wheels)
+            for (int i = 0; i < SLOTS; i++) level[i] = new Bucket();
+    }
+
+    /**
+     * Start a daemon thread that advances the wheel once per tick.
+     *
+     * @param threadName name of the background thread
+     * @return this wheel
+     */
+    public synchronized TimingWheel<T> start(String threadName) {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                return t;
+            });
+            ticker.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()),
+                    tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Register an item for expiry. Safe to call from any thread.
+     *
+     * @param item the item to schedule
+     */
+    public void schedule(T item) {
+        pending.incrementAndGet();
+        intake.offer(item);
+    }
+
+    /**
+     * Move the wheel forward to the given time, firing the callback for every item whose
+     * deadline lies in a fully elapsed tick.
+     *
+     * @param nowMillis current epoch millis
+     */
+    public synchronized void advance(long nowMillis) {
+        long start = System.nanoTime();
+        for (T item; (item = intake.poll()) != null; ) place(item);
+
+        long target = nowMillis / tickMillis;
+        while (currentTick < target) {
+            cascade();
+            Bucket b = wheels[0][(int) (currentTick & MASK)];
+            for (int i = 0; i < b.size; i++) fire(b.take(i));
+            b.size = 0;
+            currentTick++;
+        }
+
+        long took = System.nanoTime() - start;
+        lastSweepNanos = took;
+        if (took > maxSweepNanos) maxSweepNanos = took;
+    }
+
+    /**
+     * @return items scheduled and not yet expired
+     */
+    public long pending() {
+        return pending.get();
+    }
+
+    /**
+     * @return items expired since creation that were still live at their deadline
+     */
+    public long expired() {
+        return expired.get();
+    }
+
+    /**
+     * @return duration of the most recent sweep in nanoseconds
+     */
+    public long lastSweepNanos() {
+        return lastSweepNanos;
+    }
+
+    /**
+     * @return longest sweep observed in nanoseconds
+     */
+    public long maxSweepNanos() {
+        return maxSweepNanos;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) ticker.shutdownNow();
+    }
+
+    // When the current tick starts a new block of a higher level, re-place that block's items lower down.
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) return;
+            // swap the slot with the scratch bucket: items may be re-placed into the same slot
+            int slot = (int) ((currentTick >>> (BITS * level)) & MASK);
+            Bucket b = wheels[level][slot];
+            wheels[level][slot] = scratch;
+            scratch = b;
+            for (int i = 0; i < b.size; i++) place(b.take(i));
+            b.size = 0;
+        }
+    }
+
+    private void place(T item) {
+        long ticks = deadline.applyAsLong(item) / tickMillis;
+        if (ticks < currentTick) {
+            fire(item);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * level;
+            if ((ticks >>> shift) - (currentTick >>> shift) < SLOTS) {
+                wheels[level][(int) ((ticks >>> shift) & MASK)].add(item);
+                return;
+            }
+        }
+        // beyond the top level: park in the furthest top slot, it is re-placed when cascaded
+        int shift = BITS * (LEVELS - 1);
+        wheels[LEVELS - 1][(int) (((currentTick >>> shift) + MASK) & MASK)].add(item);
+    }
+
+    private void fire(T item) {
+        pending.decrementAndGet();
+        if (onExpire.test(item)) expired.incrementAndGet();
+    }
+
+    private static final class Bucket {
+        private Object[] items = new Object[0];
+        private int size;
+
+        void add(Object item) {
+            if (size == items.length) {
+                Object[] grown = new Object[Math.max(8, size * 2)];
+                System.arraycopy(items, 0, grown, 0, size);
+                items = grown;
+            }
+            items[size++] = item;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T take(int i) {
+            T item = (T) items[i];
+            items[i] = null;
+            return item;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.assessment.spruceid.verifier.api;
+
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.dto.ConsumeRequest;
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.impl.NonceServiceImpl;
+import com.assessment.spruceid.verifier.service.impl.RespNonceStore;
+import com.assessment.spruceid.verifier.service.impl.RespStandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterControllerTest {
+    private final List<AutoCloseable> open = new ArrayList<>();
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable c : open.reversed()) c.close();
+    }
+
+    @Test
+    void consume_isSingleUse_onTheCallingThreadForAnInMemoryStore() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        open.add(service::close);
+        ClusterController controller = new ClusterController(service, keys());
+        Nonce nonce = service.issue("default");
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        assertTrue(controller.consume(new ConsumeRequest(nonce.getNonce(), "default"))
+                .doOnNext(b -> thread.set(Thread.currentThread().getName())).block());
+        assertEquals(Thread.currentThread().getName(), thread.get());
+        assertFalse(controller.consume(new ConsumeRequest(nonce.getNonce(), "default")).block());
+        assertFalse(controller.consume(new ConsumeRequest(nonce.getNonce(), "mallory")).block());
+    }
+
+    @Test
+    void slowRemoteStore_doesNotHoldTheCallingThread() throws Exception {
+        RespStandInServer server = new RespStandInServer();
+        open.add(server);
+        NonceServiceImpl service = new NonceServiceImpl(300,
+                new RespNonceStore("localhost", server.port(), 0, "", "nonce:", 5_000));
+        open.add(service::close);
+        ClusterController controller = new ClusterController(service, keys());
+        Nonce nonce = service.issue("default");
+        server.delay(500);
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> consumed = controller.consume(new ConsumeRequest(nonce.getNonce(), "default"))
+                .doOnNext(b -> thread.set(Thread.currentThread().getName())).toFuture();
+        long subscribing = System.nanoTime() - start;
+
+        // the caller, an RSocket event loop in the server, is back before the reply has arrived
+        assertTrue(subscribing < TimeUnit.MILLISECONDS.toNanos(250), "subscribing took " + subscribing + " ns");
+        assertTrue(consumed.get(10, TimeUnit.SECONDS));
+        assertTrue(thread.get().startsWith("boundedElastic"), thread.get());
+    }
+
+    private static KeyRegistry keys() throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec("secp256r1"));
+        return KeyRegistry.of("default", (ECPublicKey) gen.generateKeyPair().getPublic());
+    }
+}
@@ -1,12 +1,78 @@
 package com.assessment.spruceid.verifier.api;
 
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.dto.NonceResponse;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
+import com.assessment.spruceid.verifier.service.NonceService;
+import com.assessment.spruceid.verifier.service.impl.NonceServiceImpl;
+import com.assessment.spruceid.verifier.service.impl.RespNonceStore;
+import com.assessment.spruceid.verifier.service.impl.RespStandInServer;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class NonceControllerTest {
+    private final List<AutoCloseable> open = new ArrayList<>();
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable c : open.reversed()) c.close();
+    }
+
+    @Test
+    void getNonce() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        open.add(service::close);
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        NonceResponse nonce = controller(service).getNonce(null)
+                .doOnNext(n -> thread.set(Thread.currentThread().getName())).block();
+
+        assertEquals("default", nonce.getKid());
+        // an in-memory store is fast enough for the event loop
+        assertEquals(Thread.currentThread().getName(), thread.get());
+    }
 
     @Test
-    void getNonce() {
+    void slowRemoteStore_doesNotHoldTheCallingThread() throws Exception {
+        RespStandInServer server = new RespStandInServer();
+        open.add(server);
+        server.delay(500);
+        NonceServiceImpl service = new NonceServiceImpl(300,
+                new RespNonceStore("localhost", server.port(), 0, "", "nonce:", 5_000));
+        open.add(service::close);
+        NonceController controller = controller(service);
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        CompletableFuture<NonceResponse> one = controller.getNonce(null)
+                .doOnNext(n -> thread.set(Thread.currentThread().getName())).toFuture();
+        CompletableFuture<List<NonceResponse>> many = controller.getNonces(null, 5).toFuture();
+        CompletableFuture<List<NonceResponse>> streamed = controller.streamNonces(null, 20).collectList().toFuture();
+        long subscribing = System.nanoTime() - start;
+
+        // the caller, an event loop in the server, is back before the first reply has arrived
+        assertTrue(subscribing < TimeUnit.MILLISECONDS.toNanos(250), "subscribing took " + subscribing + " ns");
+        assertEquals("default", one.get(10, TimeUnit.SECONDS).getKid());
+        assertTrue(thread.get().startsWith("boundedElastic"), thread.get());
+        assertEquals(5, many.get(10, TimeUnit.SECONDS).size());
+        assertEquals(20, streamed.get(10, TimeUnit.SECONDS).size());
+    }
+
+    private static NonceController controller(NonceService service) throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyRegistry keys = KeyRegistry.of("default", (ECPublicKey) gen.generateKeyPair().getPublic());
+        return new NonceController(service, keys, PhaseTimers.noop(), 1000, 1000, 8);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,195 @@
+package com.assessment.spruceid.verifier.api;
+
+import com.assessment.spruceid.verifier.VerifierApplication;
+import com.assessment.spruceid.verifier.dto.NonceResponse;
+import com.assessment.spruceid.verifier.dto.NonceStreamRequest;
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The public RSocket routes against a running verifier with a default key and a second
+ * holder key, alice.
+ */
+class RSocketControllerTest {
+    private static ConfigurableApplicationContext app;
+    private static RSocketRequester requester;
+    private static PrivateKey defaultKey;
+    private static PrivateKey aliceKey;
+
+    @TempDir
+    static Path dir;
+
+    @BeforeAll
+    static void start() throws Exception {
+        KeyPair defaultPair = keyPair();
+        KeyPair alicePair = keyPair();
+        defaultKey = defaultPair.getPrivate();
+        aliceKey = alicePair.getPrivate();
+        Path pem = dir.resolve("pub.pem");
+        Files.writeString(pem, pem(defaultPair.getPublic()));
+        Path keys = Files.createDirectory(dir.resolve("keys"));
+        Files.writeString(keys.resolve("alice.pem"), pem(alicePair.getPublic()));
+
+        int port = freePort();
+        app = new SpringApplicationBuilder(VerifierApplication.class).run(
+                "--server.port=0",
+                "--spring.rsocket.server.port=" + port,
+                "--spring.devtools.restart.enabled=false",
+                "--VERIFIER_PUBKEY_PATH=" + pem,
+                "--verifier.keys.dir=" + keys,
+                "--nonce.issue.max.count=10");
+        requester = app.getBean(RSocketRequester.Builder.class).tcp("localhost", port);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (requester != null) requester.dispose();
+        if (app != null) app.close();
+    }
+
+    @Test
+    void issue_thenVerify_roundTrip() throws Exception {
+        NonceResponse nonce = requester.route("nonce.issue").retrieveMono(NonceResponse.class).block();
+        assertThat(nonce.getKid()).isEqualTo("default");
+
+        VerifyResponse result = requester.route("verify")
+                .data(signed(nonce.getNonce(), defaultKey, null))
+                .retrieveMono(VerifyResponse.class).block();
+        assertThat(result.isVerified()).isTrue();
+
+        // the nonce is spent
+        VerifyResponse replay = requester.route("verify")
+                .data(signed(nonce.getNonce(), defaultKey, null))
+                .retrieveMono(VerifyResponse.class).block();
+        assertThat(replay.isVerified()).isFalse();
+    }
+
+    @Test
+    void stream_withNonDefaultKid_feedsTheChannel() throws Exception {
+        List<NonceResponse> nonces = requester.route("nonce.stream")
+                .data(new NonceStreamRequest(5, "alice"))
+                .retrieveFlux(NonceResponse.class).collectList().block();
+        assertThat(nonces).hasSize(5).allSatisfy(n -> assertThat(n.getKid()).isEqualTo("alice"));
+
+        List<VerifyRequest> proofs = nonces.stream().map(n -> signed(n.getNonce(), aliceKey, "alice")).toList();
+        List<VerifyResponse> results = requester.route("verify.channel")
+                .data(Flux.fromIterable(proofs))
+                .retrieveFlux(VerifyResponse.class).collectList().block();
+
+        assertThat(results).hasSize(5).allSatisfy(r -> assertThat(r.isVerified()).isTrue());
+        assertThat(results).extracting(VerifyResponse::getNonce)
+                .containsExactlyInAnyOrderElementsOf(nonces.stream().map(NonceResponse::getNonce).toList());
+    }
+
+    @Test
+    void channel_reportsEachOutcomeAgainstItsNonce() throws Exception {
+        List<NonceResponse> nonces = requester.route("nonce.stream")
+                .data(new NonceStreamRequest(2, null))
+                .retrieveFlux(NonceResponse.class).collectList().block();
+        String good = nonces.get(0).getNonce();
+        String forged = nonces.get(1).getNonce();
+
+        List<VerifyRequest> proofs = List.of(
+                signed(good, defaultKey, null),
+                signed(forged, aliceKey, null), // signed with the wrong key
+                signed("never-issued", defaultKey, null));
+        Map<String, VerifyResponse> results = requester.route("verify.channel")
+                .data(Flux.fromIterable(proofs))
+                .retrieveFlux(VerifyResponse.class)
+                .collect(Collectors.toMap(VerifyResponse::getNonce, r -> r)).block();
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(good).isVerified()).isTrue();
+        assertThat(results.get(forged).isVerified()).isFalse();
+        assertThat(results.get(forged).getMessage()).isEqualTo(VerifyResponse.SIGNATURE_REJECTED);
+        assertThat(results.get("never-issued").isVerified()).isFalse();
+        assertThat(results.get("never-issued").getMessage()).isEqualTo(VerifyResponse.NONCE_REJECTED);
+    }
+
+    @Test
+    void stream_refusesCountsOutOfRange_andUnknownKids() {
+        for (int count : new int[]{0, 11})
+            StepVerifier.create(requester.route("nonce.stream")
+                            .data(new NonceStreamRequest(count, null))
+                            .retrieveFlux(NonceResponse.class))
+                    .expectErrorSatisfies(e -> assertThat(e).hasMessageContaining("count must be between 1 and 10"))
+                    .verify();
+
+        StepVerifier.create(requester.route("nonce.stream")
+                        .data(new NonceStreamRequest(1, "mallory"))
+                        .retrieveFlux(NonceResponse.class))
+                .expectErrorSatisfies(e -> assertThat(e).hasMessageContaining("Unknown kid: mallory"))
+                .verify();
+    }
+
+    @Test
+    void batch_returnsResultsInRequestOrder() throws Exception {
+        NonceResponse nonce = requester.route("nonce.issue").data("alice").retrieveMono(NonceResponse.class).block();
+        assertThat(nonce.getKid()).isEqualTo("alice");
+
+        List<VerifyResponse> results = requester.route("verify.batch")
+                .data(List.of(signed("never-issued", aliceKey, "alice"), signed(nonce.getNonce(), aliceKey, "alice")))
+                .retrieveFlux(VerifyResponse.class).collectList().block();
+
+        assertThat(results).extracting(VerifyResponse::isVerified).containsExactly(false, true);
+    }
+
+    private static VerifyRequest signed(String nonce, PrivateKey key, String kid) {
+        try {
+            Signature signer = Signature.getInstance("SHA256withECDSA");
+            signer.initSign(key);
+            signer.update(nonce.getBytes(StandardCharsets.US_ASCII));
+            return VerifyRequest.builder()
+                    .nonce(nonce)
+                    .sigBase64Url(Base64.getUrlEncoder().withoutPadding().encodeToString(signer.sign()))
+                    .kid(kid)
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static KeyPair keyPair() throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec("secp256r1"));
+        return gen.generateKeyPair();
+    }
+
+    private static String pem(PublicKey key) {
+        return "-----BEGIN PUBLIC KEY-----\n" + Base64.getMimeEncoder().encodeToString(key.getEncoded())
+                + "\n-----END PUBLIC KEY-----\n";
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.assessment.spruceid.verifier.audit;
+
+import com.assessment.spruceid.verifier.service.Rejection;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    @Test
+    void records_areWrittenAsJsonLines_byTheWriterThread() {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        AuditLog audit = new AuditLog(16, Map.of(), line -> {
+            lines.add(line.toString());
+            threads.add(Thread.currentThread().getName());
+        });
+
+        audit.verified("alice", "n1");
+        audit.rejected(Rejection.ERROR, "alice", "n2", new IllegalStateException("boom"));
+        audit.close();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"time\":\""));
+        assertTrue(lines.get(0).endsWith(",\"outcome\":\"verified\",\"kid\":\"alice\",\"nonce\":\"n1\"}"), lines.get(0));
+        assertTrue(lines.get(1).contains(",\"outcome\":\"error\",\"reason\":\"error\",\"kid\":\"alice\",\"nonce\":\"n2\""
+                + ",\"error\":\"java.lang.IllegalStateException: boom\",\"at\":\""), lines.get(1));
+        assertEquals(List.of("audit-writer", "audit-writer"), threads);
+        assertEquals(2, audit.written());
+    }
+
+    @Test
+    void fullRing_dropsAndCounts_withoutBlockingTheCaller() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AuditLog audit = new AuditLog(4, Map.of(), line -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        audit.verified("alice", "first");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) audit.verified("alice", "n" + i);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(6, audit.dropped());
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(1));
+        release.countDown();
+        audit.close();
+        assertEquals(5, audit.written());
+    }
+
+    @Test
+    void sampling_isPerOutcome() {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        AuditLog audit = new AuditLog(1024, Map.of("verified", 0.0, "malformed", 0.0, "bad-signature", 1.0),
+                line -> lines.add(line.toString()));
+
+        for (int i = 0; i < 100; i++) {
+            audit.verified("alice", "v" + i);
+            audit.rejected(Rejection.SIGNATURE_LENGTH, "alice", "m" + i, null);
+            audit.rejected(Rejection.SIGNATURE_INVALID, "alice", "s" + i, null);
+        }
+        audit.rejected(Rejection.UNKNOWN_KID, "mallory", "k", null);
+        audit.close();
+
+        assertEquals(101, lines.size());
+        assertEquals(100, lines.stream().filter(l -> l.contains("\"outcome\":\"bad-signature\"")).count());
+        assertTrue(lines.get(100).contains("\"outcome\":\"unknown-kid\""));
+        assertEquals(0, audit.dropped());
+    }
+
+    @Test
+    void fields_areEscapedAndCut() {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        AuditLog audit = new AuditLog(16, Map.of(), line -> lines.add(line.toString()));
+
+        audit.rejected(Rejection.UNKNOWN_KID, "a\"b\\c\nd\u0001", "x".repeat(500), null);
+        audit.close();
+
+        String line = lines.get(0);
+        assertTrue(line.contains("\"kid\":\"a\\\"b\\\\c\\nd\\u0001\""), line);
+        assertTrue(line.contains("\"nonce\":\"" + "x".repeat(128) + "...\""), line);
+    }
+
+    @Test
+    void fileSink_appendsLines() throws Exception {
+        Path file = Files.createTempFile("audit", ".jsonl");
+        try {
+            AuditLog audit = new AuditLog(16, Map.of(), AuditLog.Sink.file(file));
+            audit.verified("alice", "n1");
+            audit.rejected(Rejection.BUSY, "alice", "n2", null);
+            audit.close();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(1).contains("\"outcome\":\"busy\""));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void invalidSampling_isRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new AuditLog(16, Map.of("verfied", 0.5), line -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new AuditLog(16, Map.of("error", 2.0), line -> { }));
+    }
+
+    @Test
+    void noop_recordsNothing() {
+        AuditLog.noop().verified("alice", "n");
+        AuditLog.noop().close();
+        assertEquals(0, AuditLog.noop().written());
+    }
+}
@@ -0,0 +1,81 @@
+package com.assessment.spruceid.verifier.cluster;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterRouterTest {
+
+    @Test
+    void owner_isTheFirstByteOfA32ByteNonce() {
+        assertThat(ClusterRouter.owner(nonce(0))).isZero();
+        assertThat(ClusterRouter.owner(nonce(7))).isEqualTo(7);
+        assertThat(ClusterRouter.owner(nonce(255))).isEqualTo(255);
+        assertThat(ClusterRouter.owner("short")).isEqualTo(-1);
+        assertThat(ClusterRouter.owner(null)).isEqualTo(-1);
+    }
+
+    @Test
+    void isLocal_onlyForNoncesOfThisNodeOrUnknownNodes() {
+        ClusterRouter router = new ClusterRouter(1, Map.of(1, answering(true), 2, answering(true)), Duration.ofSeconds(1));
+
+        assertThat(router.isLocal(nonce(1))).isTrue();
+        assertThat(router.isLocal(nonce(2))).isFalse();
+        assertThat(router.isLocal(nonce(3))).isTrue();
+        assertThat(router.isLocal("not-a-nonce")).isTrue();
+    }
+
+    @Test
+    void consume_asksTheOwnerWithTheKidAsPresented() {
+        List<String> calls = new ArrayList<>();
+        ClusterRouter.Peer peer = (nonce, kid) -> {
+            calls.add(nonce + "/" + kid);
+            return Mono.just(true);
+        };
+        ClusterRouter router = new ClusterRouter(0, Map.of(2, peer), Duration.ofSeconds(1));
+        String n = nonce(2);
+
+        StepVerifier.create(router.consume(n, null)).expectNext(true).verifyComplete();
+        assertThat(calls).containsExactly(n + "/null");
+        assertThat(router.forwarded()).isEqualTo(1);
+    }
+
+    @Test
+    void consume_rejectsWhenThePeerFailsOrIsSlow() {
+        ClusterRouter.Peer failing = (nonce, kid) -> Mono.error(new IllegalStateException("connection refused"));
+        ClusterRouter.Peer slow = (nonce, kid) -> Mono.never();
+        ClusterRouter router = new ClusterRouter(0, Map.of(1, failing, 2, slow), Duration.ofMillis(50));
+
+        StepVerifier.create(router.consume(nonce(1), "k")).expectNext(false).verifyComplete();
+        StepVerifier.create(router.consume(nonce(2), "k")).expectNext(false).verifyComplete();
+        assertThat(router.failures()).isEqualTo(2);
+    }
+
+    @Test
+    void consume_isLazy() {
+        ClusterRouter router = new ClusterRouter(0, Map.of(1, answering(true)), Duration.ofSeconds(1));
+
+        router.consume(nonce(1), null);
+        assertThat(router.forwarded()).isZero();
+    }
+
+    private static ClusterRouter.Peer answering(boolean result) {
+        return (nonce, kid) -> Mono.just(result);
+    }
+
+    private static String nonce(int node) {
+        byte[] b = new byte[32];
+        new Random(node).nextBytes(b);
+        b[0] = (byte) node;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+}
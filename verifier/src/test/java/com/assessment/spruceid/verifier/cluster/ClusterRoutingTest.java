@@ -0,0 +1,189 @@
+package com.assessment.spruceid.verifier.cluster;
+
+import com.assessment.spruceid.verifier.VerifierApplication;
+import com.assessment.spruceid.verifier.dto.ConsumeRequest;
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.NonceService;
+import com.assessment.spruceid.verifier.service.VerifyService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.security.rsocket.metadata.SimpleAuthenticationEncoder;
+import org.springframework.security.rsocket.metadata.UsernamePasswordMetadata;
+import org.springframework.util.MimeTypeUtils;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Three verifier nodes in one JVM, each with its own RSocket port and peers list. Nonces are
+ * issued on one node and redeemed on another.
+ */
+class ClusterRoutingTest {
+    private static final int NODES = 3;
+    private static final String SECRET = "test-cluster-secret";
+    private static final int[] ports = new int[NODES];
+    private static final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private static PrivateKey holderKey;
+
+    @TempDir
+    static Path dir;
+
+    @BeforeAll
+    static void startNodes() throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair pair = gen.generateKeyPair();
+        holderKey = pair.getPrivate();
+        Path pem = dir.resolve("pub.pem");
+        Files.writeString(pem, "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(pair.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n");
+
+        for (int i = 0; i < NODES; i++) ports[i] = freePort();
+        for (int i = 0; i < NODES; i++) {
+            int self = i;
+            String peers = IntStream.range(0, NODES).filter(j -> j != self)
+                    .mapToObj(j -> j + "=localhost:" + ports[j])
+                    .collect(Collectors.joining(","));
+            nodes.add(new SpringApplicationBuilder(VerifierApplication.class).run(
+                    "--server.port=0",
+                    "--spring.rsocket.server.port=" + ports[i],
+                    "--spring.devtools.restart.enabled=false",
+                    "--VERIFIER_PUBKEY_PATH=" + pem,
+                    "--cluster.node.id=" + i,
+                    "--cluster.peers=" + peers,
+                    "--cluster.secret=" + SECRET));
+        }
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void nonceIssuedOnOneNode_isRedeemedOnceOnAnyNode() throws Exception {
+        for (int issuer = 0; issuer < NODES; issuer++) {
+            for (int verifier = 0; verifier < NODES; verifier++) {
+                Nonce nonce = node(issuer, NonceService.class).issue("default");
+                assertThat(ClusterRouter.owner(nonce.getNonce())).isEqualTo(issuer);
+                VerifyRequest req = signed(nonce.getNonce());
+
+                assertThat(verify(verifier, req)).as("issued on %d, verified on %d", issuer, verifier)
+                        .isEqualTo(HttpStatus.OK);
+                // a replay is rejected wherever it is sent
+                for (int replay = 0; replay < NODES; replay++)
+                    assertThat(verify(replay, req)).isEqualTo(HttpStatus.UNAUTHORIZED);
+            }
+        }
+        assertThat(node(1, ClusterRouter.class).forwarded()).isPositive();
+        assertThat(node(1, ClusterRouter.class).failures()).isZero();
+    }
+
+    @Test
+    void unknownKid_isRefusedWithoutSpendingTheNonce() throws Exception {
+        Nonce nonce = node(0, NonceService.class).issue("default");
+        VerifyRequest req = signed(nonce.getNonce());
+        req.setKid("someone-else");
+
+        // neither node knows the kid: the owner leaves the nonce alone, the verifying node answers 400
+        assertThat(verify(2, req)).isEqualTo(HttpStatus.BAD_REQUEST);
+        req.setKid(null);
+        assertThat(verify(1, req)).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void clusterRoute_refusesCallersWithoutTheSecret() throws Exception {
+        Nonce nonce = node(0, NonceService.class).issue("default");
+        ConsumeRequest consume = new ConsumeRequest(nonce.getNonce(), "default");
+
+        // a public client: no credentials
+        RSocketRequester anonymous = node(0, RSocketRequester.Builder.class).tcp("localhost", ports[0]);
+        try {
+            StepVerifier.create(anonymous.route("cluster.nonce.consume").data(consume).retrieveMono(Boolean.class))
+                    .expectErrorSatisfies(e -> assertThat(e).hasMessageContaining("Access Denied"))
+                    .verify();
+            // the public routes stay open on the same connection
+            assertThat(anonymous.route("nonce.issue").retrieveMono(String.class).block()).isNotBlank();
+        } finally {
+            anonymous.dispose();
+        }
+
+        // a caller guessing the secret is refused at setup
+        RSocketRequester guessing = peer("guess").tcp("localhost", ports[0]);
+        try {
+            assertThatThrownBy(() -> guessing.route("cluster.nonce.consume").data(consume)
+                    .retrieveMono(Boolean.class).block()).hasMessageContaining("Invalid cluster credentials");
+        } finally {
+            guessing.dispose();
+        }
+
+        // the nonce was not burned
+        assertThat(verify(1, signed(nonce.getNonce()))).isEqualTo(HttpStatus.OK);
+
+        Nonce other = node(0, NonceService.class).issue("default");
+        RSocketRequester cluster = peer(SECRET).tcp("localhost", ports[0]);
+        try {
+            assertThat(cluster.route("cluster.nonce.consume").data(new ConsumeRequest(other.getNonce(), "default"))
+                    .retrieveMono(Boolean.class).block()).isTrue();
+        } finally {
+            cluster.dispose();
+        }
+    }
+
+    private static RSocketRequester.Builder peer(String secret) {
+        return node(0, RSocketRequester.Builder.class)
+                .rsocketStrategies(s -> s.encoder(new SimpleAuthenticationEncoder()))
+                .setupMetadata(new UsernamePasswordMetadata("cluster-peer", secret),
+                        MimeTypeUtils.parseMimeType(WellKnownMimeType.MESSAGE_RSOCKET_AUTHENTICATION.getString()));
+    }
+
+    private static HttpStatus verify(int node, VerifyRequest req) {
+        return HttpStatus.valueOf(node(node, VerifyService.class).verify(req).block().getStatusCode().value());
+    }
+
+    private static <T> T node(int i, Class<T> type) {
+        return nodes.get(i).getBean(type);
+    }
+
+    private static VerifyRequest signed(String nonce) throws Exception {
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(holderKey);
+        signer.update(nonce.getBytes(StandardCharsets.US_ASCII));
+        return VerifyRequest.builder()
+                .nonce(nonce)
+                .sigBase64Url(Base64.getUrlEncoder().withoutPadding().encodeToString(signer.sign()))
+                .build();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
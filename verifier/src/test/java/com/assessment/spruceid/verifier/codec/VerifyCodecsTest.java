@@ -0,0 +1,83 @@
+package com.assessment.spruceid.verifier.codec;
+
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerifyCodecsTest {
+    private static final ResolvableType REQUEST = ResolvableType.forClass(VerifyRequest.class);
+    private static final ResolvableType RESPONSE = ResolvableType.forClass(VerifyResponse.class);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DefaultDataBufferFactory buffers = DefaultDataBufferFactory.sharedInstance;
+    private final VerifyRequestDecoder decoder = new VerifyRequestDecoder(new Jackson2JsonDecoder(mapper), 256 * 1024);
+    private final VerifyResponseEncoder encoder = new VerifyResponseEncoder(new Jackson2JsonEncoder(mapper), r -> {
+        try {
+            return mapper.writeValueAsBytes(r);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Test
+    void decoder_readsSimpleAndFallbackBodiesAlike() {
+        StepVerifier.create(decode("{\"nonce\":\"n\",\"sigBase64Url\":\"s\",", "\"kid\":\"k\"}"))
+                .assertNext(r -> assertThat(r).isEqualTo(VerifyRequest.builder().nonce("n").sigBase64Url("s").kid("k").build()))
+                .verifyComplete();
+        // escapes and nested values go to Jackson
+        StepVerifier.create(decode("{\"nonce\":\"\\u006e\",\"extra\":{\"a\":[1]},\"sigBase64Url\":\"s\"}"))
+                .assertNext(r -> assertThat(r).isEqualTo(VerifyRequest.builder().nonce("n").sigBase64Url("s").build()))
+                .verifyComplete();
+        StepVerifier.create(decode("{\"nonce\":")).verifyError(DecodingException.class);
+    }
+
+    @Test
+    void decoder_onlyTakesSingleJsonRequests() {
+        assertThat(decoder.canDecode(REQUEST, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(decoder.canDecode(REQUEST, MediaType.APPLICATION_NDJSON)).isFalse();
+        assertThat(decoder.canDecode(ResolvableType.forClass(Object.class), MediaType.APPLICATION_JSON)).isFalse();
+    }
+
+    @Test
+    void encoder_writesFixedOutcomesAsJacksonWould() throws Exception {
+        for (VerifyResponse r : VerifyResponse.fixedOutcomes()) {
+            assertThat(encoder.body(r)).isNotNull();
+            assertThat(encode(r)).isEqualTo(mapper.writeValueAsString(r));
+        }
+        VerifyResponse other = VerifyResponse.rejected("Request processing failed. Invalid request: x");
+        assertThat(encoder.body(other)).isNull();
+        assertThat(encode(other)).isEqualTo(mapper.writeValueAsString(other));
+        assertThat(encoder.canEncode(RESPONSE, MediaType.APPLICATION_NDJSON)).isFalse();
+    }
+
+    private Mono<VerifyRequest> decode(String... chunks) {
+        Flux<DataBuffer> body = Flux.fromArray(chunks).map(c -> buffers.wrap(c.getBytes(StandardCharsets.UTF_8)));
+        return decoder.decodeToMono(body, REQUEST, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    private String encode(VerifyResponse r) {
+        DataBuffer b = encoder.encodeValue(r, buffers, RESPONSE, MediaType.APPLICATION_JSON, Map.of());
+        try {
+            return b.toString(StandardCharsets.UTF_8);
+        } finally {
+            DataBufferUtils.release(b);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.assessment.spruceid.verifier.codec;
+
+import com.assessment.spruceid.verifier.dto.VerifyRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifyRequestReaderTest {
+
+    @Test
+    void read_simpleBodies() {
+        VerifyRequest req = read("{\"nonce\":\"abc-_\",\"sigBase64Url\":\"MEQC+/==\",\"kid\":\"holder-42\"}");
+        assertEquals("abc-_", req.getNonce());
+        assertEquals("MEQC+/==", req.getSigBase64Url());
+        assertEquals("holder-42", req.getKid());
+
+        req = read(" \r\n{ \"sigBase64Url\" : \"s\" ,\t\"nonce\":\"n\" }\n");
+        assertEquals("n", req.getNonce());
+        assertEquals("s", req.getSigBase64Url());
+        assertNull(req.getKid());
+
+        req = read("{\"nonce\":null,\"kid\":\"a\",\"kid\":\"b\"}");
+        assertNull(req.getNonce());
+        assertEquals("b", req.getKid());
+
+        assertNull(read("{}").getNonce());
+    }
+
+    @Test
+    void read_skipsUnknownScalarFields() {
+        VerifyRequest req = read("{\"x\":\"a\\\"b\",\"n\":-1.5e+3,\"t\":true,\"z\":null,\"nonce\":\"n\",\"zero\":0}");
+        assertEquals("n", req.getNonce());
+    }
+
+    @Test
+    void read_leavesEverythingElseToTheGeneralDecoder() {
+        assertNull(read(""));
+        assertNull(read("null"));
+        assertNull(read("[]"));
+        assertNull(read("{\"nonce\":\"a\\u0062\"}"));
+        assertNull(read("{\"nonce\":\"é\"}"));
+        assertNull(read("{\"non\\u0063e\":\"a\"}"));
+        assertNull(read("{\"nonce\":1}"));
+        assertNull(read("{\"nonce\":\"a\"} x"));
+        assertNull(read("{\"nonce\":\"a\",}"));
+        assertNull(read("{\"nonce\":\"a\""));
+        assertNull(read("{\"nonce\":\"a"));
+        assertNull(read("{\"nonce\":nul}"));
+        assertNull(read("{\"nonce\":nullx}"));
+        assertNull(read("{\"x\":{\"y\":1}}"));
+        assertNull(read("{\"x\":[1]}"));
+        assertNull(read("{\"x\":01}"));
+        assertNull(read("{\"x\":+1}"));
+        assertNull(read("{\"x\":1.}"));
+        assertNull(read("{\"x\":NaN}"));
+        assertNull(read("{\"x\":\"tab\there\"}"));
+    }
+
+    @Test
+    void read_worksOnDirectBuffersAndLeavesThePositionAlone() {
+        byte[] body = "xx{\"nonce\":\"n\"}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(body.length).put(body).flip().position(2);
+        assertEquals("n", VerifyRequestReader.read(direct).getNonce());
+        assertEquals(2, direct.position());
+
+        ByteBuffer slice = ByteBuffer.wrap(body, 2, body.length - 2).slice();
+        assertEquals("n", VerifyRequestReader.read(slice).getNonce());
+    }
+
+    private static VerifyRequest read(String json) {
+        return VerifyRequestReader.read(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
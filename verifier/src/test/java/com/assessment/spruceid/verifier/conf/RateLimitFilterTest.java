@@ -0,0 +1,171 @@
+package com.assessment.spruceid.verifier.conf;
+
+import com.assessment.spruceid.verifier.VerifierApplication;
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.utils.RateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitFilterTest {
+    private static final KeyRegistry keys = registry("alice", "bob");
+    private final AtomicInteger passed = new AtomicInteger();
+    private final WebFilterChain chain = exchange -> {
+        passed.incrementAndGet();
+        return Mono.empty();
+    };
+
+    @Test
+    void overBudget_isAnswered429_withoutReachingTheHandler() {
+        RateLimitFilter filter = new RateLimitFilter("address", keys, new RateLimiter(1, 2, 64), new RateLimiter(1, 2, 64));
+
+        assertThat(run(filter, get("/api/nonce/issue", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        MockServerWebExchange refused = run(filter, get("/api/nonce/issue", "10.0.0.1"));
+
+        assertThat(refused.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(refused.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(passed).hasValue(2);
+        assertThat(filter.rejected()).isEqualTo(1);
+
+        // another client, and the verify budget of the same client, are untouched
+        assertThat(run(filter, get("/api/nonce/issue", "10.0.0.2")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, post("/api/verify", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(passed).hasValue(4);
+    }
+
+    @Test
+    void bulkIssue_costsItsCount() {
+        RateLimitFilter filter = new RateLimitFilter("address", keys, new RateLimiter(1, 10, 64), new RateLimiter(1, 10, 64));
+
+        assertThat(run(filter, get("/api/nonce/issue?count=8", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue?count=3", "10.0.0.1")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // a malformed count costs one and is left for the controller to refuse
+        assertThat(run(filter, get("/api/nonce/issue?count=x", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+    }
+
+    @Test
+    void streamAboveTheBurst_isRefusedOutright() {
+        RateLimitFilter filter = new RateLimitFilter("address", keys, new RateLimiter(1, 10, 64), new RateLimiter(1, 10, 64));
+
+        MockServerWebExchange refused = run(filter, get("/api/nonce/issue/stream?count=100000", "10.0.0.1"));
+        assertThat(refused.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // waiting would not help
+        assertThat(refused.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNull();
+        assertThat(run(filter, get("/api/nonce/issue?count=11", "10.0.0.1")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(passed).hasValue(0);
+
+        // the refusals cost nothing: a stream of exactly the burst still goes through, once
+        assertThat(run(filter, get("/api/nonce/issue/stream?count=10", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue/stream?count=1", "10.0.0.1")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(passed).hasValue(1);
+    }
+
+    @Test
+    void kidKey_separatesClientsBehindOneAddress() {
+        RateLimitFilter filter = new RateLimitFilter("kid", keys, new RateLimiter(1, 1, 64), new RateLimiter(1, 1, 64));
+
+        assertThat(run(filter, get("/api/nonce/issue?kid=alice", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue?kid=bob", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue?kid=alice", "10.0.0.1")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void kidKey_unknownKids_areChargedToTheAddress() {
+        RateLimitFilter filter = new RateLimitFilter("kid", keys, new RateLimiter(1, 2, 64), new RateLimiter(1, 2, 64));
+
+        assertThat(run(filter, get("/api/nonce/issue?kid=mallory1", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue?kid=mallory2", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        // a fresh made-up kid is no fresh budget, and neither is leaving it out
+        assertThat(run(filter, get("/api/nonce/issue?kid=mallory3", "10.0.0.1")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(run(filter, get("/api/nonce/issue", "10.0.0.1")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // a registered kid from the same address still has its own
+        assertThat(run(filter, get("/api/nonce/issue?kid=alice", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+    }
+
+    @Test
+    void kidKey_spoofedKid_doesNotSpendTheHoldersBudget() {
+        RateLimitFilter filter = new RateLimitFilter("kid", keys, new RateLimiter(1, 2, 64), new RateLimiter(1, 2, 64));
+
+        for (int i = 0; i < 5; i++) run(filter, get("/api/nonce/issue?kid=alice", "10.6.6.6"));
+        assertThat(run(filter, get("/api/nonce/issue?kid=alice", "10.6.6.6")).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        assertThat(run(filter, get("/api/nonce/issue?kid=alice", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(run(filter, get("/api/nonce/issue?kid=alice", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+    }
+
+    @Test
+    void otherPaths_areNotLimited() {
+        RateLimitFilter filter = new RateLimitFilter("address", keys, new RateLimiter(1, 1, 64), new RateLimiter(1, 1, 64));
+        for (int i = 0; i < 5; i++)
+            assertThat(run(filter, get("/actuator/health", "10.0.0.1")).getResponse().getStatusCode()).isNull();
+        assertThat(passed).hasValue(5);
+    }
+
+    @Test
+    void enabled_isWiredIntoTheApplication() {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(VerifierApplication.class).run(
+                "--server.port=0",
+                "--spring.rsocket.server.port=0",
+                "--spring.devtools.restart.enabled=false",
+                "--verifier.ratelimit.enabled=true",
+                "--verifier.ratelimit.key=kid")) {
+            assertThat(app.getBean(RateLimitFilter.class).rejected()).isZero();
+        }
+    }
+
+    @Test
+    void unknownKeyMode_isRejected() {
+        assertThatThrownBy(() -> new RateLimitFilter("header", keys, new RateLimiter(1, 1, 64), new RateLimiter(1, 1, 64)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private MockServerWebExchange run(RateLimitFilter filter, MockServerHttpRequest request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+        return exchange;
+    }
+
+    private static MockServerHttpRequest get(String uri, String address) {
+        return MockServerHttpRequest.get(uri).remoteAddress(new InetSocketAddress(address, 40000)).build();
+    }
+
+    private static KeyRegistry registry(String... kids) {
+        try {
+            KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+            gen.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyRegistry registry = new KeyRegistry(kids[0]);
+            for (String kid : kids) registry.put(kid, (ECPublicKey) gen.generateKeyPair().getPublic());
+            return registry;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockServerHttpRequest post(String uri, String address) {
+        return MockServerHttpRequest.post(uri).remoteAddress(new InetSocketAddress(address, 40000)).build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+import static com.assessment.spruceid.verifier.crypto.EcdsaSignatureCheck.Defect.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EcdsaSignatureCheckTest {
+
+    @Test
+    void check_passesRealSignatures() throws Exception {
+        for (String curve : new String[]{"secp256r1", "secp384r1", "secp521r1"}) {
+            KeyPair pair = pair(curve);
+            BigInteger n = ((ECPublicKey) pair.getPublic()).getParams().getOrder();
+            Signature signer = Signature.getInstance("SHA256withECDSA");
+            signer.initSign(pair.getPrivate());
+            for (int i = 0; i < 300; i++) {
+                signer.update(("nonce-" + i).getBytes());
+                byte[] sig = signer.sign();
+                assertNull(EcdsaSignatureCheck.check(sig, n), curve + " signature " + i);
+            }
+        }
+    }
+
+    @Test
+    void check_findsEachDefect() throws Exception {
+        BigInteger n = ((ECPublicKey) pair("secp256r1").getPublic()).getParams().getOrder();
+        byte[] one = {1};
+
+        assertEquals(LENGTH, EcdsaSignatureCheck.check(null, n));
+        assertEquals(LENGTH, EcdsaSignatureCheck.check(new byte[7], n));
+        assertEquals(LENGTH, EcdsaSignatureCheck.check(new byte[73], n));
+
+        assertNull(EcdsaSignatureCheck.check(der(one, one), n));
+        assertNull(EcdsaSignatureCheck.check(der(n.subtract(BigInteger.ONE).toByteArray(), one), n));
+        assertEquals(RANGE, EcdsaSignatureCheck.check(der(new byte[]{0}, one), n));
+        assertEquals(RANGE, EcdsaSignatureCheck.check(der(one, n.toByteArray()), n));
+        assertEquals(RANGE, EcdsaSignatureCheck.check(der(one, n.add(BigInteger.ONE).toByteArray()), n));
+
+        // negative, non-minimal zero padding, wrong tags, trailing bytes, bad lengths
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(der(new byte[]{(byte) 0x80}, one), n));
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(der(new byte[]{0, 1}, one), n));
+        byte[] sig = der(one, one);
+        sig[0] = 0x31;
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(sig, n));
+        sig = der(one, one);
+        sig[2] = 0x03;
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(sig, n));
+        sig = Arrays.copyOf(der(one, one), 9);
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(sig, n));
+        sig[1] = 7;
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(sig, n));
+        sig = der(one, one);
+        sig[3] = 5;
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(sig, n));
+        sig = der(new byte[34], one);
+        assertEquals(STRUCTURE, EcdsaSignatureCheck.check(sig, n));
+    }
+
+    @Test
+    void check_agreesWithTheProviderOnMutatedSignatures() throws Exception {
+        KeyPair pair = pair("secp256r1");
+        BigInteger n = ((ECPublicKey) pair.getPublic()).getParams().getOrder();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(pair.getPrivate());
+        signer.update("nonce".getBytes());
+        byte[] good = signer.sign();
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        for (int i = 0; i < good.length; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte[] sig = good.clone();
+                sig[i] ^= (byte) (1 << bit);
+                if (EcdsaSignatureCheck.check(sig, n) == null) continue;
+                verifier.initVerify(pair.getPublic());
+                verifier.update("nonce".getBytes());
+                boolean verified;
+                try {
+                    verified = verifier.verify(sig);
+                } catch (Exception e) {
+                    verified = false;
+                }
+                assertFalse(verified, "byte " + i + " bit " + bit);
+            }
+        }
+    }
+
+    private static KeyPair pair(String curve) throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec(curve));
+        return gen.generateKeyPair();
+    }
+
+    private static byte[] der(byte[] r, byte[] s) {
+        byte[] out = new byte[6 + r.length + s.length];
+        out[0] = 0x30;
+        out[1] = (byte) (4 + r.length + s.length);
+        out[2] = 0x02;
+        out[3] = (byte) r.length;
+        System.arraycopy(r, 0, out, 4, r.length);
+        out[4 + r.length] = 0x02;
+        out[5 + r.length] = (byte) s.length;
+        System.arraycopy(s, 0, out, 6 + r.length, s.length);
+        return out;
+    }
+}
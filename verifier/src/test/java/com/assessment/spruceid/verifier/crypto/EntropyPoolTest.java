@@ -0,0 +1,55 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntropyPoolTest {
+
+    @Test
+    void concurrentClaims_neverHandOutTheSameBytes() throws Exception {
+        EntropyPool pool = new EntropyPool(2, 1024, "DRBG");
+        Set<ByteBuffer> seen = ConcurrentHashMap.newKeySet();
+        int threads = 8, perThread = 5_000;
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) exec.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    byte[] b = new byte[16];
+                    pool.nextBytes(b, 0, 16);
+                    seen.add(ByteBuffer.wrap(b));
+                }
+            });
+        } finally {
+            exec.shutdown();
+            assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        assertEquals(threads * perThread, seen.size());
+        // 40k claims of 16 bytes from 1 KiB blocks: many block switches
+        assertTrue(pool.refills() + pool.misses() > 100, "refills " + pool.refills() + ", misses " + pool.misses());
+    }
+
+    @Test
+    void nextBytes_fillsOnlyTheRequestedRange() {
+        EntropyPool pool = new EntropyPool(1, 1024, "DRBG");
+        byte[] b = new byte[48];
+        pool.nextBytes(b, 8, 32);
+        for (int i = 0; i < 8; i++) assertEquals(0, b[i]);
+        for (int i = 40; i < 48; i++) assertEquals(0, b[i]);
+    }
+
+    @Test
+    void invalidSettings_areRejected() {
+        EntropyPool pool = new EntropyPool(1, 1024, "DRBG");
+        assertThrows(IllegalArgumentException.class, () -> pool.nextBytes(new byte[512], 0, 512));
+        assertThrows(IllegalArgumentException.class, () -> new EntropyPool(1, 512, "DRBG"));
+        assertThrows(IllegalArgumentException.class, () -> new EntropyPool(1, 1024, "NoSuchRandom"));
+    }
+}
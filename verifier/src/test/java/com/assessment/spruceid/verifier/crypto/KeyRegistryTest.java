@@ -0,0 +1,58 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyRegistryTest {
+
+    @Test
+    void requireKid_resolvesDefaultAndRejectsUnknown() throws Exception {
+        KeyRegistry registry = KeyRegistry.of("default", newKey());
+
+        assertEquals("default", registry.requireKid(null));
+        assertEquals("default", registry.requireKid(""));
+        assertThrows(IllegalArgumentException.class, () -> registry.requireKid("nobody"));
+    }
+
+    @Test
+    void replace_swapsSnapshotAndReportsRemovedKeys() throws Exception {
+        ECPublicKey a = newKey(), b = newKey(), c = newKey();
+        KeyRegistry registry = new KeyRegistry("a");
+        List<ECPublicKey> removed = new ArrayList<>();
+        registry.onRemoved(removed::add);
+        registry.replace(Map.of("a", a, "b", b));
+
+        registry.replace(Map.of("a", a, "c", c));
+
+        assertSame(a, registry.get(null));
+        assertNull(registry.get("b"));
+        assertSame(c, registry.get("c"));
+        assertEquals(List.of(b), removed);
+    }
+
+    @Test
+    void put_addsKeyWithoutDisturbingOthers() throws Exception {
+        ECPublicKey a = newKey(), b = newKey();
+        KeyRegistry registry = KeyRegistry.of("a", a);
+
+        registry.put("b", b);
+
+        assertEquals(2, registry.size());
+        assertSame(a, registry.get("a"));
+        assertSame(b, registry.get("b"));
+    }
+
+    private static ECPublicKey newKey() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        return (ECPublicKey) keyGen.generateKeyPair().getPublic();
+    }
+}
@@ -0,0 +1,104 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import com.assessment.spruceid.verifier.utils.PemUtil;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteKeySourceTest {
+    private HttpServer server;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final List<Map<String, ECPublicKey>> updates = new ArrayList<>();
+    private ECPublicKey key;
+    private RemoteKeySource source;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        key = (ECPublicKey) keyGen.generateKeyPair().getPublic();
+        byte[] pem = ("-----BEGIN PUBLIC KEY-----\n" + Base64.getMimeEncoder().encodeToString(key.getEncoded())
+                + "\n-----END PUBLIC KEY-----\n").getBytes(StandardCharsets.US_ASCII);
+
+        // local stand-in for a key server: serves the PEM with an ETag and honours If-None-Match
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/pub.pem", exchange -> {
+            if (status.get() != 200) {
+                exchange.sendResponseHeaders(status.get(), -1);
+            } else if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, pem.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(pem);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/pub.pem");
+        source = new RemoteKeySource(WebClient.create(), uri,
+                body -> Map.of("default", PemUtil.readEcPublicKeyFromPem(new ByteArrayInputStream(body))),
+                Duration.ofMinutes(5), updates::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        source.close();
+        server.stop(0);
+    }
+
+    @Test
+    void refresh_loadsKeysThenRevalidatesWithEtag() {
+        assertEquals(Boolean.TRUE, source.refresh().block(Duration.ofSeconds(5)));
+        assertEquals(key, source.current().get("default"));
+
+        assertEquals(Boolean.FALSE, source.refresh().block(Duration.ofSeconds(5)));
+        assertEquals(1, notModified.get());
+        assertEquals(1, updates.size());
+        assertNotNull(source.validatedAt());
+    }
+
+    @Test
+    void refresh_failureKeepsLastGoodKeys() {
+        source.refresh().block(Duration.ofSeconds(5));
+        status.set(503);
+
+        assertThrows(IllegalStateException.class, () -> source.refresh().block(Duration.ofSeconds(5)));
+        assertEquals(key, source.current().get("default"));
+        assertEquals(1, updates.size());
+    }
+
+    @Test
+    void start_fetchesInTheBackground() throws Exception {
+        source.start();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (source.current().isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+
+        assertEquals(key, source.current().get("default"));
+    }
+}
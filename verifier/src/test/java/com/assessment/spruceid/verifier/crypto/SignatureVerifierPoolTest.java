@@ -0,0 +1,57 @@
+package com.assessment.spruceid.verifier.crypto;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureVerifierPoolTest {
+    private final SignatureVerifierPool pool = new SignatureVerifierPool();
+    private KeyPair keyPair;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = keyGen.generateKeyPair();
+    }
+
+    @Test
+    void verify_reusesInstanceAcrossValidAndInvalidSignatures() throws Exception {
+        ECPublicKey key = (ECPublicKey) keyPair.getPublic();
+        byte[] sig = sign("nonce-1");
+
+        assertTrue(pool.verify(key, ascii("nonce-1"), sig));
+        assertFalse(pool.verify(key, ascii("nonce-2"), sig));
+        assertTrue(pool.verify(key, ascii("nonce-1"), sig));
+        assertEquals(1, pool.idle(key));
+    }
+
+    @Test
+    void verify_dropsInstanceThatThrew() throws Exception {
+        ECPublicKey key = (ECPublicKey) keyPair.getPublic();
+
+        assertThrows(SignatureException.class, () -> pool.verify(key, ascii("nonce"), new byte[]{1, 2, 3}));
+        assertEquals(0, pool.idle(key));
+        assertTrue(pool.verify(key, ascii("nonce"), sign("nonce")));
+    }
+
+    private byte[] sign(String msg) throws Exception {
+        Signature signer = Signature.getInstance(SignatureVerifierPool.ALGORITHM);
+        signer.initSign(keyPair.getPrivate());
+        signer.update(ascii(msg));
+        return signer.sign();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
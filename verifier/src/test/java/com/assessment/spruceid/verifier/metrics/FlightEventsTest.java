@@ -0,0 +1,125 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import com.assessment.spruceid.verifier.service.impl.NonceServiceImpl;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightEventsTest {
+
+    @Test
+    void nonceLifecycle_isRecorded() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        List<RecordedEvent> events = record(() -> {
+            Nonce nonce = service.issue("alice");
+            service.issue("alice", 3);
+            assertTrue(service.validateAndConsume(nonce.getNonce(), "alice"));
+            assertFalse(service.validateAndConsume(nonce.getNonce(), "alice"));
+            assertFalse(service.isOutstanding("unknown", "alice"));
+        });
+        service.close();
+
+        List<RecordedEvent> issued = named(events, "NonceIssued");
+        assertEquals(2, issued.size());
+        assertEquals("alice", issued.get(0).getString("kid"));
+        assertEquals(1, issued.get(0).getInt("count"));
+        assertEquals(3, issued.get(1).getInt("count"));
+        assertEquals(1, named(events, "NonceConsumed").size());
+        List<RecordedEvent> rejected = named(events, "NonceRejected");
+        assertEquals(List.of("consume", "lookup"), rejected.stream().map(e -> e.getString("check")).toList());
+    }
+
+    @Test
+    void expiry_isReportedPerPeriod() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(0, 16, 10);
+        List<RecordedEvent> events = record(() -> {
+            service.issue("alice", 5);
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (service.expiredCount() < 5 && System.nanoTime() < deadline) Thread.sleep(10);
+            Thread.sleep(300);
+        });
+        service.close();
+
+        List<RecordedEvent> expiry = named(events, "NonceExpiry");
+        assertFalse(expiry.isEmpty());
+        assertEquals(5, expiry.stream().mapToLong(e -> e.getLong("expired")).sum());
+        assertEquals(0, expiry.get(expiry.size() - 1).getLong("outstanding"));
+    }
+
+    @Test
+    void signatureVerification_spansTheVerifyAndCarriesTheOutcome() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            SignatureVerificationEvent event = new SignatureVerificationEvent();
+            event.begin();
+            Thread.sleep(2);
+            event.end();
+            event.report("alice", "bad-signature", true);
+        });
+
+        List<RecordedEvent> verifications = named(events, "SignatureVerification");
+        assertEquals(1, verifications.size());
+        RecordedEvent e = verifications.get(0);
+        assertEquals("alice", e.getString("kid"));
+        assertEquals("bad-signature", e.getString("outcome"));
+        assertTrue(e.getBoolean("remote"));
+        assertTrue(e.getDuration().toMillis() >= 2);
+    }
+
+    @Test
+    void disabledEvents_areNotRecorded() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        Path file = Files.createTempFile("verifier", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.start();
+            service.issue("alice");
+            SignatureVerificationEvent event = new SignatureVerificationEvent();
+            event.begin();
+            event.report("alice", "verified", false); // under the default 10 ms threshold
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertTrue(named(events, "NonceIssued").isEmpty());
+            assertTrue(named(events, "SignatureVerification").isEmpty());
+        } finally {
+            Files.deleteIfExists(file);
+            service.close();
+        }
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static List<RecordedEvent> record(Body body) throws Exception {
+        Path file = Files.createTempFile("verifier", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(NonceIssuedEvent.class);
+            recording.enable(NonceConsumedEvent.class);
+            recording.enable(NonceRejectedEvent.class);
+            recording.enable(NonceExpiryEvent.class).withPeriod(Duration.ofMillis(50));
+            recording.enable(SignatureVerificationEvent.class).withoutThreshold();
+            recording.start();
+            body.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.assessment.spruceid.verifier." + name))
+                .toList();
+    }
+}
@@ -0,0 +1,39 @@
+package com.assessment.spruceid.verifier.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PhaseTimersTest {
+    @Test
+    void laps_recordConsecutivePhases() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PhaseTimers phases = new PhaseTimers(registry, true);
+
+        long t = phases.start();
+        Thread.sleep(5);
+        t = phases.lap(PhaseTimers.Phase.SIGNATURE, t);
+        phases.lap(PhaseTimers.Phase.CONSUME, t);
+
+        Timer signature = registry.get("verifier.phase").tag("phase", "signature").timer();
+        assertThat(signature.count()).isEqualTo(1);
+        assertThat(signature.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+        assertThat(registry.get("verifier.phase").tag("phase", "consume").timer().count()).isEqualTo(1);
+        assertThat(registry.get("verifier.phase").timers()).hasSize(PhaseTimers.Phase.values().length);
+    }
+
+    @Test
+    void disabled_registersAndRecordsNothing() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PhaseTimers phases = new PhaseTimers(registry, false);
+
+        assertThat(phases.start()).isZero();
+        assertThat(phases.lap(PhaseTimers.Phase.ISSUE, 0)).isZero();
+        assertThat(registry.getMeters()).isEmpty();
+        assertThat(PhaseTimers.noop().start()).isZero();
+    }
+}
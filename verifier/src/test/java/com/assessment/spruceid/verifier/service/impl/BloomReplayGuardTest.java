@@ -0,0 +1,80 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomReplayGuardTest {
+    private static final long TTL = 60_000;
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void markConsumed_rejectsReplays() {
+        BloomReplayGuard guard = new BloomReplayGuard(TTL, 4, 1_000, 0.001, now::get);
+        long expiresAt = now.get() + TTL;
+
+        assertTrue(guard.markConsumed(1, 2, expiresAt));
+        assertFalse(guard.markConsumed(1, 2, expiresAt));
+        assertTrue(guard.markConsumed(2, 1, expiresAt));
+        assertEquals(2, guard.size());
+    }
+
+    @Test
+    void markConsumed_acceptsEveryDistinctNonceUpToCapacity() {
+        BloomReplayGuard guard = new BloomReplayGuard(TTL, 4, 100_000, 0.001, now::get);
+        SplittableRandom rnd = new SplittableRandom(42);
+        long[] hi = new long[100_000], lo = new long[100_000], exp = new long[100_000];
+        for (int i = 0; i < hi.length; i++) {
+            hi[i] = rnd.nextLong();
+            lo[i] = rnd.nextLong();
+            exp[i] = now.get() + rnd.nextLong(TTL);
+            assertTrue(guard.markConsumed(hi[i], lo[i], exp[i]), "false rejection at " + i);
+        }
+        for (int i = 0; i < hi.length; i++)
+            assertFalse(guard.markConsumed(hi[i], lo[i], exp[i]), "replay accepted at " + i);
+        assertEquals(0, guard.overflowed());
+    }
+
+    @Test
+    void markConsumed_stillRejectsReplaysOnceSlicesOverflow() {
+        BloomReplayGuard guard = new BloomReplayGuard(TTL, 1, 100, 0.01, now::get);
+        long memory = guard.memoryBytes();
+        long expiresAt = now.get() + TTL / 2;
+        SplittableRandom rnd = new SplittableRandom(7);
+        long[] hi = new long[1_000], lo = new long[1_000];
+        int accepted = 0;
+        for (int i = 0; i < hi.length; i++) {
+            hi[i] = rnd.nextLong();
+            lo[i] = rnd.nextLong();
+            if (guard.markConsumed(hi[i], lo[i], expiresAt)) accepted++;
+        }
+
+        assertTrue(guard.overflowed() > 0);
+        assertTrue(accepted > 0);
+        for (int i = 0; i < hi.length; i++) assertFalse(guard.markConsumed(hi[i], lo[i], expiresAt));
+        assertEquals(memory, guard.memoryBytes());
+    }
+
+    @Test
+    void slicesAreReusedOnceTheirNoncesExpire() {
+        BloomReplayGuard guard = new BloomReplayGuard(TTL, 4, 1_000, 0.001, now::get);
+        long expiresAt = now.get() + TTL;
+        assertTrue(guard.markConsumed(1, 2, expiresAt));
+
+        now.addAndGet(2 * TTL);
+        assertEquals(0, guard.size());
+        // an expired nonce is never accepted, and its slot now serves a later window
+        assertFalse(guard.markConsumed(1, 2, expiresAt));
+        assertTrue(guard.markConsumed(1, 2, now.get() + TTL));
+    }
+
+    @Test
+    void markConsumed_rejectsExpiriesOutsideTheWindow() {
+        BloomReplayGuard guard = new BloomReplayGuard(TTL, 4, 1_000, 0.001, now::get);
+        assertFalse(guard.markConsumed(1, 2, now.get() - TTL));
+        assertFalse(guard.markConsumed(1, 2, now.get() + 10 * TTL));
+    }
+}
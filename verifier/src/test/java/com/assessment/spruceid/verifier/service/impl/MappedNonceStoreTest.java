@@ -0,0 +1,189 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedNonceStoreTest {
+    private final SplittableRandom rnd = new SplittableRandom(5);
+    private final List<MappedNonceStore> stores = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void close() {
+        stores.forEach(MappedNonceStore::close);
+    }
+
+    @Test
+    void outstandingAndConsumedNonces_surviveARestart() {
+        MappedNonceStore store = open(1 << 20, 0);
+        Nonce outstanding = nonce("alice", 300);
+        Nonce consumed = nonce("alice", 300);
+        Nonce wrongKid = nonce("alice", 300);
+        store.put(outstanding);
+        store.put(consumed);
+        store.put(wrongKid);
+        assertTrue(store.isOutstanding(consumed.getNonce(), "alice"));
+        assertFalse(store.isOutstanding(consumed.getNonce(), "bob"));
+        assertTrue(store.consume(consumed.getNonce(), "alice"));
+        assertFalse(store.isOutstanding(consumed.getNonce(), "alice"));
+        assertFalse(store.consume(wrongKid.getNonce(), "bob"));
+        store.close();
+
+        MappedNonceStore reopened = open(1 << 20, 0);
+        assertEquals(1, reopened.size());
+        assertFalse(reopened.consume(consumed.getNonce(), "alice"));
+        assertFalse(reopened.consume(wrongKid.getNonce(), "alice"));
+        assertTrue(reopened.consume(outstanding.getNonce(), "alice"));
+    }
+
+    @Test
+    void recovery_replaysEverySegment() {
+        // ten records per segment
+        MappedNonceStore store = open(MappedNonceStore.RECORD * 10, 0);
+        List<Nonce> issued = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            Nonce n = nonce(null, 300);
+            assertTrue(store.put(n));
+            issued.add(n);
+        }
+        for (int i = 0; i < issued.size(); i += 3) assertTrue(store.consume(issued.get(i).getNonce(), null));
+        long outstanding = store.size();
+        store.close();
+
+        MappedNonceStore reopened = open(MappedNonceStore.RECORD * 10, 0);
+        assertEquals(outstanding, reopened.size());
+        for (int i = 0; i < issued.size(); i++)
+            assertEquals(i % 3 != 0, reopened.consume(issued.get(i).getNonce(), null), "nonce " + i);
+    }
+
+    @Test
+    void recovery_skipsTornRecords() throws Exception {
+        MappedNonceStore store = open(1 << 20, 0);
+        Nonce first = nonce(null, 300);
+        Nonce second = nonce(null, 300);
+        store.put(first);
+        store.put(second);
+        store.close();
+
+        // damage the second record as a crash in the middle of writing it would
+        Path segment = files("segment-").getFirst();
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), MappedNonceStore.RECORD + 20);
+        }
+
+        MappedNonceStore reopened = open(1 << 20, 0);
+        assertEquals(1, reopened.size());
+        assertTrue(reopened.consume(first.getNonce(), null));
+    }
+
+    @Test
+    void compaction_keepsTheLiveSetAndDropsOlderFiles() throws Exception {
+        MappedNonceStore store = open(MappedNonceStore.RECORD * 10, 0);
+        List<Nonce> issued = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Nonce n = nonce(null, 300);
+            store.put(n);
+            issued.add(n);
+        }
+        for (int i = 0; i < 40; i++) store.consume(issued.get(i).getNonce(), null);
+        assertTrue(files("segment-").size() > 5);
+
+        store.compact();
+        assertEquals(1, files("snapshot-").size());
+        // the new current segment and the spare after it
+        awaitSegments(2);
+        assertTrue(store.writeAmplification() > 1);
+        store.close();
+
+        MappedNonceStore reopened = open(MappedNonceStore.RECORD * 10, 0);
+        assertEquals(10, reopened.size());
+        for (int i = 0; i < 50; i++) assertEquals(i >= 40, reopened.consume(issued.get(i).getNonce(), null));
+    }
+
+    @Test
+    void expiredSegments_areDeleted() throws Exception {
+        MappedNonceStore store = open(MappedNonceStore.RECORD * 10, 0);
+        for (int i = 0; i < 35; i++) store.put(nonce(null, -1));
+        assertTrue(files("segment-").size() >= 4);
+
+        // left: the current segment and the spare
+        awaitSegments(2);
+    }
+
+    @Test
+    void nextSegment_isCreatedAhead_andFullOnesAreRetiredInTheBackground() throws Exception {
+        MappedNonceStore store = open(MappedNonceStore.RECORD * 10, 0);
+        awaitSegments(2);
+        List<Path> ahead = files("segment-");
+
+        List<Nonce> issued = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            Nonce n = nonce(null, 300);
+            assertTrue(store.put(n));
+            issued.add(n);
+        }
+        // the 11th record went to the segment created ahead, and a new spare follows it
+        assertTrue(files("segment-").containsAll(ahead));
+        awaitSegments(3);
+        store.close();
+
+        // the unused spare is not left behind
+        assertEquals(ahead, files("segment-"));
+        MappedNonceStore reopened = open(MappedNonceStore.RECORD * 10, 0);
+        for (Nonce n : issued) assertTrue(reopened.consume(n.getNonce(), null));
+    }
+
+    @Test
+    void onlyFsyncAlways_blocksTheCaller() {
+        assertFalse(open(1 << 20, 0).blocking());
+        MappedNonceStore always = new MappedNonceStore(dir.resolve("always"), 1_000, 4, 1_000, 1 << 20,
+                MappedNonceStore.Fsync.ALWAYS, 100, 0);
+        stores.add(always);
+        assertTrue(always.blocking());
+    }
+
+    private MappedNonceStore open(long segmentBytes, long compactSeconds) {
+        MappedNonceStore store = new MappedNonceStore(dir, 1_000, 4, 1_000, segmentBytes,
+                MappedNonceStore.Fsync.NEVER, 100, compactSeconds);
+        stores.add(store);
+        return store;
+    }
+
+    private void awaitSegments(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (files("segment-").size() != count && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertEquals(count, files("segment-").size());
+    }
+
+    private List<Path> files(String prefix) throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private Nonce nonce(String kid, long ttlSeconds) {
+        byte[] b = new byte[32];
+        rnd.nextBytes(b);
+        Instant now = Instant.now();
+        return Nonce.builder().nonce(Base64.getUrlEncoder().withoutPadding().encodeToString(b))
+                .issuedAt(now).expiresAt(now.plusSeconds(ttlSeconds)).kid(kid).build();
+    }
+}
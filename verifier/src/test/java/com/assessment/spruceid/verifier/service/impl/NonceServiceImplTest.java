@@ -3,6 +3,15 @@ package com.assessment.spruceid.verifier.service.impl;
 import com.assessment.spruceid.verifier.model.Nonce;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class NonceServiceImplTest {
@@ -21,4 +30,159 @@ class NonceServiceImplTest {
         assertTrue(service.validateAndConsume(nonce.getNonce()));
         assertFalse(service.validateAndConsume(nonce.getNonce()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void validateAndConsume_withOffHeapStore() {
+        NonceServiceImpl service = new NonceServiceImpl(300, new OffHeapNonceStore(1_000, 4, 100));
+        try {
+            Nonce nonce = service.issue("alice");
+            assertEquals(1, service.size());
+            assertFalse(service.validateAndConsume(nonce.getNonce(), "bob"));
+            assertEquals(0, service.size());
+
+            nonce = service.issue("alice");
+            assertTrue(service.validateAndConsume(nonce.getNonce(), "alice"));
+            assertFalse(service.validateAndConsume(nonce.getNonce(), "alice"));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void issueMany_registersEveryNonceForTheKid() {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        List<Nonce> issued = service.issue("alice", 500);
+        assertEquals(500, issued.size());
+        assertEquals(500, service.size());
+        assertEquals(500, issued.stream().map(Nonce::getNonce).distinct().count());
+
+        for (Nonce n : issued) {
+            assertEquals("alice", n.getKid());
+            assertTrue(service.validateAndConsume(n.getNonce(), "alice"));
+        }
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    void issueMany_returnsWhatFitsInAFullStore() {
+        NonceServiceImpl service = new NonceServiceImpl(300, new OffHeapNonceStore(16, 1, 100));
+        try {
+            List<Nonce> issued = service.issue(null, 40);
+            assertTrue(issued.size() >= 16 && issued.size() < 40, "issued " + issued.size());
+            assertEquals(issued.size(), service.size());
+            assertThrows(IllegalStateException.class, () -> service.issue(null, 5));
+            for (Nonce n : issued) assertTrue(service.validateAndConsume(n.getNonce()));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void isOutstanding_checksWithoutConsuming() {
+        for (NonceServiceImpl service : List.of(new NonceServiceImpl(300),
+                new NonceServiceImpl(300, new OffHeapNonceStore(1_000, 4, 100)))) {
+            try {
+                Nonce nonce = service.issue("alice");
+                assertTrue(service.isOutstanding(nonce.getNonce(), "alice"));
+                assertTrue(service.isOutstanding(nonce.getNonce(), "alice"));
+                assertFalse(service.isOutstanding(nonce.getNonce(), "bob"));
+                assertFalse(service.isOutstanding("unknown", "alice"));
+                assertFalse(service.isOutstanding(null, "alice"));
+                assertEquals(1, service.size());
+
+                assertTrue(service.validateAndConsume(nonce.getNonce(), "alice"));
+                assertFalse(service.isOutstanding(nonce.getNonce(), "alice"));
+            } finally {
+                service.close();
+            }
+        }
+        NonceServiceImpl expired = new NonceServiceImpl(-1);
+        assertFalse(expired.isOutstanding(expired.issue().getNonce(), null));
+    }
+
+    @Test
+    void validateAndConsume_withManyOutstandingNonces() {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        List<Nonce> issued = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) issued.add(service.issue());
+        assertEquals(1_000, service.size());
+
+        // consuming in reverse order proves earlier nonces were not overwritten
+        for (int i = issued.size() - 1; i >= 0; i--)
+            assertTrue(service.validateAndConsume(issued.get(i).getNonce()));
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    void validateAndConsume_isBoundToTheKeyTheNonceWasIssuedFor() {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        Nonce forAlice = service.issue("alice");
+        Nonce forBob = service.issue("bob");
+
+        assertEquals("alice", forAlice.getKid());
+        assertFalse(service.validateAndConsume(forAlice.getNonce(), "bob"));
+        assertTrue(service.validateAndConsume(forBob.getNonce(), "bob"));
+    }
+
+    @Test
+    void validateAndConsume_withUnknownOrExpiredNonce() {
+        assertFalse(new NonceServiceImpl(300).validateAndConsume("unknown"));
+        assertFalse(new NonceServiceImpl(300).validateAndConsume(null));
+
+        NonceServiceImpl expired = new NonceServiceImpl(-1);
+        Nonce nonce = expired.issue();
+        assertFalse(expired.validateAndConsume(nonce.getNonce()));
+    }
+
+    @Test
+    void expiredNonces_areSweptFromTheTable() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(-1, 16, 10);
+        for (int i = 0; i < 100; i++) service.issue();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.size() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        service.close();
+
+        assertEquals(0, service.size());
+        assertEquals(100, service.expiredCount());
+    }
+
+    @Test
+    void consumedNonces_areNotCountedAsExpired() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(1, 16, 10);
+        Nonce consumed = service.issue("alice");
+        service.issue("alice");
+        assertTrue(service.validateAndConsume(consumed.getNonce(), "alice"));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.size() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        Thread.sleep(100); // the consumed nonce's deadline has passed through the wheel as well
+        service.close();
+
+        assertEquals(0, service.size());
+        assertEquals(1, service.expiredCount());
+    }
+
+    @Test
+    void validateAndConsume_concurrently_onlyOneWinner() throws Exception {
+        NonceServiceImpl service = new NonceServiceImpl(300);
+        Nonce nonce = service.issue();
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                if (service.validateAndConsume(nonce.getNonce())) winners.incrementAndGet();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(1, winners.get());
+    }
+}
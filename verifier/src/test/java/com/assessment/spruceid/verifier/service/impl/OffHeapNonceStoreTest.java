@@ -0,0 +1,103 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapNonceStoreTest {
+    private final SplittableRandom rnd = new SplittableRandom(3);
+    private OffHeapNonceStore store;
+
+    @AfterEach
+    void close() {
+        if (store != null) store.close();
+    }
+
+    @Test
+    void consume_isSingleUseAndBoundToTheKid() {
+        store = new OffHeapNonceStore(1_000, 4, 1_000);
+        Nonce forAlice = nonce("alice", 300);
+        Nonce forBob = nonce("bob", 300);
+        assertTrue(store.put(forAlice));
+        assertTrue(store.put(forBob));
+        assertEquals(2, store.size());
+
+        assertTrue(store.consume(forAlice.getNonce(), "alice"));
+        assertFalse(store.consume(forAlice.getNonce(), "alice"));
+        // presented for another key: consumed and rejected
+        assertFalse(store.consume(forBob.getNonce(), "alice"));
+        assertFalse(store.consume(forBob.getNonce(), "bob"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void consume_withUnknownOrMalformedNonce() {
+        store = new OffHeapNonceStore(1_000, 4, 1_000);
+        assertFalse(store.consume(null, null));
+        assertFalse(store.consume("unknown", null));
+        assertFalse(store.consume(nonce(null, 300).getNonce(), null));
+    }
+
+    @Test
+    void consume_findsEveryNonceOfAFullTableInAnyOrder() {
+        store = new OffHeapNonceStore(10_000, 8, 1_000);
+        List<Nonce> issued = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Nonce n = nonce("k" + (i % 7), 300);
+            assertTrue(store.put(n), "full after " + i);
+            issued.add(n);
+        }
+
+        // removing every other entry first exercises the backward shift inside clusters
+        for (int i = 0; i < issued.size(); i += 2)
+            assertTrue(store.consume(issued.get(i).getNonce(), "k" + (i % 7)));
+        for (int i = 1; i < issued.size(); i += 2)
+            assertTrue(store.consume(issued.get(i).getNonce(), "k" + (i % 7)));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void put_failsWhenFullAndExpiredEntriesMakeRoom() throws Exception {
+        store = new OffHeapNonceStore(4, 1, 60_000);
+        for (int i = 0; i < 4; i++) assertTrue(store.put(nonce(null, 300)));
+        assertFalse(store.put(nonce(null, 300)));
+
+        store.close();
+        store = new OffHeapNonceStore(4, 1, 60_000);
+        for (int i = 0; i < 4; i++) assertTrue(store.put(nonce(null, -1)));
+        assertTrue(store.put(nonce(null, 300)));
+        assertEquals(1, store.size());
+        assertEquals(4, store.expiredCount());
+    }
+
+    @Test
+    void expiredNonces_areSweptInTheBackground() throws Exception {
+        store = new OffHeapNonceStore(1_000, 4, 10);
+        Nonce expired = nonce(null, -1);
+        store.put(expired);
+        for (int i = 0; i < 99; i++) store.put(nonce(null, -1));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (store.size() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+
+        assertEquals(0, store.size());
+        assertEquals(100, store.expiredCount());
+        assertFalse(store.consume(expired.getNonce(), null));
+    }
+
+    private Nonce nonce(String kid, long ttlSeconds) {
+        byte[] b = new byte[32];
+        rnd.nextBytes(b);
+        Instant now = Instant.now();
+        return Nonce.builder().nonce(Base64.getUrlEncoder().withoutPadding().encodeToString(b))
+                .issuedAt(now).expiresAt(now.plusSeconds(ttlSeconds)).kid(kid).build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RespNonceStoreTest {
+    private final SplittableRandom rnd = new SplittableRandom(11);
+    private final List<AutoCloseable> open = new ArrayList<>();
+    private RespStandInServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new RespStandInServer();
+        open.add(server);
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        for (AutoCloseable c : open.reversed()) c.close();
+    }
+
+    @Test
+    void consume_isSingleUseAndBoundToTheKid() {
+        RespNonceStore store = store();
+        Nonce forAlice = nonce("alice", 300);
+        Nonce forBob = nonce("bob", 300);
+        assertTrue(store.put(forAlice));
+        assertTrue(store.put(forBob));
+        assertFalse(store.put(forAlice), "put is put-if-absent");
+        assertEquals(2, store.size());
+
+        assertTrue(store.consume(forAlice.getNonce(), "alice"));
+        assertFalse(store.consume(forAlice.getNonce(), "alice"));
+        // presented for another key: consumed and rejected
+        assertFalse(store.consume(forBob.getNonce(), "alice"));
+        assertFalse(store.consume(forBob.getNonce(), "bob"));
+        assertFalse(store.consume("unknown", null));
+        assertFalse(store.consume(null, null));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void expiredNonces_cannotBeConsumed() throws Exception {
+        RespNonceStore store = store();
+        Nonce expired = nonce(null, -1);
+        Instant now = Instant.now();
+        Nonce shortLived = Nonce.builder().nonce(nonce(null, 0).getNonce())
+                .issuedAt(now).expiresAt(now.plusMillis(50)).build();
+        assertTrue(store.put(expired));
+        assertTrue(store.put(shortLived));
+
+        Thread.sleep(100);
+        assertFalse(store.consume(expired.getNonce(), null));
+        assertFalse(store.consume(shortLived.getNonce(), null));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void nodesSharingTheServer_shareReplayState() {
+        RespNonceStore issuer = store();
+        RespNonceStore other = store();
+        Nonce n = nonce(null, 300);
+        assertTrue(issuer.put(n));
+
+        assertTrue(other.consume(n.getNonce(), null));
+        assertFalse(issuer.consume(n.getNonce(), null));
+    }
+
+    @Test
+    void concurrentConsumes_ofOneNonce_haveOneWinner() throws Exception {
+        RespNonceStore store = store();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 50; round++) {
+                Nonce n = nonce(null, 300);
+                store.put(n);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < 8; t++) results.add(pool.submit(() -> {
+                    go.await();
+                    return store.consume(n.getNonce(), null);
+                }));
+                go.countDown();
+                int winners = 0;
+                for (Future<Boolean> r : results) if (r.get()) winners++;
+                assertEquals(1, winners);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentCallers_shareWrites() throws Exception {
+        RespNonceStore store = store();
+        List<Nonce> issued = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) issued.add(nonce(null, 300));
+        assertArrayEquals(trues(issued.size()), store.putAll(issued));
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        AtomicInteger consumed = new AtomicInteger();
+        try {
+            for (Nonce n : issued) pool.execute(() -> {
+                if (store.consume(n.getNonce(), null)) consumed.incrementAndGet();
+            });
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        assertEquals(issued.size(), consumed.get());
+        assertTrue(store.commandsPerWrite() > 1, "commands per write: " + store.commandsPerWrite());
+    }
+
+    @Test
+    void unreachableServer_rejectsConsumesAndFailsPuts_thenReconnects() throws Exception {
+        RespNonceStore store = store();
+        Nonce n = nonce(null, 300);
+        assertTrue(store.put(n));
+        int port = server.port();
+        server.close();
+
+        assertFalse(store.consume(n.getNonce(), null));
+        assertThrows(IllegalStateException.class, () -> store.put(nonce(null, 300)));
+
+        server = new RespStandInServer(port);
+        open.add(server);
+        Nonce after = nonce(null, 300);
+        assertTrue(store.put(after));
+        assertTrue(store.consume(after.getNonce(), null));
+    }
+
+    @Test
+    void serverLostUnderLoad_failsEveryCallerWithoutWaitingForTheTimeout() throws Exception {
+        RespNonceStore store = new RespNonceStore("localhost", server.port(), 0, "", "nonce:", 20_000);
+        open.add(store);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch running = new CountDownLatch(16);
+        List<Future<?>> callers = new ArrayList<>();
+        try {
+            for (int t = 0; t < 16; t++) callers.add(pool.submit(() -> {
+                running.countDown();
+                // until the loss reaches this caller
+                while (true) store.putAll(List.of(nonce(null, 300), nonce(null, 300), nonce(null, 300)));
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            server.close();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            for (Future<?> f : callers) {
+                ExecutionException e = assertThrows(ExecutionException.class,
+                        () -> f.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private RespNonceStore store() {
+        RespNonceStore store = new RespNonceStore("localhost", server.port(), 0, "", "nonce:", 2_000);
+        open.add(store);
+        return store;
+    }
+
+    private static boolean[] trues(int n) {
+        boolean[] b = new boolean[n];
+        Arrays.fill(b, true);
+        return b;
+    }
+
+    private Nonce nonce(String kid, long ttlSeconds) {
+        byte[] b = new byte[32];
+        rnd.nextBytes(b);
+        Instant now = Instant.now();
+        return Nonce.builder().nonce(Base64.getUrlEncoder().withoutPadding().encodeToString(b))
+                .issuedAt(now).expiresAt(now.plusSeconds(ttlSeconds)).kid(kid).build();
+    }
+}
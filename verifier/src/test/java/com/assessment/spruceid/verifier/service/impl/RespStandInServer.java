@@ -0,0 +1,211 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for a Redis-compatible server, for tests of {@link RespNonceStore}.
+ * Speaks RESP2 and knows just the commands the store sends: PING, AUTH, SELECT, SET (NX, PX),
+ * GET, GETDEL, DEL, DBSIZE. Keys expire lazily when touched. One thread per client connection.
+ * Replies can be held back to play a slow server.
+ */
+public class RespStandInServer implements AutoCloseable {
+    private final Map<String, Entry> data = new ConcurrentHashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final ServerSocket server;
+    private volatile long delayMillis;
+
+    public RespStandInServer() throws IOException {
+        this(0);
+    }
+
+    public RespStandInServer(int port) throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Thread.ofPlatform().daemon().name("resp-stand-in").start(this::accept);
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @param millis how long to hold back each burst of replies
+     */
+    public void delay(long millis) {
+        delayMillis = millis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket s : clients) s.close();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket s = server.accept();
+                clients.add(s);
+                // accepted while close() was running: close() may have missed it
+                if (server.isClosed()) {
+                    s.close();
+                    return;
+                }
+                Thread.ofPlatform().daemon().name("resp-stand-in-client").start(() -> serve(s));
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private void serve(Socket s) {
+        try (s) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            while (true) {
+                byte[][] cmd = readCommand(in);
+                if (cmd == null) return;
+                execute(cmd, out);
+                // answer a pipelined burst with one write, as a real server does
+                if (in.available() == 0) {
+                    if (delayMillis > 0) Thread.sleep(delayMillis);
+                    out.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away
+        } finally {
+            clients.remove(s);
+        }
+    }
+
+    private void execute(byte[][] cmd, OutputStream out) throws IOException {
+        String name = str(cmd[0]).toUpperCase();
+        long now = System.currentTimeMillis();
+        switch (name) {
+            case "PING" -> simple(out, "PONG");
+            case "AUTH", "SELECT" -> simple(out, "OK");
+            case "SET" -> {
+                boolean nx = false;
+                long expiresAt = Long.MAX_VALUE;
+                for (int i = 3; i < cmd.length; i++) {
+                    String opt = str(cmd[i]).toUpperCase();
+                    if (opt.equals("NX")) nx = true;
+                    else if (opt.equals("PX")) {
+                        long px = Long.parseLong(str(cmd[++i]));
+                        if (px <= 0) {
+                            error(out, "ERR invalid expire time in 'set' command");
+                            return;
+                        }
+                        expiresAt = now + px;
+                    }
+                }
+                Entry e = new Entry(cmd[2], expiresAt);
+                String key = str(cmd[1]);
+                boolean stored;
+                if (nx) {
+                    boolean[] added = {false};
+                    data.compute(key, (k, old) -> {
+                        if (old != null && old.expiresAt > now) return old;
+                        added[0] = true;
+                        return e;
+                    });
+                    stored = added[0];
+                } else {
+                    data.put(key, e);
+                    stored = true;
+                }
+                if (stored) simple(out, "OK");
+                else nil(out);
+            }
+            case "GET" -> bulk(out, live(data.get(str(cmd[1])), now));
+            case "GETDEL" -> bulk(out, live(data.remove(str(cmd[1])), now));
+            case "DEL" -> {
+                long n = 0;
+                for (int i = 1; i < cmd.length; i++) if (live(data.remove(str(cmd[i])), now) != null) n++;
+                integer(out, n);
+            }
+            case "DBSIZE" -> {
+                data.values().removeIf(e -> e.expiresAt <= now);
+                integer(out, data.size());
+            }
+            default -> error(out, "ERR unknown command '" + name + "'");
+        }
+    }
+
+    private static byte[] live(Entry e, long now) {
+        return e == null || e.expiresAt <= now ? null : e.value;
+    }
+
+    private static byte[][] readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) return null;
+        if (type != '*') throw new IOException("Expected an array");
+        int n = Integer.parseInt(line(in));
+        byte[][] args = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            if (in.read() != '$') throw new IOException("Expected a bulk string");
+            args[i] = in.readNBytes(Integer.parseInt(line(in)));
+            in.read();
+            in.read();
+        }
+        return args;
+    }
+
+    private static String line(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c; (c = in.read()) != '\r'; ) {
+            if (c < 0) throw new IOException("Closed");
+            sb.append((char) c);
+        }
+        in.read();
+        return sb.toString();
+    }
+
+    private static String str(byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void simple(OutputStream out, String s) throws IOException {
+        out.write(("+" + s + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void error(OutputStream out, String s) throws IOException {
+        out.write(("-" + s + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void integer(OutputStream out, long n) throws IOException {
+        out.write((":" + n + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void nil(OutputStream out) throws IOException {
+        out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void bulk(OutputStream out, byte[] b) throws IOException {
+        if (b == null) {
+            nil(out);
+            return;
+        }
+        out.write(("$" + b.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(b);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private record Entry(byte[] value, long expiresAt) {
+    }
+}
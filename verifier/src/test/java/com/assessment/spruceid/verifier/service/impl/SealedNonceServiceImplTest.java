@@ -0,0 +1,127 @@
+package com.assessment.spruceid.verifier.service.impl;
+
+import com.assessment.spruceid.verifier.model.Nonce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SealedNonceServiceImplTest {
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+    private final List<SealedNonceServiceImpl> services = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        services.forEach(SealedNonceServiceImpl::close);
+    }
+
+    @Test
+    void validateAndConsume() {
+        SealedNonceServiceImpl service = newService(300, SECRET);
+        Nonce nonce = service.issue("alice");
+
+        assertEquals("alice", nonce.getKid());
+        assertTrue(nonce.getExpiresAt().isAfter(nonce.getIssuedAt()));
+        assertTrue(service.validateAndConsume(nonce.getNonce(), "alice"));
+        assertFalse(service.validateAndConsume(nonce.getNonce(), "alice"));
+        assertEquals(1, service.consumedSize());
+    }
+
+    @Test
+    void isOutstanding_checksTheSealWithoutConsuming() {
+        SealedNonceServiceImpl service = newService(300, SECRET);
+        Nonce nonce = service.issue("alice");
+        assertTrue(service.isOutstanding(nonce.getNonce(), "alice"));
+        assertFalse(service.isOutstanding(nonce.getNonce(), "bob"));
+        assertFalse(service.isOutstanding(nonce.getNonce().substring(1) + "A", "alice"));
+        assertFalse(service.isOutstanding(null, "alice"));
+        assertEquals(0, service.consumedSize());
+        assertTrue(service.validateAndConsume(nonce.getNonce(), "alice"));
+    }
+
+    @Test
+    void validateAndConsume_isBoundToTheKeyTheNonceWasIssuedFor() {
+        SealedNonceServiceImpl service = newService(300, SECRET);
+        Nonce forAlice = service.issue("alice");
+
+        assertFalse(service.validateAndConsume(forAlice.getNonce(), "bob"));
+        assertTrue(service.validateAndConsume(forAlice.getNonce(), "alice"));
+    }
+
+    @Test
+    void validateAndConsume_withTamperedOrMalformedNonce() {
+        SealedNonceServiceImpl service = newService(300, SECRET);
+        byte[] raw = Base64.getUrlDecoder().decode(service.issue("alice").getNonce());
+        raw[10] ^= 1; // push expiresAt forward
+        String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+
+        assertFalse(service.validateAndConsume(tampered, "alice"));
+        assertFalse(service.validateAndConsume("unknown", "alice"));
+        assertFalse(service.validateAndConsume(null, "alice"));
+        assertEquals(0, service.consumedSize());
+    }
+
+    @Test
+    void validateAndConsume_withExpiredNonce() throws InterruptedException {
+        SealedNonceServiceImpl service = newService(0, SECRET);
+        Nonce nonce = service.issue("alice");
+        Thread.sleep(5);
+        assertFalse(service.validateAndConsume(nonce.getNonce(), "alice"));
+    }
+
+    @Test
+    void validateAndConsume_onAnotherNodeSharingTheSecret() {
+        SealedNonceServiceImpl nodeA = newService(300, SECRET);
+        SealedNonceServiceImpl nodeB = newService(300, SECRET);
+        SealedNonceServiceImpl other = newService(300, Base64.getEncoder().encodeToString(new byte[]{
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32}));
+        Nonce nonce = nodeA.issue("alice");
+
+        assertFalse(other.validateAndConsume(nonce.getNonce(), "alice"));
+        assertTrue(nodeB.validateAndConsume(nonce.getNonce(), "alice"));
+    }
+
+    @Test
+    void validateAndConsume_concurrentCallersOnlyOneWins() throws Exception {
+        SealedNonceServiceImpl service = newService(300, SECRET);
+        Nonce nonce = service.issue("alice");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++)
+                results.add(pool.submit(() -> service.validateAndConsume(nonce.getNonce(), "alice")));
+            int wins = 0;
+            for (Future<Boolean> f : results) if (f.get(5, TimeUnit.SECONDS)) wins++;
+            assertEquals(1, wins);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void consumedNoncesAreForgottenAfterExpiry() throws InterruptedException {
+        SealedNonceServiceImpl service = new SealedNonceServiceImpl(1, SECRET, new ExactReplayGuard(10));
+        services.add(service);
+        assertTrue(service.validateAndConsume(service.issue("alice").getNonce(), "alice"));
+        assertEquals(1, service.consumedSize());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.consumedSize() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertEquals(0, service.consumedSize());
+    }
+
+    private SealedNonceServiceImpl newService(long ttlSeconds, String secret) {
+        SealedNonceServiceImpl service = new SealedNonceServiceImpl(ttlSeconds, secret, new ExactReplayGuard(100));
+        services.add(service);
+        return service;
+    }
+}
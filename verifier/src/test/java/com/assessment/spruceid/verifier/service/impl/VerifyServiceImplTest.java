@@ -1,8 +1,15 @@
 package com.assessment.spruceid.verifier.service.impl;
 
+import com.assessment.spruceid.verifier.audit.AuditLog;
+import com.assessment.spruceid.verifier.cluster.ClusterRouter;
+import com.assessment.spruceid.verifier.crypto.KeyRegistry;
+import com.assessment.spruceid.verifier.crypto.SignatureVerifierPool;
 import com.assessment.spruceid.verifier.dto.VerifyRequest;
 import com.assessment.spruceid.verifier.dto.VerifyResponse;
+import com.assessment.spruceid.verifier.metrics.PhaseTimers;
 import com.assessment.spruceid.verifier.service.NonceService;
+import com.assessment.spruceid.verifier.service.Rejection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,14 +17,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -25,12 +39,14 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class VerifyServiceImplTest {
+    private static final String KID = "default";
 
     @Mock
     private NonceService nonceService;
 
     private VerifyServiceImpl verifyService;
     private PrivateKey privateKey;
+    private ECPublicKey publicKey;
 
     @BeforeEach
     void setUp() throws Exception {
@@ -38,10 +54,16 @@ class VerifyServiceImplTest {
         KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
         keyGen.initialize(new ECGenParameterSpec("secp256r1"));
         KeyPair keyPair = keyGen.generateKeyPair();
-        ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+        publicKey = (ECPublicKey) keyPair.getPublic();
         privateKey = keyPair.getPrivate();
 
-        verifyService = new VerifyServiceImpl(nonceService, publicKey);
+        verifyService = newService(new VerificationStage(Schedulers.immediate(), 64));
+        lenient().when(nonceService.isOutstanding(anyString(), anyString())).thenReturn(true);
+    }
+
+    private VerifyServiceImpl newService(VerificationStage stage) {
+        return new VerifyServiceImpl(nonceService, KeyRegistry.of(KID, publicKey), new SignatureVerifierPool(),
+                stage, 10, 4, 4);
     }
 
     @Test
@@ -62,7 +84,7 @@ class VerifyServiceImplTest {
                 .sigBase64Url(sigBase64)
                 .build();
 
-        when(nonceService.validateAndConsume(nonce)).thenReturn(true);
+        when(nonceService.validateAndConsume(nonce, KID)).thenReturn(true);
 
         // When
         Mono<ResponseEntity<VerifyResponse>> result = verifyService.verify(request);
@@ -77,19 +99,19 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, times(1)).validateAndConsume(nonce);
+        verify(nonceService, times(1)).validateAndConsume(nonce, KID);
     }
 
     @Test
-    void verify_withInvalidNonce_shouldReturnUnauthorized() {
+    void verify_withInvalidNonce_shouldReturnUnauthorized() throws Exception {
         // Given
         String nonce = "invalid-nonce";
         VerifyRequest request = VerifyRequest.builder()
                 .nonce(nonce)
-                .sigBase64Url("some-signature")
+                .sigBase64Url(sign(nonce))
                 .build();
 
-        when(nonceService.validateAndConsume(nonce)).thenReturn(false);
+        when(nonceService.validateAndConsume(nonce, KID)).thenReturn(false);
 
         // When
         Mono<ResponseEntity<VerifyResponse>> result = verifyService.verify(request);
@@ -105,7 +127,7 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, times(1)).validateAndConsume(nonce);
+        verify(nonceService, times(1)).validateAndConsume(nonce, KID);
     }
 
     @Test
@@ -126,7 +148,7 @@ class VerifyServiceImplTest {
                 .sigBase64Url(sigBase64)
                 .build();
 
-        when(nonceService.validateAndConsume(nonce)).thenReturn(true);
+        when(nonceService.validateAndConsume(nonce, KID)).thenReturn(true);
 
         // When
         Mono<ResponseEntity<VerifyResponse>> result = verifyService.verify(request);
@@ -142,7 +164,7 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, times(1)).validateAndConsume(nonce);
+        verify(nonceService, times(1)).validateAndConsume(nonce, KID);
     }
 
     @Test
@@ -163,7 +185,7 @@ class VerifyServiceImplTest {
                 .sigBase64Url(sigBase64Url)
                 .build();
 
-        when(nonceService.validateAndConsume(nonce)).thenReturn(true);
+        when(nonceService.validateAndConsume(nonce, KID)).thenReturn(true);
 
         // When
         Mono<ResponseEntity<VerifyResponse>> result = verifyService.verify(request);
@@ -177,7 +199,7 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, times(1)).validateAndConsume(nonce);
+        verify(nonceService, times(1)).validateAndConsume(nonce, KID);
     }
 
     @Test
@@ -189,8 +211,6 @@ class VerifyServiceImplTest {
                 .sigBase64Url("not-valid-base64!@#$%")
                 .build();
 
-        when(nonceService.validateAndConsume(nonce)).thenReturn(true);
-
         // When
         Mono<ResponseEntity<VerifyResponse>> result = verifyService.verify(request);
 
@@ -205,7 +225,10 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, times(1)).validateAndConsume(nonce);
+        // rejected before the nonce is looked at
+        verify(nonceService, never()).isOutstanding(anyString(), anyString());
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
+        assertThat(verifyService.rejections(Rejection.SIGNATURE_ENCODING)).isEqualTo(1);
     }
 
     @Test
@@ -230,19 +253,19 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, never()).validateAndConsume(anyString());
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
     }
 
     @Test
-    void verify_whenNonceServiceThrowsException_shouldReturnBadRequest() {
+    void verify_whenNonceServiceThrowsException_shouldReturnBadRequest() throws Exception {
         // Given
         String nonce = "test-nonce";
         VerifyRequest request = VerifyRequest.builder()
                 .nonce(nonce)
-                .sigBase64Url("some-signature")
+                .sigBase64Url(sign(nonce))
                 .build();
 
-        when(nonceService.validateAndConsume(nonce))
+        when(nonceService.validateAndConsume(nonce, KID))
                 .thenThrow(new RuntimeException("Service error"));
 
         // When
@@ -259,6 +282,250 @@ class VerifyServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(nonceService, times(1)).validateAndConsume(nonce);
+        verify(nonceService, times(1)).validateAndConsume(nonce, KID);
+    }
+
+    @Test
+    void verify_whenStageSaturated_shouldReturnServiceUnavailable() throws Exception {
+        // Given
+        VerifyServiceImpl saturated = newService(new VerificationStage(Schedulers.immediate(), 0));
+        VerifyRequest request = VerifyRequest.builder()
+                .nonce("test-nonce")
+                .sigBase64Url(sign("test-nonce"))
+                .build();
+
+        // When
+        Mono<ResponseEntity<VerifyResponse>> result = saturated.verify(request);
+
+        // Then
+        StepVerifier.create(result)
+                .assertNext(response -> {
+                    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(response.getBody()).isNotNull();
+                    assertThat(response.getBody().isVerified()).isFalse();
+                })
+                .verifyComplete();
+
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
+        assertThat(saturated.rejections(Rejection.BUSY)).isEqualTo(1);
+    }
+
+    @Test
+    void verify_timesEachPhase_andCountsTheOutcome() throws Exception {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        VerifyServiceImpl timed = new VerifyServiceImpl(nonceService, ClusterRouter.standalone(),
+                KeyRegistry.of(KID, publicKey), new SignatureVerifierPool(),
+                new VerificationStage(Schedulers.immediate(), 64), new PhaseTimers(registry, true), 10, 4, 4);
+        when(nonceService.validateAndConsume("n", KID)).thenReturn(true);
+        VerifyRequest request = VerifyRequest.builder().nonce("n").sigBase64Url(sign("n")).build();
+
+        // When
+        StepVerifier.create(timed.verify(request))
+                .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK))
+                .verifyComplete();
+
+        // Then
+        for (String phase : List.of("base64-decode", "nonce-lookup", "queue", "signature", "consume"))
+            assertThat(registry.get("verifier.phase").tag("phase", phase).timer().count()).as(phase).isEqualTo(1);
+        assertThat(registry.find("verifier.phase").tag("phase", "issue").timer().count()).isZero();
+        assertThat(timed.verified()).isEqualTo(1);
+    }
+
+    @Test
+    void verify_auditsEachOutcome() throws Exception {
+        // Given
+        List<String> lines = new CopyOnWriteArrayList<>();
+        AuditLog audit = new AuditLog(64, Map.of(), line -> lines.add(line.toString()));
+        VerifyServiceImpl audited = new VerifyServiceImpl(nonceService, ClusterRouter.standalone(),
+                KeyRegistry.of(KID, publicKey), new SignatureVerifierPool(),
+                new VerificationStage(Schedulers.immediate(), 64), PhaseTimers.noop(), audit, 10, 4, 4);
+        when(nonceService.validateAndConsume("n", KID)).thenReturn(true);
+
+        // When
+        StepVerifier.create(audited.verify(VerifyRequest.builder().nonce("n").sigBase64Url(sign("n")).build()))
+                .expectNextCount(1).verifyComplete();
+        StepVerifier.create(audited.verify(VerifyRequest.builder().nonce("n").sigBase64Url("!!").build()))
+                .expectNextCount(1).verifyComplete();
+        audit.close();
+
+        // Then
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("\"outcome\":\"verified\"", "\"kid\":\"default\"", "\"nonce\":\"n\"");
+        assertThat(lines.get(1)).contains("\"outcome\":\"malformed\"", "\"reason\":\"signature-encoding\"");
+        assertThat(audit.dropped()).isZero();
+    }
+
+    @Test
+    void verify_withUnknownNonce_shouldNotCheckTheSignatureOrSpendTheNonce() throws Exception {
+        // Given
+        String nonce = "never-issued";
+        when(nonceService.isOutstanding(nonce, KID)).thenReturn(false);
+        VerifyRequest request = VerifyRequest.builder()
+                .nonce(nonce)
+                .sigBase64Url(sign(nonce))
+                .build();
+
+        // When / Then
+        StepVerifier.create(verifyService.verify(request))
+                .assertNext(response -> {
+                    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+                    assertThat(response.getBody().getMessage())
+                            .isEqualTo("The nonce is invalid or has already been consumed.");
+                })
+                .verifyComplete();
+
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
+        assertThat(verifyService.rejections(Rejection.UNKNOWN_NONCE)).isEqualTo(1);
+    }
+
+    @Test
+    void verify_withMalformedSignatures_shouldRejectEachBeforeTouchingTheNonce() throws Exception {
+        // Given
+        byte[] good = Base64.getDecoder().decode(sign("n"));
+        byte[] order = publicKey.getParams().getOrder().toByteArray();
+        byte[] rIsOrder = der(order, new byte[]{1});
+        byte[] rIsZero = der(new byte[]{0}, new byte[]{1});
+        byte[] notASequence = good.clone();
+        notASequence[0] = 0x31;
+        byte[] tooLong = Arrays.copyOf(good, 80);
+
+        // When
+        for (byte[] sig : List.of(rIsOrder, rIsZero, notASequence, tooLong, new byte[3])) {
+            VerifyRequest request = VerifyRequest.builder()
+                    .nonce("n")
+                    .sigBase64Url(Base64.getUrlEncoder().encodeToString(sig))
+                    .build();
+            StepVerifier.create(verifyService.verify(request))
+                    .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST))
+                    .verifyComplete();
+        }
+
+        // Then
+        assertThat(verifyService.rejections(Rejection.SIGNATURE_RANGE)).isEqualTo(2);
+        assertThat(verifyService.rejections(Rejection.SIGNATURE_STRUCTURE)).isEqualTo(1);
+        assertThat(verifyService.rejections(Rejection.SIGNATURE_LENGTH)).isEqualTo(2);
+        verify(nonceService, never()).isOutstanding(anyString(), anyString());
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
+    }
+
+    @Test
+    void verifyBatch_shouldReturnPerItemResultsInOrder() throws Exception {
+        // Given
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(privateKey);
+        signer.update("nonce-ok".getBytes(StandardCharsets.US_ASCII));
+        String sig = Base64.getUrlEncoder().encodeToString(signer.sign());
+
+        when(nonceService.validateAndConsume("nonce-ok", KID)).thenReturn(true);
+        when(nonceService.validateAndConsume("nonce-unknown", KID)).thenReturn(false);
+
+        List<VerifyRequest> batch = Arrays.asList(
+                VerifyRequest.builder().nonce("nonce-ok").sigBase64Url(sig).build(),
+                VerifyRequest.builder().nonce("nonce-unknown").sigBase64Url(sig).build(),
+                null);
+
+        // When
+        Mono<ResponseEntity<List<VerifyResponse>>> result = verifyService.verifyBatch(batch);
+
+        // Then
+        StepVerifier.create(result)
+                .assertNext(response -> {
+                    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+                    List<VerifyResponse> items = response.getBody();
+                    assertThat(items).hasSize(3);
+                    assertThat(items.get(0).isVerified()).isTrue();
+                    assertThat(items.get(1).isVerified()).isFalse();
+                    assertThat(items.get(1).getMessage())
+                            .isEqualTo("The nonce is invalid or has already been consumed.");
+                    assertThat(items.get(2).isVerified()).isFalse();
+                    assertThat(items.get(2).getMessage()).contains("Request processing failed");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void verifyBatch_withTooManyItems_shouldReturnBadRequest() {
+        List<VerifyRequest> batch = Collections.nCopies(11,
+                VerifyRequest.builder().nonce("n").sigBase64Url("s").build());
+
+        StepVerifier.create(verifyService.verifyBatch(batch))
+                .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST))
+                .verifyComplete();
+
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
+    }
+
+    @Test
+    void verifyStream_shouldEmitOneResultPerProofWithItsNonce() throws Exception {
+        // Given
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(privateKey);
+        signer.update("nonce-ok".getBytes(StandardCharsets.US_ASCII));
+        String sig = Base64.getUrlEncoder().encodeToString(signer.sign());
+
+        when(nonceService.validateAndConsume("nonce-ok", KID)).thenReturn(true);
+        when(nonceService.validateAndConsume("nonce-unknown", KID)).thenReturn(false);
+
+        Flux<VerifyRequest> proofs = Flux.just(
+                VerifyRequest.builder().nonce("nonce-ok").sigBase64Url(sig).build(),
+                VerifyRequest.builder().nonce("nonce-unknown").sigBase64Url(sig).build());
+
+        // When / Then
+        StepVerifier.create(verifyService.verifyStream(proofs).collectList())
+                .assertNext(results -> {
+                    assertThat(results).hasSize(2);
+                    assertThat(results).anySatisfy(r -> {
+                        assertThat(r.getNonce()).isEqualTo("nonce-ok");
+                        assertThat(r.isVerified()).isTrue();
+                    });
+                    assertThat(results).anySatisfy(r -> {
+                        assertThat(r.getNonce()).isEqualTo("nonce-unknown");
+                        assertThat(r.isVerified()).isFalse();
+                    });
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void verify_withUnknownKid_shouldReturnBadRequest() {
+        // Given
+        VerifyRequest request = VerifyRequest.builder()
+                .nonce("test-nonce")
+                .sigBase64Url("some-signature")
+                .kid("unknown-holder")
+                .build();
+
+        // When / Then
+        StepVerifier.create(verifyService.verify(request))
+                .assertNext(response -> {
+                    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(response.getBody()).isNotNull();
+                    assertThat(response.getBody().getMessage()).contains("Unknown kid");
+                })
+                .verifyComplete();
+
+        verify(nonceService, never()).validateAndConsume(anyString(), anyString());
+    }
+
+    private String sign(String nonce) throws Exception {
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(privateKey);
+        signer.update(nonce.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(signer.sign());
+    }
+
+    // DER SEQUENCE of two INTEGERs with the given (two's complement) contents
+    private static byte[] der(byte[] r, byte[] s) {
+        byte[] out = new byte[6 + r.length + s.length];
+        out[0] = 0x30;
+        out[1] = (byte) (4 + r.length + s.length);
+        out[2] = 0x02;
+        out[3] = (byte) r.length;
+        System.arraycopy(r, 0, out, 4, r.length);
+        out[4 + r.length] = 0x02;
+        out[5 + r.length] = (byte) s.length;
+        System.arraycopy(s, 0, out, 6 + r.length, s.length);
+        return out;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.assessment.spruceid.verifier.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base64UtilTest {
+
+    @Test
+    void readLong_matchesTheJdkDecoder() {
+        SplittableRandom rnd = new SplittableRandom(1);
+        for (int i = 0; i < 1_000; i++) {
+            byte[] raw = new byte[32];
+            rnd.nextBytes(raw);
+            String s = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+
+            assertTrue(Base64Util.isCanonicalUrl(s, 32));
+            ByteBuffer expected = ByteBuffer.wrap(raw);
+            for (int off = 0; off < 32; off += 8)
+                assertEquals(expected.getLong(off), Base64Util.readLong(s, off));
+        }
+    }
+
+    @Test
+    void isCanonicalUrl_rejectsOtherSpellings() {
+        String s = Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+
+        assertFalse(Base64Util.isCanonicalUrl(null, 32));
+        assertFalse(Base64Util.isCanonicalUrl(s + "=", 32));
+        assertFalse(Base64Util.isCanonicalUrl(s.substring(1), 32));
+        assertFalse(Base64Util.isCanonicalUrl("+" + s.substring(1), 32));
+        assertFalse(Base64Util.isCanonicalUrl("é" + s.substring(1), 32));
+        // same bytes, but the unused trailing bits are set
+        assertFalse(Base64Util.isCanonicalUrl(s.substring(0, 42) + "B", 32));
+    }
+
+    @Test
+    void decodeFlexible_acceptsBothAlphabetsPaddedOrNot() {
+        SplittableRandom rnd = new SplittableRandom(2);
+        for (int n = 0; n < 80; n++) {
+            byte[] raw = new byte[n];
+            rnd.nextBytes(raw);
+            assertArrayEquals(raw, Base64Util.decodeFlexible(Base64.getUrlEncoder().encodeToString(raw)));
+            assertArrayEquals(raw, Base64Util.decodeFlexible(Base64.getUrlEncoder().withoutPadding().encodeToString(raw)));
+            assertArrayEquals(raw, Base64Util.decodeFlexible(Base64.getEncoder().encodeToString(raw)));
+            assertArrayEquals(raw, Base64Util.decodeFlexible(Base64.getEncoder().withoutPadding().encodeToString(raw)));
+        }
+    }
+
+    @Test
+    void decodeFlexible_returnsNullForInvalidInput() {
+        assertNull(Base64Util.decodeFlexible(null));
+        assertNull(Base64Util.decodeFlexible("AAAAA"));
+        assertNull(Base64Util.decodeFlexible("AAA=A"));
+        assertNull(Base64Util.decodeFlexible("AA="));
+        assertNull(Base64Util.decodeFlexible("AA==="));
+        assertNull(Base64Util.decodeFlexible("AA AA"));
+        assertNull(Base64Util.decodeFlexible("AAé="));
+        assertArrayEquals(new byte[0], Base64Util.decodeFlexible(""));
+    }
+}
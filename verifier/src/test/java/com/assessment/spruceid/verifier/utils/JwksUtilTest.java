@@ -0,0 +1,62 @@
+package com.assessment.spruceid.verifier.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksUtilTest {
+
+    @Test
+    void readEcPublicKeys_readsP256KeysByKid() throws Exception {
+        ECPublicKey key = newKey();
+        String jwks = "{\"keys\":[" + jwk("holder-1", key) + ","
+                + "{\"kty\":\"RSA\",\"kid\":\"ignored\",\"n\":\"AQAB\",\"e\":\"AQAB\"}]}";
+
+        Map<String, ECPublicKey> keys = JwksUtil.readEcPublicKeys(stream(jwks));
+
+        assertEquals(1, keys.size());
+        assertEquals(key.getW(), keys.get("holder-1").getW());
+    }
+
+    @Test
+    void readEcPublicKeys_rejectsPointNotOnCurve() throws Exception {
+        ECPublicKey key = newKey();
+        String bad = jwk("holder-1", key).replace("\"y\":\"" + b64(key.getW().getAffineY()) + "\"",
+                "\"y\":\"" + b64(key.getW().getAffineY().add(BigInteger.ONE)) + "\"");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> JwksUtil.readEcPublicKeys(stream("{\"keys\":[" + bad + "]}")));
+    }
+
+    private static String jwk(String kid, ECPublicKey key) {
+        return "{\"kty\":\"EC\",\"crv\":\"P-256\",\"kid\":\"" + kid + "\",\"x\":\"" + b64(key.getW().getAffineX())
+                + "\",\"y\":\"" + b64(key.getW().getAffineY()) + "\"}";
+    }
+
+    private static String b64(BigInteger v) {
+        byte[] raw = v.toByteArray();
+        byte[] fixed = new byte[32];
+        int n = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - n, fixed, 32 - n, n);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ECPublicKey newKey() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+        keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        return (ECPublicKey) keyGen.generateKeyPair().getPublic();
+    }
+}
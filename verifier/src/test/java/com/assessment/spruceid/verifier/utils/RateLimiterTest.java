@@ -0,0 +1,114 @@
+package com.assessment.spruceid.verifier.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    private static final long MS = 1_000_000L;
+    private final AtomicLong now = new AtomicLong(1_000 * MS);
+
+    @Test
+    void quietClient_getsTheBurst_thenTheRate() {
+        RateLimiter limiter = new RateLimiter(10, 5, 64, now::get);
+        for (int i = 0; i < 5; i++) assertEquals(0, limiter.acquire("a", 1), "request " + i);
+        long wait = limiter.acquire("a", 1);
+        assertTrue(wait > 0 && wait <= 100 * MS, "wait: " + wait);
+
+        now.addAndGet(wait);
+        assertEquals(0, limiter.acquire("a", 1));
+        assertTrue(limiter.acquire("a", 1) > 0);
+        assertEquals(2, limiter.rejected());
+    }
+
+    @Test
+    void bucketRefills_upToTheBurstOnly() {
+        RateLimiter limiter = new RateLimiter(10, 3, 64, now::get);
+        for (int i = 0; i < 3; i++) assertEquals(0, limiter.acquire("a", 1));
+        now.addAndGet(10_000 * MS);
+        for (int i = 0; i < 3; i++) assertEquals(0, limiter.acquire("a", 1));
+        assertTrue(limiter.acquire("a", 1) > 0);
+    }
+
+    @Test
+    void clientsHaveTheirOwnBuckets() {
+        RateLimiter limiter = new RateLimiter(1, 2, 64, now::get);
+        assertEquals(0, limiter.acquire("a", 2));
+        assertTrue(limiter.acquire("a", 1) > 0);
+        assertEquals(0, limiter.acquire("b", 1));
+        assertEquals(0, limiter.acquire("b", 1));
+    }
+
+    @Test
+    void cost_takesThatManyTokens_andAboveTheBurstIsNeverAdmitted() {
+        RateLimiter limiter = new RateLimiter(10, 10, 64, now::get);
+        assertEquals(0, limiter.acquire("a", 7));
+        assertTrue(limiter.acquire("a", 4) > 0, "only 3 tokens left");
+        assertEquals(0, limiter.acquire("a", 3));
+
+        now.addAndGet(1_000 * MS);
+        assertEquals(Long.MAX_VALUE, limiter.acquire("a", 11), "even a full bucket cannot pay for more than the burst");
+        assertEquals(Long.MAX_VALUE, limiter.acquire("a", 1_000_000));
+        assertEquals(3, limiter.rejected());
+        assertEquals(0, limiter.acquire("a", 10), "the refused requests took nothing");
+        assertTrue(limiter.acquire("a", 0) > 0, "cost is at least one");
+    }
+
+    @Test
+    void tableIsBounded_andIdleBucketsAreReusedWithoutEvictions() {
+        RateLimiter limiter = new RateLimiter(1_000, 1, 60, now::get);
+        assertEquals(64, limiter.capacity());
+        for (int round = 0; round < 100; round++) {
+            for (int c = 0; c < 8; c++) assertEquals(0, limiter.acquire("client-" + round + "-" + c, 1));
+            // all buckets are full again 1 ms later
+            now.addAndGet(MS);
+        }
+        assertEquals(0, limiter.evictions());
+    }
+
+    @Test
+    void overflowingTheTable_evicts_butNeverRefusesANewClient() {
+        RateLimiter limiter = new RateLimiter(1, 1, 8, now::get);
+        for (int c = 0; c < 1_000; c++) assertEquals(0, limiter.acquire("client-" + c, 1));
+        assertTrue(limiter.evictions() > 0);
+        assertEquals(0, limiter.rejected());
+    }
+
+    @Test
+    void concurrentRequests_ofOneClient_admitExactlyTheBurst() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 500, 64, now::get);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) results.add(pool.submit(() -> {
+                go.await();
+                int admitted = 0;
+                for (int i = 0; i < 200; i++) if (limiter.acquire("a", 1) == 0) admitted++;
+                return admitted;
+            }));
+            go.countDown();
+            int admitted = 0;
+            for (Future<Integer> r : results) admitted += r.get();
+            assertEquals(500, admitted);
+            assertEquals(8 * 200 - 500, limiter.rejected());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void invalidSettings_areRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1, 64));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 0, 64));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 1, 2));
+    }
+}
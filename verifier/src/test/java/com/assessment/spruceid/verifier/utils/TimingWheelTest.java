@@ -0,0 +1,73 @@
+package com.assessment.spruceid.verifier.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void advance_firesItemsOnlyAfterTheirDeadline() {
+        long base = System.currentTimeMillis();
+        long[] now = {base};
+        List<Long> fired = new ArrayList<>();
+        TimingWheel<Long> wheel = new TimingWheel<>(10, d -> d, d -> {
+            assertTrue(d <= now[0], "fired before deadline");
+            return fired.add(d);
+        });
+
+        Random r = new Random(42);
+        int n = 10_000;
+        // spread deadlines from the first level up to several hours to exercise cascading
+        for (int i = 0; i < n; i++) wheel.schedule(base + (long) (r.nextDouble() * r.nextDouble() * 20_000_000L));
+        assertEquals(n, wheel.pending());
+
+        for (long t = base; t <= base + 20_000_100L; t += 1 + r.nextInt(50_000)) {
+            now[0] = t;
+            wheel.advance(t);
+        }
+        now[0] = base + 20_000_100L;
+        wheel.advance(now[0]);
+
+        assertEquals(n, fired.size());
+        assertEquals(0, wheel.pending());
+        assertEquals(n, wheel.expired());
+    }
+
+    @Test
+    void advance_firesPastDeadlinesImmediately() {
+        List<Long> fired = new ArrayList<>();
+        TimingWheel<Long> wheel = new TimingWheel<>(100, d -> d, fired::add);
+        long now = System.currentTimeMillis();
+        wheel.schedule(now - 1_000);
+        wheel.schedule(now + 60_000);
+
+        wheel.advance(now);
+
+        assertEquals(List.of(now - 1_000), fired);
+        assertEquals(1, wheel.pending());
+    }
+
+    @Test
+    void expired_countsOnlyItemsStillLiveAtTheirDeadline() {
+        Set<Long> live = new HashSet<>();
+        TimingWheel<Long> wheel = new TimingWheel<>(10, d -> d, live::remove);
+        long now = System.currentTimeMillis();
+        for (long d = now + 10; d < now + 110; d += 10) {
+            live.add(d);
+            wheel.schedule(d);
+        }
+        live.remove(now + 20); // consumed before its deadline
+
+        wheel.advance(now + 1_000);
+
+        assertEquals(0, wheel.pending());
+        assertEquals(9, wheel.expired());
+    }
+}